@@ -18,15 +18,18 @@ OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
 SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  */package se.miun.itm.input;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import se.miun.itm.input.analysis.ResultStore;
 import se.miun.itm.input.export.ZipFileExporter;
 import se.miun.itm.input.impOrt.ExperimentArchiveImporter;
 import se.miun.itm.input.impOrt.InPUTArchiveImporter;
+import se.miun.itm.input.lazy.ExperimentCatalog;
 import se.miun.itm.input.model.InPUTException;
 import se.miun.itm.input.model.design.IDesign;
 
@@ -39,7 +42,7 @@ import se.miun.itm.input.model.design.IDesign;
  *
  * @param <T>
  */
-public abstract class ExperimentConductor<T> {
+public abstract class ExperimentConductor<T> implements Closeable {
 
 	private static final InPUTArchiveImporter importer = new InPUTArchiveImporter();
 
@@ -47,10 +50,16 @@ public abstract class ExperimentConductor<T> {
 
 	private static final ZipFileExporter zipExporter = new ZipFileExporter();
 
-	private final Map<String, String> experimentIds = new HashMap<String, String>();
+	private final Map<String, String> experimentIds = new ConcurrentHashMap<String, String>();
 
 	private IInPUT input;
 
+	private ExperimentCatalog catalog;
+
+	private ResultStore resultStore;
+
+	private volatile int totalRuns = 1;
+
 	/**
 	 * A conductor for an investigation index of the given <code>IInPUT</code> type.
 	 * @param input
@@ -73,6 +82,108 @@ public abstract class ExperimentConductor<T> {
 		return input;
 	}
 
+	/**
+	 * Sets the catalog that this conductor keeps up to date about the imported experiments and their outputs.
+	 * @param catalog
+	 */
+	public void setCatalog(ExperimentCatalog catalog) {
+		this.catalog = catalog;
+	}
+
+	public ExperimentCatalog getCatalog() {
+		return catalog;
+	}
+
+	/**
+	 * Records the execution state of the given experiment in the catalog, if a catalog is set.
+	 * @param experiment
+	 * @param state
+	 * @throws InPUTException
+	 */
+	public void updateCatalog(IExperiment experiment, ExperimentCatalog.State state) throws InPUTException {
+		if (catalog != null)
+			catalog.update(experiment, state);
+	}
+
+	/**
+	 * Sets the amount of runs, and thereby outputs, that complete an experiment. Until an experiment has that many outputs, its
+	 * write-backs are recorded as running in the catalog. Defaults to a single run.
+	 * @param totalRuns
+	 */
+	public void setTotalRuns(int totalRuns) {
+		if (totalRuns < 1)
+			throw new IllegalArgumentException("An experiment has to be run at least once.");
+		this.totalRuns = totalRuns;
+	}
+
+	public int getTotalRuns() {
+		return totalRuns;
+	}
+
+	/**
+	 * Records the amount of outputs of the given experiment in the catalog, if a catalog is set. The experiment is completed once
+	 * it has as many outputs as there are total runs, and running otherwise.
+	 * @param experiment
+	 * @throws InPUTException
+	 */
+	public void recordOutputs(IExperiment experiment) throws InPUTException {
+		recordOutputs(experiment, totalRuns);
+	}
+
+	/**
+	 * Records the amount of outputs of the given experiment in the catalog, if a catalog is set, against the given amount of
+	 * total runs rather than the one of the conductor, so that callers with their own replication count can share a conductor.
+	 * @param experiment
+	 * @param totalRuns
+	 * @throws InPUTException
+	 */
+	public void recordOutputs(IExperiment experiment, int totalRuns) throws InPUTException {
+		updateCatalog(experiment, experiment.getOutput().size() >= totalRuns ? ExperimentCatalog.State.COMPLETED
+				: ExperimentCatalog.State.RUNNING);
+	}
+
+	/**
+	 * Sets the columnar store to which this conductor appends all outputs that are written back.
+	 * @param resultStore
+	 */
+	public void setResultStore(ResultStore resultStore) {
+		this.resultStore = resultStore;
+	}
+
+	public ResultStore getResultStore() {
+		return resultStore;
+	}
+
+	/**
+	 * Appends the output of the given run of the experiment to the result store, if a result store is set.
+	 * @param experiment
+	 * @param run
+	 * @param output
+	 * @throws InPUTException
+	 */
+	public void storeResult(IExperiment experiment, int run, IDesign output) throws InPUTException {
+		if (resultStore != null)
+			resultStore.append(experiment, run, output);
+	}
+
+	/**
+	 * Writes all results that the result store buffers to disk, if a result store is set.
+	 * @throws InPUTException
+	 */
+	public void flushResults() throws InPUTException {
+		if (resultStore != null)
+			resultStore.flush();
+	}
+
+	/**
+	 * Flushes and closes the result store, if one is set. Results cannot be stored by this conductor afterwards.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (resultStore != null)
+			resultStore.close();
+	}
+
 	/**
 	 * A help-function that simplifies the import of an <code>IInPUT</code> archive on path <code>filePath</code> with id <code>id</code>. 
 	 * @param id
@@ -98,8 +209,11 @@ public abstract class ExperimentConductor<T> {
 	 */
 	public IExperiment importExperiment(String id, String filePath) throws InPUTException, IOException {
 		IExperiment result = importExperiment(input, id, filePath);
-		if (result != null)
+		if (result != null) {
 			experimentIds.put(id, filePath);
+			if (catalog != null)
+				catalog.register(result);
+		}
 		return result;
 	}
 
@@ -127,34 +241,57 @@ public abstract class ExperimentConductor<T> {
 	}
 
 	/**
-	 * A simple handle to add all outputs in <code>outputs</code> to IExperiment <code>experiment</code>.
+	 * A simple handle to add all outputs in <code>outputs</code> to IExperiment <code>experiment</code>. Outputs are added while
+	 * holding the monitor of the experiment, so that concurrent readers that synchronize on it see a consistent output list.
 	 * @param experiment
 	 * @param outputs
 	 * @throws InPUTException
 	 */
 	protected void writeBackOutput(IExperiment experiment, List<IDesign> outputs) throws InPUTException {
 		String filePath = experimentIds.get(experiment.getId());
-		synchronized (zipExporter) {
-			zipExporter.resetFileName(filePath);
-			for (IDesign output : outputs)
-				experiment.addOutput(output);
-			experiment.export(zipExporter);
+		synchronized (experiment) {
+			synchronized (zipExporter) {
+				zipExporter.resetFileName(filePath);
+				for (IDesign output : outputs) {
+					experiment.addOutput(output);
+					storeResult(experiment, experiment.getOutput().size(), output);
+				}
+				experiment.export(zipExporter);
+				recordOutputs(experiment);
+			}
 		}
 	}
 
 	/**
-	 * write back a single IDesign <code>design</code> to the experimental archive <code>experiment</code>.
+	 * write back a single IDesign <code>design</code> to the experimental archive <code>experiment</code>, holding the monitor of
+	 * the experiment.
 	 * @param experiment
 	 * @param output
 	 * @throws InPUTException
 	 */
 	public void writeBackOutput(IExperiment experiment, IDesign output) throws InPUTException {
+		writeBackOutput(experiment, output, totalRuns);
+	}
+
+	/**
+	 * write back a single IDesign <code>design</code> to the experimental archive <code>experiment</code>, holding the monitor of
+	 * the experiment, and record it in the catalog against the given amount of total runs.
+	 * @param experiment
+	 * @param output
+	 * @param totalRuns
+	 * @throws InPUTException
+	 */
+	public void writeBackOutput(IExperiment experiment, IDesign output, int totalRuns) throws InPUTException {
 		String filePath = experimentIds.get(experiment.getId());
-		synchronized (zipExporter) {
-			zipExporter.resetFileName(filePath);
-			output.attachEnvironmentInfo();
-			experiment.addOutput(output);
-			experiment.export(zipExporter);
+		synchronized (experiment) {
+			synchronized (zipExporter) {
+				zipExporter.resetFileName(filePath);
+				output.attachEnvironmentInfo();
+				experiment.addOutput(output);
+				storeResult(experiment, experiment.getOutput().size(), output);
+				experiment.export(zipExporter);
+				recordOutputs(experiment, totalRuns);
+			}
 		}
 	}
 
@@ -185,6 +322,25 @@ public abstract class ExperimentConductor<T> {
 		}
 	}
 	
+	/**
+	 * Returns the archive path under which the given experiment has been imported by this conductor, or null if the experiment
+	 * is unknown to the conductor.
+	 * @param experiment
+	 * @return
+	 */
+	public String getArchivePath(IExperiment experiment) {
+		return experimentIds.get(experiment.getId());
+	}
+
+	/**
+	 * Returns true if an experiment with the given id has been imported by this conductor.
+	 * @param experimentId
+	 * @return
+	 */
+	public boolean hasImported(String experimentId) {
+		return experimentIds.containsKey(experimentId);
+	}
+
 	public static int getExistingOutputsFor(IExperiment experiment) {
 		return experiment.getOutput().size();
 	}
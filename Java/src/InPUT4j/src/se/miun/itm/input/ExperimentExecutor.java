@@ -0,0 +1,268 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.input;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import se.miun.itm.input.lazy.ExperimentCatalog;
+import se.miun.itm.input.model.InPUTException;
+import se.miun.itm.input.model.design.IDesign;
+
+/**
+ * An <code>ExperimentExecutor</code> drains a source of experiments, such as a <code>LazyExperimentInitializer</code>, through an
+ * <code>ExecutorService</code>, and runs each of them with the given <code>ExperimentConductor</code>. The executor can be any
+ * implementation: a fixed pool of platform threads (default), a <code>ForkJoinPool</code>, or a virtual thread per task executor
+ * on JVMs that support it.
+ * 
+ * The amount of experiments that are in flight at the same time is bounded, so that lazily initialized experiments are only
+ * imported as fast as they can be processed. Each experiment is run as many times as there are replications missing, and each
+ * result is written back via <code>processResult</code>. An experiment that fails is isolated: its failure is recorded, its
+ * remaining replications are skipped, and all other experiments continue.
+ * 
+ * @author Felix Dobslaw
+ * 
+ * @param <T>
+ */
+public class ExperimentExecutor<T> {
+
+	private final ExperimentConductor<T> conductor;
+
+	private final ExecutorService executor;
+
+	private final boolean ownsExecutor;
+
+	private final Semaphore inFlight;
+
+	private final int maxInFlight;
+
+	private final int replications;
+
+	private final Map<String, Throwable> failures = new ConcurrentHashMap<String, Throwable>();
+
+	private final AtomicInteger successfulRuns = new AtomicInteger();
+
+	/**
+	 * An executor that runs each experiment once on as many platform threads as there are available processors.
+	 * 
+	 * @param conductor
+	 */
+	public ExperimentExecutor(ExperimentConductor<T> conductor) {
+		this(conductor, Runtime.getRuntime().availableProcessors(), 1);
+	}
+
+	/**
+	 * An executor that runs each experiment <code>replications</code> times on a fixed pool of <code>threads</code> platform
+	 * threads. The pool is owned, and released by {@link #shutdown()}.
+	 * 
+	 * @param conductor
+	 * @param threads
+	 * @param replications
+	 */
+	public ExperimentExecutor(ExperimentConductor<T> conductor, int threads, int replications) {
+		this(conductor, Executors.newFixedThreadPool(threads), 2 * threads, replications, true);
+	}
+
+	/**
+	 * An executor that runs each experiment <code>replications</code> times on the given <code>executor</code>, with at most
+	 * <code>maxInFlight</code> runs submitted at any time. The executor is not owned, and is not shut down by this instance. The
+	 * write-backs of this executor are recorded against its replications, so that an experiment is only cataloged as completed
+	 * once all of them have been written back; the total runs of the conductor, which may be shared, are left untouched.
+	 * 
+	 * @param conductor
+	 * @param executor
+	 * @param maxInFlight
+	 * @param replications
+	 */
+	public ExperimentExecutor(ExperimentConductor<T> conductor, ExecutorService executor, int maxInFlight, int replications) {
+		this(conductor, executor, maxInFlight, replications, false);
+	}
+
+	private ExperimentExecutor(ExperimentConductor<T> conductor, ExecutorService executor, int maxInFlight, int replications,
+			boolean ownsExecutor) {
+		if (maxInFlight < 1)
+			throw new IllegalArgumentException("At least one experiment has to be allowed in flight.");
+		if (replications < 1)
+			throw new IllegalArgumentException("Each experiment has to be replicated at least once.");
+		this.conductor = conductor;
+		this.executor = executor;
+		this.maxInFlight = maxInFlight;
+		this.replications = replications;
+		this.ownsExecutor = ownsExecutor;
+		inFlight = new Semaphore(maxInFlight);
+	}
+
+	/**
+	 * Runs all experiments the iterator provides, and blocks until all runs are finished. Experiments that the source cannot
+	 * initialize (<code>null</code>) are skipped. Once all runs are finished, the results that are buffered by the result store
+	 * of the conductor are written to disk.
+	 * 
+	 * @param experiments
+	 * @return the amount of successful runs in this call.
+	 * @throws InterruptedException
+	 * @throws InPUTException
+	 *             if the results could not be flushed.
+	 */
+	public int execute(Iterator<IExperiment> experiments) throws InterruptedException, InPUTException {
+		int before = successfulRuns.get();
+		IExperiment experiment;
+		while (experiments.hasNext()) {
+			experiment = experiments.next();
+			if (experiment != null)
+				schedule(experiment);
+		}
+		awaitAll();
+		conductor.flushResults();
+		return successfulRuns.get() - before;
+	}
+
+	private void schedule(IExperiment experiment) throws InterruptedException {
+		int missing = missingReplications(experiment);
+		if (missing > 0)
+			try {
+				conductor.updateCatalog(experiment, ExperimentCatalog.State.RUNNING);
+			} catch (InPUTException e) {
+				failures.put(experiment.getId(), e);
+				return;
+			}
+		for (int i = 0; i < missing; i++) {
+			inFlight.acquire();
+			try {
+				executor.execute(new ExperimentRun(experiment, missing > 1));
+			} catch (RejectedExecutionException e) {
+				inFlight.release();
+				fail(experiment, e);
+				return;
+			}
+		}
+	}
+
+	// outputs count whether they have been imported with an archive or added in memory before.
+	private int missingReplications(IExperiment experiment) {
+		synchronized (experiment) {
+			return Math.max(0, replications - ExperimentConductor.getExistingOutputsFor(experiment));
+		}
+	}
+
+	private void awaitAll() throws InterruptedException {
+		inFlight.acquire(maxInFlight);
+		inFlight.release(maxInFlight);
+	}
+
+	private void fail(IExperiment experiment, Throwable cause) {
+		failures.put(experiment.getId(), cause);
+		try {
+			conductor.updateCatalog(experiment, ExperimentCatalog.State.FAILED);
+		} catch (InPUTException e) {
+			cause.addSuppressed(e);
+		}
+	}
+
+	/**
+	 * Is called once per successful run. By default, results of type <code>IDesign</code> are written back as output to the
+	 * experiment, and to its archive if the experiment has been imported by the conductor. Other results are ignored. Override
+	 * for custom result handling; the method may be called concurrently.
+	 * 
+	 * @param experiment
+	 * @param result
+	 * @throws InPUTException
+	 */
+	protected void processResult(IExperiment experiment, T result) throws InPUTException {
+		if (!(result instanceof IDesign))
+			return;
+
+		if (conductor.getArchivePath(experiment) != null)
+			conductor.writeBackOutput(experiment, (IDesign) result, replications);
+		else
+			synchronized (experiment) {
+				experiment.addOutput((IDesign) result);
+				conductor.storeResult(experiment, experiment.getOutput().size(), (IDesign) result);
+				conductor.recordOutputs(experiment, replications);
+			}
+	}
+
+	/**
+	 * Returns the failures by experiment id of all experiments that could not be completed so far.
+	 * 
+	 * @return
+	 */
+	public Map<String, Throwable> getFailures() {
+		return Collections.unmodifiableMap(failures);
+	}
+
+	public int getSuccessfulRuns() {
+		return successfulRuns.get();
+	}
+
+	public ExperimentConductor<T> getConductor() {
+		return conductor;
+	}
+
+	/**
+	 * Releases the thread pool, if it has been created by this executor.
+	 */
+	public void shutdown() {
+		if (ownsExecutor)
+			executor.shutdown();
+	}
+
+	private class ExperimentRun implements Runnable {
+
+		private final IExperiment experiment;
+
+		private final boolean replicated;
+
+		public ExperimentRun(IExperiment experiment, boolean replicated) {
+			this.experiment = experiment;
+			this.replicated = replicated;
+		}
+
+		@Override
+		public void run() {
+			try {
+				if (failures.containsKey(experiment.getId()))
+					return;
+				T result = conductor.execute(initRunContext());
+				processResult(experiment, result);
+				successfulRuns.incrementAndGet();
+			} catch (Throwable t) {
+				fail(experiment, t);
+			} finally {
+				inFlight.release();
+			}
+		}
+
+		// replications of the same experiment may run at the same time, and experiments are not thread safe. Outputs are only
+		// added under the monitor of the experiment, by the conductor and by processResult, so the copy is consistent.
+		private IExperiment initRunContext() throws InPUTException {
+			if (!replicated)
+				return experiment;
+			synchronized (experiment) {
+				return new Experiment(experiment.getId(), experiment);
+			}
+		}
+	}
+}
@@ -0,0 +1,356 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.input.analysis;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import se.miun.itm.input.model.InPUTException;
+import se.miun.itm.input.util.Q;
+
+/**
+ * Aggregates the values of a numerical output parameter over many experimental archives (.exp) without importing the
+ * archives as designs. The design files are read in a streaming fashion, and the values are folded into
+ * {@link OutputStatistics}, one per group. A group is defined by the values of the given parameters from the algorithm
+ * design, problem features, or preferences of an experiment, in this order of lookup. Archives are processed in parallel,
+ * and memory consumption only depends on the amount of groups, not on the amount of runs.
+ * 
+ * For array outputs, all numerical entries of the array contribute to the statistics. Boolean outputs contribute 1 for
+ * <code>true</code> and 0 for <code>false</code>; other non-numerical values are skipped.
+ * 
+ * @author Felix Dobslaw
+ * 
+ * @ThreadSafe
+ */
+public class OutputAggregator {
+
+	private static final String[] INPUT_DESIGNS = { Q.ALGORITHM_DESIGN_XML, Q.PROBLEM_FEATURES_XML, Q.PREFERENCES_XML };
+
+	private static final FileFilter EXPERIMENTS = new FileFilter() {
+		@Override
+		public boolean accept(File file) {
+			return file.isFile() && file.getName().endsWith(Q.EXP);
+		}
+	};
+
+	private final String[] outputId;
+
+	private final String[][] groupIds;
+
+	private final List<String> groupParamIds;
+
+	private final double compression;
+
+	public OutputAggregator(String outputParamId, String... groupParamIds) {
+		this(TDigest.DEFAULT_COMPRESSION, outputParamId, groupParamIds);
+	}
+
+	public OutputAggregator(double compression, String outputParamId, String... groupParamIds) {
+		this.compression = compression;
+		this.outputId = tokenize(outputParamId);
+		this.groupIds = new String[groupParamIds.length][];
+		for (int i = 0; i < groupParamIds.length; i++)
+			groupIds[i] = tokenize(groupParamIds[i]);
+		this.groupParamIds = Collections.unmodifiableList(Arrays.asList(groupParamIds.clone()));
+	}
+
+	private static String[] tokenize(String paramId) {
+		return paramId.split("\\.");
+	}
+
+	/**
+	 * @return the ids of the parameters that define a group, in the order of the group keys.
+	 */
+	public List<String> getGroupParamIds() {
+		return groupParamIds;
+	}
+
+	/**
+	 * Aggregates all experimental archives in the folder, using one thread per available processor.
+	 * 
+	 * @param folder
+	 * @return the statistics per group, keyed by the values of the group parameters.
+	 * @throws InPUTException
+	 */
+	public Map<List<String>, OutputStatistics> aggregate(String folder) throws InPUTException {
+		File[] archives = new File(folder).listFiles(EXPERIMENTS);
+		if (archives == null)
+			throw new InPUTException("The experimental folder '" + folder + "' cannot be read.");
+		ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		try {
+			return aggregate(Arrays.asList(archives).iterator(), executor,
+					2 * Runtime.getRuntime().availableProcessors());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Aggregates the given experimental archives, using the executor for the processing. At most <code>maxInFlight</code>
+	 * archives are open at any time, so that the iterator can be backed lazily by a large collection.
+	 * 
+	 * @param archives
+	 * @param executor
+	 * @param maxInFlight
+	 * @return the statistics per group, keyed by the values of the group parameters.
+	 * @throws InPUTException
+	 *             if any of the archives could not be read; the remaining archives are processed regardless.
+	 */
+	public Map<List<String>, OutputStatistics> aggregate(Iterator<File> archives, ExecutorService executor, int maxInFlight)
+			throws InPUTException {
+		final Map<List<String>, OutputStatistics> result = new ConcurrentHashMap<List<String>, OutputStatistics>();
+		final List<Exception> failures = Collections.synchronizedList(new ArrayList<Exception>());
+		final Semaphore inFlight = new Semaphore(maxInFlight);
+		int submitted = 0;
+		try {
+			while (archives.hasNext()) {
+				final File archive = archives.next();
+				inFlight.acquire();
+				submitted++;
+				try {
+					executor.execute(new Runnable() {
+						@Override
+						public void run() {
+							try {
+								aggregate(archive, result);
+							} catch (Exception e) {
+								failures.add(e);
+							} finally {
+								inFlight.release();
+							}
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					inFlight.release();
+					failures.add(e);
+				}
+			}
+
+			// all archives are done once every permit has been returned.
+			inFlight.acquire(maxInFlight);
+			inFlight.release(maxInFlight);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InPUTException("The aggregation was interrupted.", e);
+		}
+
+		if (!failures.isEmpty())
+			throw new InPUTException(failures.size() + " out of " + submitted + " experimental archives could not be aggregated.",
+					failures.get(0));
+		return result;
+	}
+
+	private void aggregate(File archive, Map<List<String>, OutputStatistics> result) throws IOException, XMLStreamException {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		ZipFile zip = new ZipFile(archive);
+		try {
+			List<String> group = readGroup(zip, factory);
+			OutputStatistics local = new OutputStatistics(compression);
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			ZipEntry entry;
+			while (entries.hasMoreElements()) {
+				entry = entries.nextElement();
+				if (entry.getName().startsWith(Q.OUTPUT) && entry.getName().endsWith(Q.XML)
+						&& !entry.getName().equals(Q.OUTPUT_SPACE_XML))
+					readOutput(zip, entry, factory, local);
+			}
+			merge(result, group, local);
+		} finally {
+			zip.close();
+		}
+	}
+
+	private void merge(Map<List<String>, OutputStatistics> result, List<String> group, OutputStatistics local) {
+		OutputStatistics stats;
+		synchronized (result) {
+			stats = result.get(group);
+			if (stats == null) {
+				stats = new OutputStatistics(compression);
+				result.put(group, stats);
+			}
+		}
+		synchronized (stats) {
+			stats.merge(local);
+		}
+	}
+
+	private List<String> readGroup(ZipFile zip, XMLInputFactory factory) throws IOException, XMLStreamException {
+		String[] values = new String[groupIds.length];
+		Set<Integer> missing = new HashSet<Integer>();
+		for (int i = 0; i < groupIds.length; i++)
+			missing.add(i);
+
+		ZipEntry entry;
+		for (String design : INPUT_DESIGNS) {
+			if (missing.isEmpty())
+				break;
+			entry = zip.getEntry(design);
+			if (entry != null)
+				readValues(zip, entry, factory, values, missing);
+		}
+
+		for (int i = 0; i < values.length; i++)
+			if (values[i] == null)
+				values[i] = Q.NULL;
+		return Collections.unmodifiableList(Arrays.asList(values));
+	}
+
+	private void readValues(ZipFile zip, ZipEntry entry, XMLInputFactory factory, String[] values, Set<Integer> missing)
+			throws IOException, XMLStreamException {
+		InputStream is = zip.getInputStream(entry);
+		XMLStreamReader reader = factory.createXMLStreamReader(is);
+		try {
+			DesignPath path = new DesignPath();
+			while (reader.hasNext() && !missing.isEmpty()) {
+				switch (reader.next()) {
+				case XMLStreamConstants.START_ELEMENT:
+					if (!path.push(reader))
+						break;
+					for (Iterator<Integer> it = missing.iterator(); it.hasNext();) {
+						int i = it.next();
+						if (path.matches(groupIds[i], false)) {
+							values[i] = path.value();
+							it.remove();
+						}
+					}
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					path.pop(reader);
+					break;
+				}
+			}
+		} finally {
+			reader.close();
+			is.close();
+		}
+	}
+
+	private void readOutput(ZipFile zip, ZipEntry entry, XMLInputFactory factory, OutputStatistics local) throws IOException,
+			XMLStreamException {
+		InputStream is = zip.getInputStream(entry);
+		XMLStreamReader reader = factory.createXMLStreamReader(is);
+		try {
+			DesignPath path = new DesignPath();
+			while (reader.hasNext()) {
+				switch (reader.next()) {
+				case XMLStreamConstants.START_ELEMENT:
+					if (path.push(reader) && Q.NVALUE.equals(reader.getLocalName()) && path.value() != null
+							&& path.matches(outputId, true))
+						add(local, path.value());
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					path.pop(reader);
+					break;
+				}
+			}
+		} finally {
+			reader.close();
+			is.close();
+		}
+	}
+
+	private static void add(OutputStatistics local, String value) {
+		if (Boolean.TRUE.toString().equals(value))
+			local.add(1);
+		else if (Boolean.FALSE.toString().equals(value))
+			local.add(0);
+		else
+			try {
+				local.add(Double.parseDouble(value));
+			} catch (NumberFormatException e) {
+				// a non-numerical output, such as a string or an enumeration, has no statistics.
+			}
+	}
+
+	/**
+	 * The stack of (id, value) pairs of the currently open value elements. A parameter id matches the path if it can be
+	 * built from the element ids, where the values of choice parents may be part of the id, as for choice-specific
+	 * parameters.
+	 */
+	private static class DesignPath {
+
+		private String[] ids = new String[8];
+
+		private String[] values = new String[8];
+
+		private int depth = 0;
+
+		boolean push(XMLStreamReader reader) {
+			String name = reader.getLocalName();
+			if (!Q.NVALUE.equals(name) && !Q.SVALUE.equals(name))
+				return false;
+			if (depth == ids.length) {
+				ids = Arrays.copyOf(ids, 2 * depth);
+				values = Arrays.copyOf(values, 2 * depth);
+			}
+			ids[depth] = reader.getAttributeValue(null, Q.ID_ATTR);
+			values[depth] = reader.getAttributeValue(null, Q.VALUE_ATTR);
+			depth++;
+			return true;
+		}
+
+		void pop(XMLStreamReader reader) {
+			String name = reader.getLocalName();
+			if (Q.NVALUE.equals(name) || Q.SVALUE.equals(name))
+				depth--;
+		}
+
+		String value() {
+			return values[depth - 1];
+		}
+
+		boolean matches(String[] paramId, boolean prefix) {
+			return matches(paramId, 0, 0, prefix);
+		}
+
+		private boolean matches(String[] paramId, int element, int token, boolean prefix) {
+			if (token == paramId.length)
+				return element == depth || prefix;
+			if (element == depth || !paramId[token].equals(ids[element]))
+				return false;
+			if (matches(paramId, element + 1, token + 1, prefix))
+				return true;
+			return values[element] != null && element < depth - 1 && token + 1 < paramId.length
+					&& paramId[token + 1].equals(values[element]) && matches(paramId, element + 1, token + 2, prefix);
+		}
+	}
+}
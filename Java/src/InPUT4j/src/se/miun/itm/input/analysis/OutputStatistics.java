@@ -0,0 +1,120 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.input.analysis;
+
+/**
+ * Mergeable one-pass summary statistics of a stream of output values: count, mean and variance (Welford), extrema, and
+ * quantiles via a {@link TDigest}. Memory consumption is independent of the amount of values added.
+ * 
+ * @author Felix Dobslaw
+ * 
+ * @NotThreadSafe
+ */
+public class OutputStatistics {
+
+	private long count = 0;
+
+	private double mean = 0;
+
+	private double m2 = 0;
+
+	private double min = Double.POSITIVE_INFINITY;
+
+	private double max = Double.NEGATIVE_INFINITY;
+
+	private final TDigest digest;
+
+	public OutputStatistics() {
+		this(TDigest.DEFAULT_COMPRESSION);
+	}
+
+	public OutputStatistics(double compression) {
+		digest = new TDigest(compression);
+	}
+
+	public void add(double value) {
+		count++;
+		double delta = value - mean;
+		mean += delta / count;
+		m2 += delta * (value - mean);
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+		digest.add(value);
+	}
+
+	/**
+	 * Adds the values summarized by the other statistics (Chan et al.), so that partial results of parallel workers can be
+	 * combined.
+	 * 
+	 * @param other
+	 */
+	public void merge(OutputStatistics other) {
+		if (other.count == 0)
+			return;
+		long total = count + other.count;
+		double delta = other.mean - mean;
+		mean += delta * other.count / total;
+		m2 += other.m2 + delta * delta * count * other.count / total;
+		count = total;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+		digest.merge(other.digest);
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public double getMean() {
+		return count == 0 ? Double.NaN : mean;
+	}
+
+	/**
+	 * @return the unbiased sample variance, or NaN for less than two values.
+	 */
+	public double getVariance() {
+		return count < 2 ? Double.NaN : m2 / (count - 1);
+	}
+
+	public double getStandardDeviation() {
+		return Math.sqrt(getVariance());
+	}
+
+	public double getMin() {
+		return count == 0 ? Double.NaN : min;
+	}
+
+	public double getMax() {
+		return count == 0 ? Double.NaN : max;
+	}
+
+	public double getMedian() {
+		return getQuantile(0.5);
+	}
+
+	public double getQuantile(double q) {
+		return digest.quantile(q);
+	}
+
+	@Override
+	public String toString() {
+		return "n=" + count + ", mean=" + getMean() + ", sd=" + getStandardDeviation() + ", min=" + getMin() + ", median="
+				+ getMedian() + ", max=" + getMax();
+	}
+}
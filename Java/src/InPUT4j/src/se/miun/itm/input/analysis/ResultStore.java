@@ -0,0 +1,420 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.input.analysis;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.CRC32;
+
+import se.miun.itm.input.IExperiment;
+import se.miun.itm.input.export.PropertiesExporter;
+import se.miun.itm.input.model.InPUTException;
+import se.miun.itm.input.model.Numeric;
+import se.miun.itm.input.model.design.IDesign;
+import se.miun.itm.input.model.param.NParam;
+import se.miun.itm.input.model.param.Param;
+import se.miun.itm.input.model.param.ParamStore;
+import se.miun.itm.input.util.Q;
+
+/**
+ * A columnar store for the results of a study, with one row per output and one typed column per parameter of the algorithm
+ * design, problem features, preferences and output of the experiments. Numerical parameters are stored as primitive
+ * <code>double</code> or <code>long</code> columns, all others as dictionary encoded text. The store is written in chunks of
+ * rows, each of which is appended in a single checksummed write; a chunk that has been torn by a crash is dropped on the next
+ * open. The store is read with {@link ResultTable}.
+ * 
+ * The schema is derived from the first appended result. Columns are named by the design they stem from and the parameter id,
+ * e.g. <code>output.Y</code> or <code>algorithmDesign.Rate</code>. Values of parameters that are not part of the schema are
+ * ignored, missing values are stored as NaN, {@link #NO_LONG}, or {@link #NO_TEXT} respectively.
+ * 
+ * @author Felix Dobslaw
+ * 
+ * @ThreadSafe
+ */
+public class ResultStore implements Closeable {
+
+	public enum ColumnType {
+		DOUBLE, LONG, TEXT
+	}
+
+	public static class Column {
+
+		private final String name;
+
+		private final ColumnType type;
+
+		public Column(String name, ColumnType type) {
+			this.name = name;
+			this.type = type;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public ColumnType getType() {
+			return type;
+		}
+
+		@Override
+		public String toString() {
+			return name + " (" + type + ")";
+		}
+	}
+
+	public static final String EXPERIMENT_COLUMN = "experiment";
+
+	public static final String RUN_COLUMN = "run";
+
+	public static final long NO_LONG = Long.MIN_VALUE;
+
+	public static final int NO_TEXT = -1;
+
+	public static final int DEFAULT_CHUNK_SIZE = 4096;
+
+	static final int MAGIC = 0x494e5253; // "INRS"
+
+	static final int VERSION = 1;
+
+	private static final PropertiesExporter exporter = new PropertiesExporter();
+
+	private final File file;
+
+	private final int chunkSize;
+
+	private List<Column> columns;
+
+	private final Map<String, Integer> columnIndex = new HashMap<String, Integer>();
+
+	private final Map<String, Integer> dictionary = new HashMap<String, Integer>();
+
+	private final List<String> newEntries = new ArrayList<String>();
+
+	private Object[] buffers;
+
+	private int rows = 0;
+
+	private RandomAccessFile out;
+
+	private boolean closed = false;
+
+	private ResultStore(File file, int chunkSize) {
+		this.file = file;
+		this.chunkSize = chunkSize;
+	}
+
+	public static ResultStore open(String filePath) throws InPUTException {
+		return open(new File(filePath), DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Opens the store in the given file for appending, creating it if necessary.
+	 * 
+	 * @param file
+	 * @param chunkSize
+	 *            the amount of rows that are buffered before they are written as a chunk.
+	 * @return
+	 * @throws InPUTException
+	 */
+	public static ResultStore open(File file, int chunkSize) throws InPUTException {
+		if (chunkSize < 1)
+			throw new InPUTException("The chunk size of a result store has to be positive.");
+		ResultStore store = new ResultStore(file, chunkSize);
+		try {
+			if (file.exists() && file.length() > 0)
+				store.recover();
+		} catch (IOException e) {
+			throw new InPUTException("The result store '" + file.getPath() + "' could not be opened.", e);
+		}
+		return store;
+	}
+
+	private void recover() throws IOException, InPUTException {
+		// the file is scanned without mapping it, as a mapped file cannot be truncated on all platforms.
+		ResultTable table = ResultTable.scan(file);
+		long validLength;
+		try {
+			initColumns(table.getColumns());
+			for (int code = 0; code < table.getDictionarySize(); code++)
+				dictionary.put(table.getText(code), code);
+			validLength = table.getValidLength();
+		} finally {
+			table.close();
+		}
+		out = new RandomAccessFile(file, "rw");
+		// drop a chunk that has been torn by a crash.
+		out.setLength(validLength);
+		out.seek(validLength);
+	}
+
+	private void initColumns(List<Column> columns) {
+		this.columns = Collections.unmodifiableList(new ArrayList<Column>(columns));
+		buffers = new Object[columns.size()];
+		for (int i = 0; i < columns.size(); i++) {
+			columnIndex.put(columns.get(i).getName(), i);
+			switch (columns.get(i).getType()) {
+			case DOUBLE:
+				buffers[i] = new double[chunkSize];
+				break;
+			case LONG:
+				buffers[i] = new long[chunkSize];
+				break;
+			default:
+				buffers[i] = new int[chunkSize];
+			}
+		}
+	}
+
+	/**
+	 * Appends the output of the given run of the experiment as a row.
+	 * 
+	 * @param experiment
+	 * @param run
+	 * @param output
+	 * @throws InPUTException
+	 */
+	public synchronized void append(IExperiment experiment, int run, IDesign output) throws InPUTException {
+		if (closed)
+			throw new InPUTException("The result store '" + file.getPath() + "' has already been closed.");
+		Map<String, String> row = new HashMap<String, String>();
+		Map<String, IDesign> designs = new HashMap<String, IDesign>();
+		addDesign(row, designs, Q.ALGORITHM_DESIGN, experiment.getAlgorithmDesign());
+		addDesign(row, designs, Q.PROBLEM_FEATURES, experiment.getProblemFeatures());
+		addDesign(row, designs, Q.PREFERENCES, experiment.getPreferences());
+		addDesign(row, designs, Q.OUTPUT, output);
+		row.put(EXPERIMENT_COLUMN, experiment.getId());
+		row.put(RUN_COLUMN, Integer.toString(run));
+
+		if (columns == null)
+			createSchema(row, designs);
+
+		try {
+			for (int i = 0; i < columns.size(); i++)
+				setValue(i, row.get(columns.get(i).getName()));
+		} catch (NumberFormatException e) {
+			throw new InPUTException("The output of experiment '" + experiment.getId() + "' does not comply with the schema of the result store '"
+					+ file.getPath() + "'.", e);
+		}
+		rows++;
+		if (rows == chunkSize)
+			flush();
+	}
+
+	private void addDesign(Map<String, String> row, Map<String, IDesign> designs, String prefix, IDesign design)
+			throws InPUTException {
+		if (design == null)
+			return;
+		Properties values = design.export(exporter);
+		String column;
+		for (String paramId : values.stringPropertyNames()) {
+			column = prefix + "." + paramId;
+			row.put(column, values.getProperty(paramId));
+			designs.put(column, design);
+		}
+	}
+
+	private void createSchema(Map<String, String> row, Map<String, IDesign> designs) throws InPUTException {
+		List<String> names = new ArrayList<String>(designs.keySet());
+		Collections.sort(names);
+		List<Column> columns = new ArrayList<Column>();
+		columns.add(new Column(EXPERIMENT_COLUMN, ColumnType.TEXT));
+		columns.add(new Column(RUN_COLUMN, ColumnType.LONG));
+		IDesign design;
+		for (String name : names) {
+			design = designs.get(name);
+			columns.add(new Column(name, typeOf(design, name.substring(name.indexOf('.') + 1))));
+		}
+		initColumns(columns);
+		try {
+			out = new RandomAccessFile(file, "rw");
+			out.setLength(0);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream header = new DataOutputStream(bytes);
+			header.writeInt(MAGIC);
+			header.writeInt(VERSION);
+			header.writeInt(columns.size());
+			for (Column column : columns) {
+				header.writeByte(column.getType().ordinal());
+				writeText(header, column.getName());
+			}
+			header.flush();
+			out.write(bytes.toByteArray());
+		} catch (IOException e) {
+			throw new InPUTException("The result store '" + file.getPath() + "' could not be created.", e);
+		}
+	}
+
+	private static ColumnType typeOf(IDesign design, String paramId) {
+		ParamStore store = ParamStore.getInstance(design.getSpace().getId());
+		Param<?> param = null;
+		if (store != null) {
+			param = store.getParam(paramId);
+			// entries of arrays are stored by the id of the array parameter.
+			while (param == null && paramId.matches(".*\\.\\d+")) {
+				paramId = paramId.substring(0, paramId.lastIndexOf('.'));
+				param = store.getParam(paramId);
+			}
+		}
+		if (!(param instanceof NParam))
+			return ColumnType.TEXT;
+		switch (Numeric.valueOf((NParam) param)) {
+		case DOUBLE:
+		case FLOAT:
+		case DECIMAL:
+			return ColumnType.DOUBLE;
+		default:
+			return ColumnType.LONG;
+		}
+	}
+
+	private void setValue(int column, String value) {
+		switch (columns.get(column).getType()) {
+		case DOUBLE:
+			((double[]) buffers[column])[rows] = value == null ? Double.NaN : Double.parseDouble(value);
+			break;
+		case LONG:
+			((long[]) buffers[column])[rows] = parseLong(value);
+			break;
+		default:
+			((int[]) buffers[column])[rows] = encode(value);
+		}
+	}
+
+	private static long parseLong(String value) {
+		if (value == null)
+			return NO_LONG;
+		if (value.equals(Boolean.TRUE.toString()))
+			return 1;
+		if (value.equals(Boolean.FALSE.toString()))
+			return 0;
+		return Long.parseLong(value);
+	}
+
+	private int encode(String value) {
+		if (value == null)
+			return NO_TEXT;
+		Integer code = dictionary.get(value);
+		if (code == null) {
+			code = dictionary.size();
+			dictionary.put(value, code);
+			newEntries.add(value);
+		}
+		return code;
+	}
+
+	/**
+	 * Writes all buffered rows as a chunk to the store.
+	 * 
+	 * @throws InPUTException
+	 */
+	public synchronized void flush() throws InPUTException {
+		if (rows == 0)
+			return;
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream payload = new DataOutputStream(bytes);
+			payload.writeInt(rows);
+			payload.writeInt(newEntries.size());
+			for (String entry : newEntries)
+				writeText(payload, entry);
+			for (int i = 0; i < columns.size(); i++)
+				writeColumn(payload, i);
+			payload.flush();
+
+			byte[] content = bytes.toByteArray();
+			CRC32 crc = new CRC32();
+			crc.update(content);
+			ByteArrayOutputStream record = new ByteArrayOutputStream(content.length + 12);
+			DataOutputStream recordOut = new DataOutputStream(record);
+			recordOut.writeInt(content.length);
+			recordOut.write(content);
+			recordOut.writeLong(crc.getValue());
+			recordOut.flush();
+			out.write(record.toByteArray());
+		} catch (IOException e) {
+			throw new InPUTException("The results could not be written to the store '" + file.getPath() + "'.", e);
+		}
+		rows = 0;
+		newEntries.clear();
+	}
+
+	private void writeColumn(DataOutputStream payload, int column) throws IOException {
+		switch (columns.get(column).getType()) {
+		case DOUBLE:
+			double[] doubles = (double[]) buffers[column];
+			for (int i = 0; i < rows; i++)
+				payload.writeDouble(doubles[i]);
+			break;
+		case LONG:
+			long[] longs = (long[]) buffers[column];
+			for (int i = 0; i < rows; i++)
+				payload.writeLong(longs[i]);
+			break;
+		default:
+			int[] codes = (int[]) buffers[column];
+			for (int i = 0; i < rows; i++)
+				payload.writeInt(codes[i]);
+		}
+	}
+
+	static void writeText(DataOutputStream out, String text) throws IOException {
+		byte[] bytes = text.getBytes("UTF-8");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * @return the columns of the store, or null if nothing has been appended to a new store yet.
+	 */
+	public synchronized List<Column> getColumns() {
+		return columns;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Flushes the buffered rows and closes the store.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		closed = true;
+		if (out == null)
+			return;
+		try {
+			flush();
+		} catch (InPUTException e) {
+			throw new IOException(e.getMessage(), e.getCause());
+		} finally {
+			out.close();
+			out = null;
+		}
+	}
+}
@@ -0,0 +1,379 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.input.analysis;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import se.miun.itm.input.analysis.ResultStore.Column;
+import se.miun.itm.input.analysis.ResultStore.ColumnType;
+import se.miun.itm.input.model.InPUTException;
+import se.miun.itm.input.util.Q;
+
+/**
+ * A read-only, memory-mapped view of a {@link ResultStore} file. The columns of each chunk are exposed as primitive buffers
+ * that are backed by the file directly, so that scanning millions of results does not require any parsing or object
+ * creation per row. The view reflects the content of the store at the time it has been opened.
+ * 
+ * @author Felix Dobslaw
+ * 
+ * @NotThreadSafe
+ */
+public class ResultTable implements Closeable {
+
+	private static class Chunk {
+
+		private final ByteBuffer payload;
+
+		private final int rows;
+
+		private final int[] offsets;
+
+		private Chunk(ByteBuffer payload, int rows, int[] offsets) {
+			this.payload = payload;
+			this.rows = rows;
+			this.offsets = offsets;
+		}
+	}
+
+	private final File file;
+
+	private final RandomAccessFile in;
+
+	private final boolean mapped;
+
+	private final List<Column> columns = new ArrayList<Column>();
+
+	private final Map<String, Integer> columnIndex = new HashMap<String, Integer>();
+
+	private final List<String> dictionary = new ArrayList<String>();
+
+	private final List<Chunk> chunks = new ArrayList<Chunk>();
+
+	private long rowCount = 0;
+
+	private long validLength;
+
+	private ResultTable(File file, boolean mapped) throws IOException {
+		this.file = file;
+		this.mapped = mapped;
+		this.in = new RandomAccessFile(file, "r");
+	}
+
+	/**
+	 * Maps the result store in the given file. A torn chunk at the end of the file is ignored.
+	 * 
+	 * @param file
+	 * @return
+	 * @throws InPUTException
+	 */
+	public static ResultTable open(File file) throws InPUTException {
+		return open(file, true);
+	}
+
+	public static ResultTable open(String filePath) throws InPUTException {
+		return open(new File(filePath));
+	}
+
+	/**
+	 * Reads the columns, the dictionary and the valid length of the store in the given file, without mapping it. The chunks are
+	 * validated, but not retained, so that the file can be truncated once the table is closed.
+	 * 
+	 * @param file
+	 * @return
+	 * @throws InPUTException
+	 */
+	static ResultTable scan(File file) throws InPUTException {
+		return open(file, false);
+	}
+
+	private static ResultTable open(File file, boolean mapped) throws InPUTException {
+		ResultTable table = null;
+		try {
+			table = new ResultTable(file, mapped);
+			table.readHeader();
+			table.readChunks();
+			return table;
+		} catch (IOException e) {
+			if (table != null)
+				try {
+					table.close();
+				} catch (IOException ignored) {
+				}
+			throw new InPUTException("The result store '" + file.getPath() + "' could not be read.", e);
+		}
+	}
+
+	private void readHeader() throws IOException, InPUTException {
+		if (in.readInt() != ResultStore.MAGIC)
+			throw new InPUTException("The file '" + file.getPath() + "' is not a result store.");
+		int version = in.readInt();
+		if (version != ResultStore.VERSION)
+			throw new InPUTException("The result store '" + file.getPath() + "' has the unsupported version " + version + ".");
+		int size = in.readInt();
+		ColumnType[] types = ColumnType.values();
+		for (int i = 0; i < size; i++) {
+			ColumnType type = types[in.readByte()];
+			byte[] name = new byte[in.readInt()];
+			in.readFully(name);
+			columnIndex.put(new String(name, "UTF-8"), i);
+			columns.add(new Column(new String(name, "UTF-8"), type));
+		}
+		validLength = in.getFilePointer();
+	}
+
+	private void readChunks() throws IOException {
+		FileChannel channel = in.getChannel();
+		long length = channel.size();
+		long position = validLength;
+		int size;
+		while (position + 4 <= length) {
+			in.seek(position);
+			size = in.readInt();
+			if (size < 8 || position + 4 + size + 8 > length)
+				break;
+			ByteBuffer payload = mapped ? channel.map(FileChannel.MapMode.READ_ONLY, position + 4, size) : read(channel,
+					position + 4, size);
+			in.seek(position + 4 + size);
+			CRC32 crc = new CRC32();
+			crc.update(payload.duplicate());
+			if (crc.getValue() != in.readLong())
+				break;
+			Chunk chunk = readChunk(payload);
+			if (mapped)
+				chunks.add(chunk);
+			position += 4 + size + 8;
+			validLength = position;
+		}
+	}
+
+	private static ByteBuffer read(FileChannel channel, long position, int size) throws IOException {
+		ByteBuffer payload = ByteBuffer.allocate(size);
+		while (payload.hasRemaining())
+			if (channel.read(payload, position + payload.position()) < 0)
+				throw new EOFException();
+		payload.flip();
+		return payload;
+	}
+
+	private Chunk readChunk(ByteBuffer payload) throws IOException {
+		ByteBuffer buffer = payload.duplicate();
+		int rows = buffer.getInt();
+		int entries = buffer.getInt();
+		byte[] text;
+		for (int i = 0; i < entries; i++) {
+			text = new byte[buffer.getInt()];
+			buffer.get(text);
+			dictionary.add(new String(text, "UTF-8"));
+		}
+		int[] offsets = new int[columns.size()];
+		for (int i = 0; i < offsets.length; i++) {
+			offsets[i] = buffer.position();
+			buffer.position(buffer.position() + rows * width(columns.get(i).getType()));
+		}
+		rowCount += rows;
+		return new Chunk(payload, rows, offsets);
+	}
+
+	private static int width(ColumnType type) {
+		return type == ColumnType.TEXT ? 4 : 8;
+	}
+
+	public List<Column> getColumns() {
+		return Collections.unmodifiableList(columns);
+	}
+
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	public int getChunkCount() {
+		return chunks.size();
+	}
+
+	public int getChunkRows(int chunk) {
+		return chunks.get(chunk).rows;
+	}
+
+	long getValidLength() {
+		return validLength;
+	}
+
+	int getDictionarySize() {
+		return dictionary.size();
+	}
+
+	/**
+	 * @param code
+	 * @return the text for the dictionary code of a text column, or null for {@link ResultStore#NO_TEXT}.
+	 */
+	public String getText(int code) {
+		return code == ResultStore.NO_TEXT ? null : dictionary.get(code);
+	}
+
+	private ByteBuffer slice(int chunk, String column, ColumnType type) throws InPUTException {
+		Integer index = columnIndex.get(column);
+		if (index == null)
+			throw new InPUTException("The result store '" + file.getPath() + "' has no column '" + column + "'.");
+		if (columns.get(index).getType() != type)
+			throw new InPUTException("The column '" + column + "' is of type " + columns.get(index).getType() + ", not " + type
+					+ ".");
+		Chunk c = chunks.get(chunk);
+		ByteBuffer buffer = c.payload.duplicate();
+		buffer.position(c.offsets[index]);
+		buffer.limit(c.offsets[index] + c.rows * width(type));
+		return buffer.slice();
+	}
+
+	public DoubleBuffer getDoubles(int chunk, String column) throws InPUTException {
+		return slice(chunk, column, ColumnType.DOUBLE).asDoubleBuffer();
+	}
+
+	public LongBuffer getLongs(int chunk, String column) throws InPUTException {
+		return slice(chunk, column, ColumnType.LONG).asLongBuffer();
+	}
+
+	/**
+	 * @param chunk
+	 * @param column
+	 * @return the dictionary codes of the text column, to be resolved with {@link #getText(int)}.
+	 * @throws InPUTException
+	 */
+	public IntBuffer getCodes(int chunk, String column) throws InPUTException {
+		return slice(chunk, column, ColumnType.TEXT).asIntBuffer();
+	}
+
+	public ColumnType getType(String column) throws InPUTException {
+		Integer index = columnIndex.get(column);
+		if (index == null)
+			throw new InPUTException("The result store '" + file.getPath() + "' has no column '" + column + "'.");
+		return columns.get(index).getType();
+	}
+
+	/**
+	 * Reads a numerical column entirely, converting <code>long</code> values; missing values are NaN.
+	 * 
+	 * @param column
+	 * @return
+	 * @throws InPUTException
+	 */
+	public double[] readDoubles(String column) throws InPUTException {
+		double[] result = new double[(int) rowCount];
+		int position = 0;
+		boolean isLong = getType(column) == ColumnType.LONG;
+		for (int chunk = 0; chunk < chunks.size(); chunk++) {
+			if (isLong) {
+				LongBuffer longs = getLongs(chunk, column);
+				long value;
+				for (int i = 0; i < longs.limit(); i++) {
+					value = longs.get(i);
+					result[position++] = value == ResultStore.NO_LONG ? Double.NaN : value;
+				}
+			} else {
+				DoubleBuffer doubles = getDoubles(chunk, column);
+				doubles.get(result, position, doubles.limit());
+				position += doubles.limit();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Aggregates a numerical column, grouped by the values of the given columns. Missing values are skipped.
+	 * 
+	 * @param valueColumn
+	 * @param groupColumns
+	 * @return the statistics per group, keyed by the values of the group columns.
+	 * @throws InPUTException
+	 */
+	public Map<List<String>, OutputStatistics> aggregate(String valueColumn, String... groupColumns) throws InPUTException {
+		Map<List<String>, OutputStatistics> result = new HashMap<List<String>, OutputStatistics>();
+		boolean isLong = getType(valueColumn) == ColumnType.LONG;
+		for (int chunk = 0; chunk < chunks.size(); chunk++) {
+			DoubleBuffer doubles = isLong ? null : getDoubles(chunk, valueColumn);
+			LongBuffer longs = isLong ? getLongs(chunk, valueColumn) : null;
+			String[][] groups = new String[groupColumns.length][];
+			for (int i = 0; i < groupColumns.length; i++)
+				groups[i] = readStrings(chunk, groupColumns[i]);
+
+			double value;
+			for (int row = 0; row < chunks.get(chunk).rows; row++) {
+				if (isLong)
+					value = longs.get(row) == ResultStore.NO_LONG ? Double.NaN : longs.get(row);
+				else
+					value = doubles.get(row);
+				if (Double.isNaN(value))
+					continue;
+				String[] key = new String[groupColumns.length];
+				for (int i = 0; i < key.length; i++)
+					key[i] = groups[i][row];
+				List<String> group = Arrays.asList(key);
+				OutputStatistics stats = result.get(group);
+				if (stats == null) {
+					stats = new OutputStatistics();
+					result.put(group, stats);
+				}
+				stats.add(value);
+			}
+		}
+		return result;
+	}
+
+	private String[] readStrings(int chunk, String column) throws InPUTException {
+		String[] result = new String[chunks.get(chunk).rows];
+		switch (getType(column)) {
+		case DOUBLE:
+			DoubleBuffer doubles = getDoubles(chunk, column);
+			for (int i = 0; i < result.length; i++)
+				result[i] = Double.isNaN(doubles.get(i)) ? Q.NULL : Double.toString(doubles.get(i));
+			break;
+		case LONG:
+			LongBuffer longs = getLongs(chunk, column);
+			for (int i = 0; i < result.length; i++)
+				result[i] = longs.get(i) == ResultStore.NO_LONG ? Q.NULL : Long.toString(longs.get(i));
+			break;
+		default:
+			IntBuffer codes = getCodes(chunk, column);
+			for (int i = 0; i < result.length; i++)
+				result[i] = codes.get(i) == ResultStore.NO_TEXT ? Q.NULL : dictionary.get(codes.get(i));
+		}
+		return result;
+	}
+
+	@Override
+	public void close() throws IOException {
+		chunks.clear();
+		in.close();
+	}
+}
@@ -0,0 +1,220 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.input.analysis;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A merging t-digest (Dunning, Ertl) for the one-pass estimation of quantiles. The amount of centroids, and thereby the memory
+ * used, only depends on the compression, not on the amount of values added. Estimates are most accurate for extreme quantiles.
+ * 
+ * @author Felix Dobslaw
+ * 
+ * @NotThreadSafe
+ */
+public class TDigest {
+
+	public static final double DEFAULT_COMPRESSION = 100;
+
+	private final double compression;
+
+	private double[] means;
+
+	private double[] weights;
+
+	private int centroids = 0;
+
+	private double[] bufferedMeans;
+
+	private double[] bufferedWeights;
+
+	private int buffered = 0;
+
+	private double totalWeight = 0;
+
+	private double min = Double.POSITIVE_INFINITY;
+
+	private double max = Double.NEGATIVE_INFINITY;
+
+	public TDigest() {
+		this(DEFAULT_COMPRESSION);
+	}
+
+	public TDigest(double compression) {
+		if (compression < 10)
+			throw new IllegalArgumentException("The compression of a t-digest has to be at least 10.");
+		this.compression = compression;
+		int capacity = (int) Math.ceil(2 * compression) + 10;
+		means = new double[capacity];
+		weights = new double[capacity];
+		bufferedMeans = new double[5 * capacity];
+		bufferedWeights = new double[5 * capacity];
+	}
+
+	public void add(double value) {
+		add(value, 1);
+	}
+
+	private void add(double mean, double weight) {
+		if (buffered == bufferedMeans.length)
+			compress();
+		bufferedMeans[buffered] = mean;
+		bufferedWeights[buffered] = weight;
+		buffered++;
+		totalWeight += weight;
+		min = Math.min(min, mean);
+		max = Math.max(max, mean);
+	}
+
+	/**
+	 * Adds all values summarized by the other digest to this digest.
+	 * 
+	 * @param other
+	 */
+	public void merge(TDigest other) {
+		other.compress();
+		for (int i = 0; i < other.centroids; i++)
+			add(other.means[i], other.weights[i]);
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	private void compress() {
+		if (buffered == 0)
+			return;
+
+		int size = centroids + buffered;
+		double[] allMeans = new double[size];
+		double[] allWeights = new double[size];
+		System.arraycopy(means, 0, allMeans, 0, centroids);
+		System.arraycopy(weights, 0, allWeights, 0, centroids);
+		System.arraycopy(bufferedMeans, 0, allMeans, centroids, buffered);
+		System.arraycopy(bufferedWeights, 0, allWeights, centroids, buffered);
+		sortByMean(allMeans, allWeights);
+
+		centroids = 0;
+		buffered = 0;
+
+		double weightSoFar = 0;
+		double currentMean = allMeans[0];
+		double currentWeight = allWeights[0];
+		double proposed;
+		for (int i = 1; i < size; i++) {
+			proposed = currentWeight + allWeights[i];
+			if (k((weightSoFar + proposed) / totalWeight) - k(weightSoFar / totalWeight) <= 1) {
+				currentMean += (allMeans[i] - currentMean) * allWeights[i] / proposed;
+				currentWeight = proposed;
+			} else {
+				emit(currentMean, currentWeight);
+				weightSoFar += currentWeight;
+				currentMean = allMeans[i];
+				currentWeight = allWeights[i];
+			}
+		}
+		emit(currentMean, currentWeight);
+	}
+
+	private void emit(double mean, double weight) {
+		if (centroids == means.length) {
+			means = Arrays.copyOf(means, 2 * centroids);
+			weights = Arrays.copyOf(weights, 2 * centroids);
+		}
+		means[centroids] = mean;
+		weights[centroids] = weight;
+		centroids++;
+	}
+
+	// the k1 scale function, which keeps centroids small at the tails.
+	private double k(double q) {
+		return compression / (2 * Math.PI) * Math.asin(2 * Math.min(1, Math.max(0, q)) - 1);
+	}
+
+	private static void sortByMean(double[] means, double[] weights) {
+		Integer[] order = new Integer[means.length];
+		for (int i = 0; i < order.length; i++)
+			order[i] = i;
+		final double[] keys = means;
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(keys[a], keys[b]);
+			}
+		});
+		double[] sortedMeans = new double[means.length];
+		double[] sortedWeights = new double[means.length];
+		for (int i = 0; i < order.length; i++) {
+			sortedMeans[i] = means[order[i]];
+			sortedWeights[i] = weights[order[i]];
+		}
+		System.arraycopy(sortedMeans, 0, means, 0, means.length);
+		System.arraycopy(sortedWeights, 0, weights, 0, weights.length);
+	}
+
+	/**
+	 * Estimates the value below which the fraction <code>q</code> of all added values lie.
+	 * 
+	 * @param q
+	 *            in [0, 1]
+	 * @return the estimate, or NaN if no value has been added.
+	 */
+	public double quantile(double q) {
+		if (q < 0 || q > 1)
+			throw new IllegalArgumentException("A quantile has to be in [0, 1], but was " + q + ".");
+		compress();
+		if (centroids == 0)
+			return Double.NaN;
+		if (centroids == 1)
+			return means[0];
+
+		double target = q * totalWeight;
+		if (target <= weights[0] / 2)
+			return interpolate(target, 0, min, weights[0] / 2, means[0]);
+
+		double cumulative = weights[0] / 2;
+		double next;
+		for (int i = 1; i < centroids; i++) {
+			next = cumulative + (weights[i - 1] + weights[i]) / 2;
+			if (target <= next)
+				return interpolate(target, cumulative, means[i - 1], next, means[i]);
+			cumulative = next;
+		}
+		return interpolate(target, cumulative, means[centroids - 1], totalWeight, max);
+	}
+
+	private static double interpolate(double x, double x0, double y0, double x1, double y1) {
+		if (x1 == x0)
+			return y0;
+		return y0 + (x - x0) * (y1 - y0) / (x1 - x0);
+	}
+
+	public long size() {
+		return (long) totalWeight;
+	}
+
+	/**
+	 * returns the amount of centroids after compression, which bounds the memory consumption.
+	 * 
+	 * @return
+	 */
+	public int centroidCount() {
+		compress();
+		return centroids;
+	}
+}
@@ -0,0 +1,421 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.input.lazy;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import se.miun.itm.input.IExperiment;
+import se.miun.itm.input.model.InPUTException;
+import se.miun.itm.input.util.DesignFingerprint;
+import se.miun.itm.input.util.Q;
+
+/**
+ * A compact on-disk index of all experiments in an experimental folder. For each experiment, it stores the id, the fingerprints
+ * of its algorithm design, problem features and preferences, the amount of outputs, and the state of its execution. That way,
+ * deciding which experiments remain to be run, or which investigate a given configuration, requires a single read of the
+ * catalog instead of opening every archive.
+ * 
+ * The catalog is an append-only journal of checksummed records, of which the last one per experiment is valid. Each update is
+ * appended in a single write, so that a crash can at most lose the record that is written at that moment; such a torn record is
+ * dropped on the next open. The journal is compacted by an atomic file replacement once it has grown to twice the amount of
+ * experiments.
+ * 
+ * @author Felix Dobslaw
+ * 
+ * @ThreadSafe
+ */
+public class ExperimentCatalog {
+
+	public enum State {
+		PENDING, RUNNING, COMPLETED, FAILED
+	}
+
+	/**
+	 * The catalog information about a single experiment.
+	 */
+	public static class Entry {
+
+		private final String id;
+
+		private final long algorithmHash;
+
+		private final long problemHash;
+
+		private final long preferencesHash;
+
+		private final int outputs;
+
+		private final State state;
+
+		public Entry(String id, long algorithmHash, long problemHash, long preferencesHash, int outputs, State state) {
+			this.id = id;
+			this.algorithmHash = algorithmHash;
+			this.problemHash = problemHash;
+			this.preferencesHash = preferencesHash;
+			this.outputs = outputs;
+			this.state = state;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public long getAlgorithmHash() {
+			return algorithmHash;
+		}
+
+		public long getProblemHash() {
+			return problemHash;
+		}
+
+		public long getPreferencesHash() {
+			return preferencesHash;
+		}
+
+		public int getOutputs() {
+			return outputs;
+		}
+
+		public State getState() {
+			return state;
+		}
+
+		/**
+		 * Does the experiment investigate the same combination of algorithm and properties as the given entry?
+		 * 
+		 * @param entry
+		 * @return
+		 */
+		public boolean investigatesSameConfiguration(Entry entry) {
+			return algorithmHash == entry.algorithmHash && preferencesHash == entry.preferencesHash;
+		}
+
+		private Entry with(int outputs, State state) {
+			return new Entry(id, algorithmHash, problemHash, preferencesHash, outputs, state);
+		}
+
+		@Override
+		public String toString() {
+			return id + " " + state + " (" + outputs + " outputs)";
+		}
+	}
+
+	public static final String CATALOG_FILE = "experiments" + Q.CATALOG;
+
+	private static final int MAGIC = 0x494e4354; // "INCT"
+
+	private static final int HEADER_SIZE = 4;
+
+	private static final int MAX_RECORD_SIZE = 0xffff + 64;
+
+	private final File file;
+
+	private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+
+	private int records = 0;
+
+	private ExperimentCatalog(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Opens, and if not existing creates, the catalog of the given experimental folder.
+	 * 
+	 * @param folderPath
+	 * @return
+	 * @throws InPUTException
+	 */
+	public static ExperimentCatalog open(String folderPath) throws InPUTException {
+		File folder = new File(folderPath);
+		if (!folder.isDirectory())
+			throw new InPUTException("There exists no folder: '" + folderPath + "'.");
+		ExperimentCatalog catalog = new ExperimentCatalog(new File(folder, CATALOG_FILE));
+		try {
+			catalog.load();
+		} catch (IOException e) {
+			throw new InPUTException("The experiment catalog in '" + folderPath + "' could not be read.", e);
+		}
+		return catalog;
+	}
+
+	private void load() throws IOException {
+		if (!file.exists()) {
+			writeJournal(Collections.<Entry> emptyList(), file);
+			return;
+		}
+
+		long validLength = HEADER_SIZE;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != MAGIC)
+				throw new IOException("The file '" + file + "' is not an experiment catalog.");
+			Entry entry;
+			while ((entry = readRecord(in)) != null) {
+				entries.put(entry.getId(), entry);
+				records++;
+				validLength += recordLength(entry);
+			}
+		} catch (EOFException e) {
+			// a record that has been torn by a crash; it is truncated below.
+		} finally {
+			in.close();
+		}
+
+		truncate(validLength);
+	}
+
+	private void truncate(long validLength) throws IOException {
+		if (file.length() == validLength)
+			return;
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(validLength);
+		} finally {
+			raf.close();
+		}
+	}
+
+	private static Entry readRecord(DataInputStream in) throws IOException {
+		int length;
+		try {
+			length = in.readInt();
+		} catch (EOFException e) {
+			return null;
+		}
+		if (length <= 0 || length > MAX_RECORD_SIZE)
+			return null;
+		byte[] record = new byte[length];
+		in.readFully(record);
+		long checksum = in.readLong();
+		if (checksum(record) != checksum)
+			return null;
+		return fromBytes(record);
+	}
+
+	private static Entry fromBytes(byte[] record) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+		return new Entry(in.readUTF(), in.readLong(), in.readLong(), in.readLong(), in.readInt(), State.values()[in.readByte()]);
+	}
+
+	private static byte[] toBytes(Entry entry) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeUTF(entry.getId());
+		out.writeLong(entry.getAlgorithmHash());
+		out.writeLong(entry.getProblemHash());
+		out.writeLong(entry.getPreferencesHash());
+		out.writeInt(entry.getOutputs());
+		out.writeByte(entry.getState().ordinal());
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	private static byte[] toRecord(Entry entry) throws IOException {
+		byte[] payload = toBytes(entry);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length + 12);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(payload.length);
+		out.write(payload);
+		out.writeLong(checksum(payload));
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	private static long recordLength(Entry entry) throws IOException {
+		return toBytes(entry).length + 12;
+	}
+
+	private static long checksum(byte[] payload) {
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		return crc.getValue();
+	}
+
+	/**
+	 * Registers the experiment with the catalog, if it is not known yet, and updates the amount of outputs otherwise.
+	 * 
+	 * @param experiment
+	 * @return
+	 * @throws InPUTException
+	 */
+	public synchronized Entry register(IExperiment experiment) throws InPUTException {
+		Entry entry = entries.get(experiment.getId());
+		if (entry == null)
+			entry = new Entry(experiment.getId(), DesignFingerprint.of(experiment.getAlgorithmDesign()),
+					DesignFingerprint.of(experiment.getProblemFeatures()), DesignFingerprint.of(experiment.getPreferences()),
+					experiment.getOutput().size(), State.PENDING);
+		else if (entry.getOutputs() == experiment.getOutput().size())
+			return entry;
+		else
+			entry = entry.with(experiment.getOutput().size(), entry.getState());
+		append(entry);
+		return entry;
+	}
+
+	/**
+	 * Sets the execution state of the experiment, and updates its amount of outputs.
+	 * 
+	 * @param experiment
+	 * @param state
+	 * @return
+	 * @throws InPUTException
+	 */
+	public synchronized Entry update(IExperiment experiment, State state) throws InPUTException {
+		Entry entry = register(experiment);
+		if (entry.getState() != state) {
+			entry = entry.with(entry.getOutputs(), state);
+			append(entry);
+		}
+		return entry;
+	}
+
+	private void append(Entry entry) throws InPUTException {
+		try {
+			byte[] record = toRecord(entry);
+			FileOutputStream out = new FileOutputStream(file, true);
+			try {
+				out.write(record);
+			} finally {
+				out.close();
+			}
+			entries.put(entry.getId(), entry);
+			records++;
+			if (records > 2 * entries.size() + 16)
+				compact();
+		} catch (IOException e) {
+			throw new InPUTException("The experiment catalog '" + file + "' could not be updated.", e);
+		}
+	}
+
+	/**
+	 * Rewrites the journal to contain the valid record per experiment only. The catalog file is replaced atomically.
+	 * 
+	 * @throws IOException
+	 */
+	public synchronized void compact() throws IOException {
+		File tmp = new File(file.getPath() + ".tmp");
+		writeJournal(entries.values(), tmp);
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		records = entries.size();
+	}
+
+	private static void writeJournal(Iterable<Entry> entries, File to) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(to)));
+		try {
+			out.writeInt(MAGIC);
+			for (Entry entry : entries)
+				out.write(toRecord(entry));
+		} finally {
+			out.close();
+		}
+	}
+
+	public synchronized Entry get(String experimentId) {
+		return entries.get(experimentId);
+	}
+
+	public synchronized boolean contains(String experimentId) {
+		return entries.containsKey(experimentId);
+	}
+
+	/**
+	 * Has the experiment by the given id been completed?
+	 * 
+	 * @param experimentId
+	 * @return
+	 */
+	public synchronized boolean isCompleted(String experimentId) {
+		Entry entry = entries.get(experimentId);
+		return entry != null && entry.getState() == State.COMPLETED;
+	}
+
+	/**
+	 * Returns all experiments that are in the given state.
+	 * 
+	 * @param state
+	 * @return
+	 */
+	public synchronized List<Entry> getEntries(State state) {
+		List<Entry> result = new ArrayList<Entry>();
+		for (Entry entry : entries.values())
+			if (entry.getState() == state)
+				result.add(entry);
+		return result;
+	}
+
+	/**
+	 * Returns all experiments that investigate the same combination of algorithm and properties as the given experiment.
+	 * 
+	 * @param configuration
+	 * @return
+	 * @throws InPUTException
+	 */
+	public List<Entry> getEntriesInvestigating(IExperiment configuration) throws InPUTException {
+		long algorithmHash = DesignFingerprint.of(configuration.getAlgorithmDesign());
+		long preferencesHash = DesignFingerprint.of(configuration.getPreferences());
+		List<Entry> result = new ArrayList<Entry>();
+		synchronized (this) {
+			for (Entry entry : entries.values())
+				if (entry.getAlgorithmHash() == algorithmHash && entry.getPreferencesHash() == preferencesHash)
+					result.add(entry);
+		}
+		return result;
+	}
+
+	public synchronized List<Entry> getEntries() {
+		return new ArrayList<Entry>(entries.values());
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns a criterion for folder based experiment sources that accepts all experiments which have not been completed.
+	 * 
+	 * @return
+	 */
+	public ExperimentFilterCriterion notCompleted() {
+		return new ExperimentFilterCriterion() {
+			@Override
+			public boolean accept(String fileName) {
+				return fileName.endsWith(Q.EXP) && !isCompleted(fileName);
+			}
+		};
+	}
+}
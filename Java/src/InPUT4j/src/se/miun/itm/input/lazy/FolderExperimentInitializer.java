@@ -39,6 +39,9 @@ public class FolderExperimentInitializer implements LazyExperimentInitializer {
 
 		//TODO this is problem specific, and has to be added as a criteria from outside
 		private boolean hasAlreadyBeenRun(String name) {
+			ExperimentCatalog catalog = conductor.getCatalog();
+			if (catalog != null)
+				return catalog.isCompleted(name);
 			return name.contains("_mean");
 		}
 
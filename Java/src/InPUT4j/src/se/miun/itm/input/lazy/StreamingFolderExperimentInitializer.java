@@ -0,0 +1,332 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.input.lazy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import se.miun.itm.input.ExperimentConductor;
+import se.miun.itm.input.IExperiment;
+import se.miun.itm.input.util.Q;
+
+/**
+ * A folder based experiment source that, in contrast to the <code>FolderExperimentInitializer</code>, does not list the folder up
+ * front. The folder is streamed entry by entry, and each experiment is only imported once it is requested. Optionally, the folder
+ * is tailed after the initial pass, so that experiments that are dropped into the folder later are handed out as well; in that
+ * case, <code>hasNext</code> blocks until a new experiment arrives or the source is closed. Producers should write experiments
+ * under a different name and rename them into place, so that only complete archives are seen.
+ * <p>
+ * While tailing, the names of the most recently discovered experiments are remembered, so that an experiment seen by both the
+ * scan and the watcher is handed out once. This window is bounded; should the file system report lost events, the folder is
+ * rescanned, and experiments that have dropped out of the window are only handed out again if the conductor has not imported
+ * them yet, and its catalog, if any, does not record them as completed. {@link #close()} may be called from any thread.
+ * 
+ * @author Felix Dobslaw
+ * 
+ * @NotThreadSafe
+ */
+public class StreamingFolderExperimentInitializer implements LazyExperimentInitializer, Closeable {
+
+	private static final long POLL_INTERVAL_MS = 200;
+
+	public static final int DEFAULT_SEEN_CAPACITY = 4096;
+
+	public static final ExperimentFilterCriterion ALL_EXPERIMENTS = new ExperimentFilterCriterion() {
+		@Override
+		public boolean accept(String fileName) {
+			return fileName.endsWith(Q.EXP);
+		}
+	};
+
+	private final Path folder;
+
+	private final ExperimentConductor<?> conductor;
+
+	private final ExperimentFilterCriterion criterion;
+
+	private final WatchService watcher;
+
+	private final Queue<Path> discovered = new LinkedList<Path>();
+
+	// only maintained while tailing, so that an experiment seen by the scan and the watcher is handed out once.
+	private final Set<String> seen;
+
+	// guards the scan, which may be closed by another thread while it is iterated.
+	private final Object scanLock = new Object();
+
+	private volatile DirectoryStream<Path> stream;
+
+	private volatile Iterator<Path> scan;
+
+	private volatile boolean closed = false;
+
+	// set while a rescan after lost events is iterated.
+	private boolean rescanning = false;
+
+	public StreamingFolderExperimentInitializer(String folderPath, ExperimentConductor<?> conductor) {
+		this(folderPath, conductor, ALL_EXPERIMENTS, false);
+	}
+
+	/**
+	 * A source for all experiments in <code>folderPath</code> that are accepted by <code>criterion</code>. If <code>watch</code>
+	 * is set, the folder is tailed until {@link #close()} is called.
+	 * 
+	 * @param folderPath
+	 * @param conductor
+	 * @param criterion
+	 * @param watch
+	 */
+	public StreamingFolderExperimentInitializer(String folderPath, ExperimentConductor<?> conductor,
+			ExperimentFilterCriterion criterion, boolean watch) {
+		this(folderPath, conductor, criterion, watch, DEFAULT_SEEN_CAPACITY);
+	}
+
+	/**
+	 * As {@link #StreamingFolderExperimentInitializer(String, ExperimentConductor, ExperimentFilterCriterion, boolean)}, but
+	 * remembers at most <code>seenCapacity</code> experiment names while tailing.
+	 * 
+	 * @param folderPath
+	 * @param conductor
+	 * @param criterion
+	 * @param watch
+	 * @param seenCapacity
+	 */
+	public StreamingFolderExperimentInitializer(String folderPath, ExperimentConductor<?> conductor,
+			ExperimentFilterCriterion criterion, boolean watch, int seenCapacity) {
+		if (seenCapacity < 1)
+			throw new IllegalArgumentException("At least one experiment name has to be remembered.");
+		this.conductor = conductor;
+		this.criterion = criterion;
+		folder = initFolder(folderPath);
+		seen = watch ? initSeen(seenCapacity) : null;
+		try {
+			// register before the scan starts, so that no experiment arriving during the scan is missed.
+			watcher = watch ? initWatcher(folder) : null;
+			openScan();
+		} catch (IOException e) {
+			throw new IllegalArgumentException("The folder '" + folderPath + "' cannot be read.", e);
+		}
+	}
+
+	private static Path initFolder(String folderPath) {
+		Path folder = Paths.get(folderPath);
+		if (!Files.isDirectory(folder))
+			throw new IllegalArgumentException("There exists no folder: '" + folderPath + "'.");
+		return folder;
+	}
+
+	private static Set<String> initSeen(final int capacity) {
+		return Collections.newSetFromMap(new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+				return size() > capacity;
+			}
+		});
+	}
+
+	private static WatchService initWatcher(Path folder) throws IOException {
+		WatchService watcher = FileSystems.getDefault().newWatchService();
+		folder.register(watcher, StandardWatchEventKinds.ENTRY_CREATE);
+		return watcher;
+	}
+
+	private void openScan() throws IOException {
+		synchronized (scanLock) {
+			if (closed)
+				return;
+			stream = Files.newDirectoryStream(folder);
+			scan = stream.iterator();
+		}
+	}
+
+	private void closeScan() throws IOException {
+		synchronized (scanLock) {
+			if (scan == null)
+				return;
+			scan = null;
+			stream.close();
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (discovered.isEmpty() && !closed) {
+			if (scan != null)
+				scanNext();
+			else if (watcher != null)
+				pollWatcher();
+			else
+				return false;
+		}
+		return !discovered.isEmpty();
+	}
+
+	private void scanNext() {
+		Path next = null;
+		try {
+			synchronized (scanLock) {
+				if (scan == null)
+					return;
+				if (scan.hasNext())
+					next = scan.next();
+				else {
+					closeScan();
+					rescanning = false;
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("The folder '" + folder + "' cannot be read.", e);
+		}
+		if (next != null)
+			offer(next);
+	}
+
+	private void pollWatcher() {
+		WatchKey key;
+		try {
+			key = watcher.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			try {
+				close();
+			} catch (IOException ioe) {
+				throw new IllegalStateException("The folder '" + folder + "' cannot be released.", ioe);
+			}
+			return;
+		} catch (ClosedWatchServiceException e) {
+			return;
+		}
+
+		if (key == null)
+			return;
+
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+				rescan();
+			else
+				offer(folder.resolve((Path) event.context()));
+		}
+		key.reset();
+	}
+
+	// events have been lost. The seen set is bounded, so the rescan also skips experiments the conductor knows about already.
+	void rescan() {
+		rescanning = true;
+		try {
+			openScan();
+		} catch (IOException e) {
+			throw new IllegalStateException("The folder '" + folder + "' cannot be rescanned.", e);
+		}
+	}
+
+	private void offer(Path path) {
+		String name = path.getFileName().toString();
+		if (!criterion.accept(name))
+			return;
+		if (seen != null && !seen.add(name))
+			return;
+		if (rescanning && isKnown(name))
+			return;
+		discovered.add(path);
+	}
+
+	private boolean isKnown(String experimentId) {
+		if (conductor.hasImported(experimentId))
+			return true;
+		ExperimentCatalog catalog = conductor.getCatalog();
+		return catalog != null && catalog.isCompleted(experimentId);
+	}
+
+	@Override
+	public IExperiment next() {
+		if (!hasNext())
+			throw new NoSuchElementException("There are no more experiments in folder '" + folder + "'.");
+		Path experimentFile = discovered.poll();
+		return initExperiment(experimentFile, experimentFile.getFileName().toString());
+	}
+
+	private IExperiment initExperiment(Path experimentFile, String experimentId) {
+		try {
+			return conductor.importExperiment(experimentId, experimentFile.toAbsolutePath().toString());
+		} catch (Exception e) {
+			throw new IllegalStateException("The experiment '" + experimentFile + "' cannot be imported.", e);
+		}
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("Experiments cannot be removed from a streamed folder.");
+	}
+
+	/**
+	 * Returns the amount of experiments that have been discovered, but not yet handed out. As the folder is streamed, this is a
+	 * lower bound of the remaining experiments only.
+	 */
+	@Override
+	public int size() {
+		return discovered.size();
+	}
+
+	/**
+	 * Stops tailing the folder and releases all file system resources. Experiments that have been discovered already can still be
+	 * retrieved.
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		IOException failure = null;
+		try {
+			closeScan();
+		} catch (IOException e) {
+			failure = e;
+		}
+		if (watcher != null)
+			try {
+				watcher.close();
+			} catch (IOException e) {
+				if (failure == null)
+					failure = e;
+				else
+					failure.addSuppressed(e);
+			}
+		if (failure != null)
+			throw failure;
+	}
+}
@@ -238,7 +238,8 @@ public class Design implements IDesign {
 			setValueForNoneExplicitParam(paramId, value);
 	}
 
-	private boolean isReadOnly() {
+	@Override
+	public boolean isReadOnly() {
 		return elementCache.isReadOnly();
 	}
 
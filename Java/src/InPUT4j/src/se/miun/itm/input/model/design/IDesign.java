@@ -66,6 +66,11 @@ public interface IDesign extends Identifiable, Exportable, Valuable,
 	 */
 	void setReadOnly();
 
+	/**
+	 * @return true if the design has been set read only.
+	 */
+	boolean isReadOnly();
+
 	/**
 	 * returns the design space which this design is an instance of.
 	 * @return
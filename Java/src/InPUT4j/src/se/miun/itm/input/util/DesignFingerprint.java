@@ -0,0 +1,97 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.input.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import se.miun.itm.input.export.PropertiesExporter;
+import se.miun.itm.input.model.InPUTException;
+import se.miun.itm.input.model.design.IDesign;
+
+/**
+ * Calculates canonical 64 bit hashes of designs. Two designs have the same fingerprint if they share the design space and all
+ * parameter values, regardless of their ids and the order in which the values have been set.
+ * 
+ * @author Felix Dobslaw
+ * 
+ * @ThreadSafe
+ */
+public class DesignFingerprint {
+
+	public static final long NONE = 0L;
+
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private static final PropertiesExporter exporter = new PropertiesExporter();
+
+	/**
+	 * returns the fingerprint of the design, or {@link #NONE} if no design is given.
+	 * 
+	 * @param design
+	 * @return
+	 * @throws InPUTException
+	 */
+	public static long of(IDesign design) throws InPUTException {
+		if (design == null)
+			return NONE;
+
+		Properties values = design.export(exporter);
+		List<String> paramIds = new ArrayList<String>(values.stringPropertyNames());
+		Collections.sort(paramIds);
+
+		long hash = hash(FNV_OFFSET, design.getSpace().getId());
+		for (String paramId : paramIds) {
+			hash = hash(hash, paramId);
+			hash = hash(hash, values.getProperty(paramId));
+		}
+		return hash == NONE ? FNV_OFFSET : hash;
+	}
+
+	/**
+	 * combines the given fingerprints order-sensitively.
+	 * 
+	 * @param fingerprints
+	 * @return
+	 */
+	public static long combine(long... fingerprints) {
+		long hash = FNV_OFFSET;
+		for (long fingerprint : fingerprints)
+			for (int i = 0; i < 8; i++) {
+				hash ^= (fingerprint >>> (i * 8)) & 0xff;
+				hash *= FNV_PRIME;
+			}
+		return hash;
+	}
+
+	private static long hash(long hash, String value) {
+		for (int i = 0; i < value.length(); i++) {
+			hash ^= value.charAt(i);
+			hash *= FNV_PRIME;
+		}
+		// separator, so that "ab"+"c" and "a"+"bc" differ.
+		hash ^= 0xff;
+		hash *= FNV_PRIME;
+		return hash;
+	}
+}
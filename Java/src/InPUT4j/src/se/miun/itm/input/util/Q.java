@@ -191,6 +191,10 @@ public class Q {
 
 	public static final String INP = ".inp";
 
+	public static final String CATALOG = ".catalog";
+
+	public static final String RESULTS = ".results";
+
 	public static final String CONFIG_ID = "config";
 
 	public static final String CONFIG = CONFIG_ID + XML;
@@ -0,0 +1,181 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.input.tuning;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import se.miun.itm.input.IExperiment;
+import se.miun.itm.input.model.InPUTException;
+import se.miun.itm.input.model.design.IDesign;
+import se.miun.itm.input.util.DesignFingerprint;
+
+/**
+ * A study-wide cache of evaluation results. Results are keyed by the canonical fingerprint of the configuration
+ * (algorithm design and preferences), the fingerprint of the problem instance, and the seed of the run. The seed is
+ * the replication index that a design requests: the replications of a configuration on an instance are counted per
+ * design, so that a design that proposes a configuration again with n replications maps them to the seeds 0 to n-1.
+ * The measured ones are served from the cache, and only the missing ones are run.
+ * 
+ * @author Felix Dobslaw
+ * 
+ * @ThreadSafe
+ */
+public class EvaluationCache {
+
+	/**
+	 * identifies a single run: the configuration, the problem instance, and the seed, which is the number of the
+	 * replication unless given explicitly.
+	 */
+	public static final class Key {
+
+		private final long configuration;
+
+		private final long problem;
+
+		private final long seed;
+
+		private Key(long configuration, long problem, long seed) {
+			this.configuration = configuration;
+			this.problem = problem;
+			this.seed = seed;
+		}
+
+		public long getSeed() {
+			return seed;
+		}
+
+		private Key withSeed(long seed) {
+			return new Key(configuration, problem, seed);
+		}
+
+		@Override
+		public int hashCode() {
+			long hash = DesignFingerprint.combine(configuration, problem, seed);
+			return (int) (hash ^ (hash >>> 32));
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return configuration == other.configuration && problem == other.problem && seed == other.seed;
+		}
+
+		@Override
+		public String toString() {
+			return Long.toHexString(configuration) + "/" + Long.toHexString(problem) + "/" + seed;
+		}
+	}
+
+	private final Map<Key, IDesign> results = new HashMap<Key, IDesign>();
+
+	// the amount of replications handed out per configuration and instance in the current design, keyed with seed 0.
+	private final Map<Key, Integer> replications = new HashMap<Key, Integer>();
+
+	private int hits;
+
+	private int misses;
+
+	/**
+	 * returns the key of the run of the experiment with the given seed.
+	 * @param experiment
+	 * @param seed
+	 * @return
+	 * @throws InPUTException
+	 */
+	public static Key keyOf(IExperiment experiment, long seed) throws InPUTException {
+		long configuration = DesignFingerprint.combine(DesignFingerprint.of(experiment.getAlgorithmDesign()),
+				DesignFingerprint.of(experiment.getPreferences()));
+		return new Key(configuration, DesignFingerprint.of(experiment.getProblemFeatures()), seed);
+	}
+
+	/**
+	 * returns the key of the next replication of the experiment, counting the replications of its configuration on its
+	 * problem instance that have been requested since the replication counts have been reset.
+	 * @param experiment
+	 * @return
+	 * @throws InPUTException
+	 */
+	public synchronized Key nextReplication(IExperiment experiment) throws InPUTException {
+		Key pair = keyOf(experiment, 0);
+		Integer amount = replications.get(pair);
+		int replication = amount == null ? 0 : amount;
+		replications.put(pair, replication + 1);
+		return pair.withSeed(replication);
+	}
+
+	/**
+	 * @param key
+	 * @return the result of the run, or null if it has not been measured.
+	 */
+	public synchronized IDesign lookup(Key key) {
+		IDesign result = results.get(key);
+		if (result == null)
+			misses++;
+		else
+			hits++;
+		return result;
+	}
+
+	public synchronized void store(Key key, IDesign result) {
+		results.put(key, result);
+	}
+
+	/**
+	 * @param experiment
+	 * @return the amount of replications of the configuration of the experiment on its problem instance that have been
+	 *         requested since the replication counts have been reset.
+	 * @throws InPUTException
+	 */
+	public synchronized int getAmountReplications(IExperiment experiment) throws InPUTException {
+		Integer amount = replications.get(keyOf(experiment, 0));
+		return amount == null ? 0 : amount;
+	}
+
+	/**
+	 * restarts the replication counts, which the tuners do at the start of each design. The measured results are kept.
+	 */
+	public synchronized void resetReplications() {
+		replications.clear();
+	}
+
+	public synchronized int size() {
+		return results.size();
+	}
+
+	public synchronized int getHits() {
+		return hits;
+	}
+
+	public synchronized int getMisses() {
+		return misses;
+	}
+
+	/**
+	 * forgets all results and replication counts.
+	 */
+	public synchronized void clear() {
+		results.clear();
+		replications.clear();
+		hits = 0;
+		misses = 0;
+	}
+}
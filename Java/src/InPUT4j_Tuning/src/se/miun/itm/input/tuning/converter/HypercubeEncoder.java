@@ -0,0 +1,229 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.input.tuning.converter;
+
+import java.util.List;
+import java.util.Random;
+
+import se.miun.itm.input.IExperiment;
+import se.miun.itm.input.IInPUT;
+import se.miun.itm.input.model.InPUTException;
+import se.miun.itm.input.model.param.ParamStore;
+import se.miun.itm.input.tuning.sequential.spot.SPOTQ;
+import se.miun.itm.input.tuning.sequential.spot.SpotDesign;
+import se.miun.itm.input.tuning.sequential.spot.SpotParam;
+import se.miun.itm.input.tuning.sequential.spot.SpotROI;
+
+/**
+ * Maps the region of interest of an <code>IInPUT</code> algorithm design space to the unit hypercube, so that tuners can
+ * propose configurations as points in [0, 1]^d. Integer and factor parameters are rounded to their grid, and points are
+ * converted to experiments with the {@link SpotDesignInitializer}, so that they equal those proposed by SPOT.
+ * 
+ * @author Felix Dobslaw
+ * 
+ * @NotThreadSafe
+ */
+public class HypercubeEncoder {
+
+	private static final String FLOAT = "FLOAT";
+
+	private static final String[] CONFIG_COLUMNS = { SPOTQ.ATTR_CONFIGURATION_NUMBER, "REPEATS", SPOTQ.ATTR_ITERATION,
+			SPOTQ.ATTR_SEED };
+
+	private final IInPUT input;
+
+	private final SpotROI roi;
+
+	private final List<SpotParam> params;
+
+	private final double[] low;
+
+	private final double[] high;
+
+	private final String[] columnIds;
+
+	private final SpotDesignInitializer initializer;
+
+	public HypercubeEncoder(IInPUT input) throws InPUTException {
+		this.input = input;
+		roi = new SpotROI(input);
+		params = roi.getParams();
+		if (params.isEmpty())
+			throw new InPUTException("The algorithm design space of '" + input.getId() + "' has no parameters to be tuned.");
+		low = new double[params.size()];
+		high = new double[params.size()];
+		columnIds = new String[params.size() + CONFIG_COLUMNS.length];
+		for (int i = 0; i < params.size(); i++) {
+			low[i] = Double.parseDouble(params.get(i).low);
+			high[i] = Double.parseDouble(params.get(i).high);
+			columnIds[i] = params.get(i).id;
+		}
+		System.arraycopy(CONFIG_COLUMNS, 0, columnIds, params.size(), CONFIG_COLUMNS.length);
+		initializer = new SpotDesignInitializer();
+	}
+
+	public int getDimensions() {
+		return params.size();
+	}
+
+	public List<SpotParam> getParams() {
+		return params;
+	}
+
+	/**
+	 * @param paramId
+	 * @return the dimension of the parameter, or -1 if it is not tuned.
+	 */
+	public int dimensionOf(String paramId) {
+		for (int i = 0; i < params.size(); i++)
+			if (params.get(i).id.equals(paramId))
+				return i;
+		return -1;
+	}
+
+	public double getLow(int dimension) {
+		return low[dimension];
+	}
+
+	public double getHigh(int dimension) {
+		return high[dimension];
+	}
+
+	/**
+	 * @param dimension
+	 * @param value
+	 * @return the coordinate in [0, 1] of the given value of the parameter of the given dimension, the inverse of
+	 *         {@link #valueOf(int, double)}.
+	 */
+	public double coordinateOf(int dimension, double value) {
+		if (high[dimension] == low[dimension])
+			return 0;
+		return (value - low[dimension]) / (high[dimension] - low[dimension]);
+	}
+
+	private boolean isCountable(int dimension) {
+		return !params.get(dimension).type.equals(FLOAT);
+	}
+
+	/**
+	 * rounds the entries of countable parameters to their grid, so that equal configurations have equal points.
+	 * 
+	 * @param point
+	 * @return
+	 */
+	public double[] snap(double[] point) {
+		double[] result = new double[point.length];
+		for (int i = 0; i < point.length; i++)
+			if (isCountable(i) && high[i] > low[i])
+				result[i] = (Math.round(low[i] + point[i] * (high[i] - low[i])) - low[i]) / (high[i] - low[i]);
+			else
+				result[i] = point[i];
+		return result;
+	}
+
+	public double[] randomPoint(Random rng) {
+		double[] point = new double[params.size()];
+		for (int i = 0; i < point.length; i++)
+			point[i] = rng.nextDouble();
+		return snap(point);
+	}
+
+	/**
+	 * @param point
+	 * @param sd
+	 *            the standard deviation of the gaussian perturbation per dimension.
+	 * @param rng
+	 * @return a snapped point in the neighborhood of <code>point</code>.
+	 */
+	public double[] perturb(double[] point, double sd, Random rng) {
+		double[] result = new double[point.length];
+		for (int i = 0; i < point.length; i++)
+			result[i] = Math.min(1, Math.max(0, point[i] + sd * rng.nextGaussian()));
+		return snap(result);
+	}
+
+	/**
+	 * @param size
+	 * @param rng
+	 * @return a latin hypercube design of <code>size</code> snapped points.
+	 */
+	public double[][] latinHypercube(int size, Random rng) {
+		double[][] design = new double[size][params.size()];
+		for (int j = 0; j < params.size(); j++) {
+			int[] strata = permutation(size, rng);
+			for (int i = 0; i < size; i++)
+				design[i][j] = (strata[i] + rng.nextDouble()) / size;
+		}
+		for (int i = 0; i < size; i++)
+			design[i] = snap(design[i]);
+		return design;
+	}
+
+	private static int[] permutation(int n, Random rng) {
+		int[] result = new int[n];
+		for (int i = 0; i < n; i++)
+			result[i] = i;
+		int j, tmp;
+		for (int i = n - 1; i > 0; i--) {
+			j = rng.nextInt(i + 1);
+			tmp = result[i];
+			result[i] = result[j];
+			result[j] = tmp;
+		}
+		return result;
+	}
+
+	/**
+	 * @param dimension
+	 * @param x
+	 * @return the value of the parameter of the given dimension for the coordinate <code>x</code> in [0, 1].
+	 */
+	public String valueOf(int dimension, double x) {
+		double value = low[dimension] + x * (high[dimension] - low[dimension]);
+		if (isCountable(dimension))
+			return Long.toString(Math.round(value));
+		return Double.toString(value);
+	}
+
+	/**
+	 * creates an experiment with the algorithm design that corresponds to the point.
+	 * 
+	 * @param experimentId
+	 * @param point
+	 * @param configuration
+	 *            the number of the configuration in the study.
+	 * @param repeats
+	 * @param step
+	 * @param seed
+	 * @return
+	 * @throws InPUTException
+	 */
+	public IExperiment toExperiment(int experimentId, double[] point, int configuration, int repeats, int step, int seed)
+			throws InPUTException {
+		StringBuilder line = new StringBuilder();
+		for (int i = 0; i < params.size(); i++) {
+			line.append(valueOf(i, point[i]));
+			line.append(' ');
+		}
+		line.append(configuration).append(' ').append(repeats).append(' ').append(step).append(' ').append(seed);
+
+		SpotDesign design = new SpotDesign(roi, columnIds, line.toString());
+		return initializer.initExperiment(experimentId, ParamStore.getFixed(input), design, input);
+	}
+}
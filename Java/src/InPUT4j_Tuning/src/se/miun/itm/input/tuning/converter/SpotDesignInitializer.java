@@ -18,28 +18,23 @@ OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
 SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  */package se.miun.itm.input.tuning.converter;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
 
-import org.jdom2.Document;
 import org.jdom2.Element;
-import org.jdom2.output.Format;
-import org.jdom2.output.XMLOutputter;
 
 import se.miun.itm.input.Experiment;
 import se.miun.itm.input.IExperiment;
 import se.miun.itm.input.IInPUT;
-import se.miun.itm.input.InPUTConfig;
-import se.miun.itm.input.export.ByteArrayExporter;
-import se.miun.itm.input.impOrt.InputStreamImporter;
+import se.miun.itm.input.impOrt.DocumentImporter;
+import se.miun.itm.input.model.Document;
 import se.miun.itm.input.model.InPUTException;
 import se.miun.itm.input.model.design.IDesign;
 import se.miun.itm.input.model.design.IDesignSpace;
@@ -52,20 +47,18 @@ import se.miun.itm.input.model.param.SParam;
 import se.miun.itm.input.tuning.sequential.spot.SpotDesign;
 import se.miun.itm.input.util.ParamUtil;
 import se.miun.itm.input.util.Q;
-import se.miun.itm.input.util.xml.SAXUtil;
 
 public class SpotDesignInitializer {
 
 	private static final String QUOTE = Pattern.quote(".");
 
-	private XMLOutputter outputter;
+	private final DocumentImporter importer;
 
-	private InputStreamImporter importer;
+	// the value elements of the design under construction by parent and local id
+	private final Map<Element, Map<String, Element>> children = new IdentityHashMap<Element, Map<String, Element>>();
 
 	public SpotDesignInitializer() throws InPUTException {
-		outputter = new XMLOutputter();
-		outputter.setFormat(Format.getPrettyFormat());
-		importer = new InputStreamImporter();
+		importer = new DocumentImporter();
 	}
 
 	private String getValueString(Param<?> param, String valueString) throws InPUTException {
@@ -94,13 +87,23 @@ public class SpotDesignInitializer {
 
 		ParamStore store = ParamStore.getInstance(space.getId());
 
-		IDesign inputDesign = space.nextEmptyDesign("" + designId);
-
-		Document designTemplate = extractEmptyXMLTemplateFor(inputDesign);
+		Document designTemplate = initEmptyTemplate(designId, space);
 
+		children.clear();
 		fillDesignTemplateWithValues(designTemplate, values, space, store);
+		children.clear();
+
+		importer.resetContext(designTemplate);
+		return space.impOrt(importer);
+	}
 
-		return reinitiateDesignTemplate(inputDesign, designTemplate);
+	private Document initEmptyTemplate(int designId, IDesignSpace space) throws InPUTException {
+		Element root = new Element(Q.DESIGN_ROOT, Q.DESIGN_NAMESPACE);
+		root.addNamespaceDeclaration(Q.SCHEMA_INSTANCE_NAMESPACE);
+		root.setAttribute(Q.SCHEMA_LOCATION_ATTR, Q.getSchemaLocation(), Q.SCHEMA_INSTANCE_NAMESPACE);
+		root.setAttribute(Q.ID_ATTR, "" + designId);
+		root.setAttribute(Q.REF_ATTR, space.getId());
+		return new Document(root);
 	}
 
 	private void fillDesignTemplateWithValues(Document designTemplate, Map<Integer, Set<ParamValuePair>> values, IDesignSpace space,
@@ -184,6 +187,7 @@ public class SpotDesignInitializer {
 			String valueString = getValueString(param, pair.value);
 			Element valueElement = createValueElement(pair, param, valueString);
 			parent.addContent(valueElement);
+			childrenOf(parent).put(valueElement.getAttributeValue(Q.ID_ATTR), valueElement);
 			result = valueElement;
 		}
 		return result;
@@ -211,11 +215,16 @@ public class SpotDesignInitializer {
 	}
 
 	private Element containsAsChild(Element parent, String paramLocalId) {
-		for (Element child : parent.getChildren()) {
-			if (child.getAttributeValue(Q.ID_ATTR).equals(paramLocalId))
-				return child;
+		return childrenOf(parent).get(paramLocalId);
+	}
+
+	private Map<String, Element> childrenOf(Element parent) {
+		Map<String, Element> result = children.get(parent);
+		if (result == null) {
+			result = new HashMap<String, Element>();
+			children.put(parent, result);
 		}
-		return null;
+		return result;
 	}
 
 	private Element findParent(Element root, Param<?> param, ParamValuePair pair, ParamStore store, IDesignSpace space)
@@ -296,14 +305,6 @@ public class SpotDesignInitializer {
 		return resultParent;
 	}
 
-	private IDesign reinitiateDesignTemplate(IDesign inputDesign, Document designTemplate) throws InPUTException {
-		String output = outputter.outputString(designTemplate);
-		importer.resetContext(new ByteArrayInputStream(output.getBytes()), InPUTConfig.isValidationActive());
-		inputDesign.impOrt(importer);
-
-		return inputDesign;
-	}
-
 	private Element createValueElement(ParamValuePair pair, Param<?> param, String valueString) throws InPUTException {
 		Element valueElement = new Element(param.getValueTypeString(), Q.DESIGN_NAMESPACE);
 		setAppropriateId(pair, param, valueElement);
@@ -342,12 +343,6 @@ public class SpotDesignInitializer {
 		valueElement.setAttribute(Q.ID_ATTR, valueString);
 	}
 
-	private Document extractEmptyXMLTemplateFor(IDesign design) throws InPUTException {
-		ByteArrayOutputStream designStream = design.export(new ByteArrayExporter());
-		Document jdomDesign = SAXUtil.build(new ByteArrayInputStream(designStream.toByteArray()), false);
-		return jdomDesign;
-	}
-
 	public IExperiment initExperiment(int experimentId, List<Param<?>> fixed, SpotDesign spotDesign, IInPUT input) throws InPUTException {
 		IExperiment experiment = new Experiment("" + experimentId, input);
 
@@ -364,7 +359,6 @@ public class SpotDesignInitializer {
 	private Map<Integer, Set<ParamValuePair>> initValues(List<Param<?>> fixed, SpotDesign spotDesign) throws InPUTException {
 		Map<Integer, Set<ParamValuePair>> paramMap = new HashMap<Integer, Set<ParamValuePair>>();
 
-		System.out.println("");
 		addAllVariableEntries(paramMap, spotDesign);
 		addAllFixedEntries(paramMap, fixed);
 
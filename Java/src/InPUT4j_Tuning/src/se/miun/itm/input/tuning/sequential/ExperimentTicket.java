@@ -0,0 +1,73 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.input.tuning.sequential;
+
+import se.miun.itm.input.IExperiment;
+
+/**
+ * A handle for an experiment that has been handed out by a sequential tuner as part of a batch. The result of the experiment
+ * has to be fed back together with the ticket, which identifies the design and position the result belongs to, so that results
+ * can arrive in any order.
+ * 
+ * @author Felix Dobslaw
+ */
+public class ExperimentTicket {
+
+	private final long id;
+
+	private final int design;
+
+	private final int position;
+
+	private final IExperiment experiment;
+
+	public ExperimentTicket(long id, int design, int position, IExperiment experiment) {
+		this.id = id;
+		this.design = design;
+		this.position = position;
+		this.experiment = experiment;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * @return the number of the sequential design the experiment is part of, starting with 1 for the initial design.
+	 */
+	public int getDesign() {
+		return design;
+	}
+
+	/**
+	 * @return the position of the experiment in its design.
+	 */
+	public int getPosition() {
+		return position;
+	}
+
+	public IExperiment getExperiment() {
+		return experiment;
+	}
+
+	@Override
+	public String toString() {
+		return "ticket " + id + " (design " + design + ", position " + position + ")";
+	}
+}
@@ -0,0 +1,304 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.input.tuning.sequential;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import se.miun.itm.input.IExperiment;
+import se.miun.itm.input.IInPUT;
+import se.miun.itm.input.model.InPUTException;
+import se.miun.itm.input.model.design.IDesign;
+import se.miun.itm.input.tuning.converter.HypercubeEncoder;
+
+/**
+ * A multi-fidelity tuner in the style of Hyperband. The budget of a run, e.g. the amount of generations or the population size, is
+ * a designated numeric parameter of the algorithm design space. Each bracket samples a latin hypercube of configurations, runs
+ * them at a low budget, and promotes the best <code>1/eta</code> of them to the <code>eta</code> times higher budget, until the
+ * maximum budget is reached. Each such rung is a design of the tuner. Hyperband cycles through brackets that start at different
+ * budgets; successive halving always uses the most exploratory bracket, which starts at the minimum budget.
+ * 
+ * @author Felix Dobslaw
+ * 
+ * @NotThreadSafe
+ */
+public class HyperbandTuner extends SequentialTuner {
+
+	public static final double DEFAULT_ETA = 3;
+
+	private final boolean minProblem;
+
+	private final String budgetParamId;
+
+	private final int budgetDimension;
+
+	private final double maxBudget;
+
+	private final double eta;
+
+	private final int maxBracket;
+
+	private final boolean successiveHalving;
+
+	private final Random rng;
+
+	private final HypercubeEncoder encoder;
+
+	private final List<double[]> points = new ArrayList<double[]>();
+
+	// per design of the current bracket: the candidates by position, their budget, and their responses by position.
+	private final Map<Integer, int[]> designCandidates = new HashMap<Integer, int[]>();
+
+	private final Map<Integer, Double> designBudgets = new HashMap<Integer, Double>();
+
+	private final Map<Integer, double[]> responses = new HashMap<Integer, double[]>();
+
+	private int bracket;
+
+	private int rung;
+
+	private int bracketCounter;
+
+	private int previousDesign;
+
+	private int experimentCounter;
+
+	private IExperiment best;
+
+	private double bestBudget;
+
+	private double bestResponse;
+
+	/**
+	 * a Hyperband tuner, with the range of the budget parameter as budget range.
+	 * 
+	 * @param input
+	 * @param problems
+	 * @param studyId
+	 * @param minProblem
+	 * @param budgetParamId
+	 * @throws InPUTException
+	 */
+	public HyperbandTuner(IInPUT input, List<IDesign> problems, String studyId, boolean minProblem, String budgetParamId)
+			throws InPUTException {
+		this(input, problems, studyId, minProblem, budgetParamId, Double.NaN, Double.NaN, DEFAULT_ETA, false, System
+				.currentTimeMillis());
+	}
+
+	/**
+	 * @param input
+	 * @param problems
+	 * @param studyId
+	 * @param minProblem
+	 *            is the output parameter "Y" to be minimized?
+	 * @param budgetParamId
+	 *            the id of the numeric algorithm parameter that sets the budget of a run.
+	 * @param minBudget
+	 *            the lowest budget a configuration is run with, or NaN for the lower bound of the parameter.
+	 * @param maxBudget
+	 *            the highest budget a configuration is run with, or NaN for the upper bound of the parameter.
+	 * @param eta
+	 *            the factor by which the budget grows, and the amount of configurations shrinks, from rung to rung.
+	 * @param successiveHalving
+	 *            should only the bracket that starts at the minimum budget be used?
+	 * @param seed
+	 * @throws InPUTException
+	 */
+	public HyperbandTuner(IInPUT input, List<IDesign> problems, String studyId, boolean minProblem, String budgetParamId,
+			double minBudget, double maxBudget, double eta, boolean successiveHalving, long seed) throws InPUTException {
+		super(input, problems, studyId, minProblem);
+		encoder = new HypercubeEncoder(input);
+		budgetDimension = encoder.dimensionOf(budgetParamId);
+		if (budgetDimension < 0)
+			throw new InPUTException("The budget parameter '" + budgetParamId
+					+ "' has to be a tunable numeric parameter of the algorithm design space.");
+		if (Double.isNaN(minBudget))
+			minBudget = encoder.getLow(budgetDimension);
+		if (Double.isNaN(maxBudget))
+			maxBudget = encoder.getHigh(budgetDimension);
+		if (minBudget <= 0 || minBudget > maxBudget || eta <= 1)
+			throw new InPUTException("The budget range has to be positive and not empty, and eta has to be larger than 1, but were ["
+					+ minBudget + ", " + maxBudget + "] and " + eta + ".");
+		this.minProblem = minProblem;
+		this.budgetParamId = budgetParamId;
+		this.maxBudget = maxBudget;
+		this.eta = eta;
+		this.successiveHalving = successiveHalving;
+		maxBracket = (int) Math.floor(Math.log(maxBudget / minBudget) / Math.log(eta) + 1e-9);
+		rng = new Random(seed);
+		initBrackets();
+		currentDesignSize = getTotalAmountRunsInitialDesign();
+	}
+
+	private void initBrackets() {
+		bracket = -1;
+		rung = -1;
+		bracketCounter = 0;
+		best = null;
+		bestBudget = Double.NEGATIVE_INFINITY;
+		bestResponse = Double.POSITIVE_INFINITY;
+	}
+
+	@Override
+	public int getTotalAmountRunsInitialDesign() throws InPUTException {
+		return bracketSize(maxBracket);
+	}
+
+	private int bracketSize(int bracket) {
+		return (int) Math.ceil((maxBracket + 1.0) / (bracket + 1) * Math.pow(eta, bracket) - 1e-9);
+	}
+
+	private double budgetOf(int bracket, int rung) {
+		return maxBudget * Math.pow(eta, rung - bracket);
+	}
+
+	@Override
+	int initNextDesign() throws InPUTException {
+		int[] candidates;
+		if (rung == bracket) {
+			startBracket();
+			candidates = sample(bracketSize(bracket));
+		} else {
+			rung++;
+			candidates = promote(previousDesign);
+		}
+		int design = getDesignNumber();
+		designCandidates.put(design, candidates);
+		designBudgets.put(design, budgetOf(bracket, rung));
+		double[] designResponses = new double[candidates.length];
+		Arrays.fill(designResponses, Double.NaN);
+		responses.put(design, designResponses);
+		previousDesign = design;
+		return candidates.length;
+	}
+
+	private void startBracket() {
+		if (successiveHalving)
+			bracket = maxBracket;
+		else
+			bracket = maxBracket - bracketCounter++ % (maxBracket + 1);
+		rung = 0;
+		designCandidates.clear();
+		designBudgets.clear();
+		responses.clear();
+	}
+
+	private int[] sample(int size) {
+		double[][] sample = encoder.latinHypercube(size, rng);
+		int[] candidates = new int[size];
+		for (int i = 0; i < size; i++) {
+			points.add(sample[i]);
+			candidates[i] = points.size() - 1;
+		}
+		return candidates;
+	}
+
+	// the best 1/eta of the candidates of the given design, those without result last.
+	private int[] promote(int design) {
+		final int[] candidates = designCandidates.get(design);
+		final double[] designResponses = responses.get(design);
+		Integer[] positions = new Integer[candidates.length];
+		for (int i = 0; i < positions.length; i++)
+			positions[i] = i;
+		Arrays.sort(positions, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer first, Integer second) {
+				double a = designResponses[first], b = designResponses[second];
+				if (Double.isNaN(a) || Double.isNaN(b))
+					return Double.isNaN(a) ? (Double.isNaN(b) ? 0 : 1) : -1;
+				return Double.compare(a, b);
+			}
+		});
+		int[] promoted = new int[Math.max(1, (int) Math.floor(candidates.length / eta))];
+		for (int i = 0; i < promoted.length; i++)
+			promoted[i] = candidates[positions[i]];
+		return promoted;
+	}
+
+	@Override
+	IExperiment nextExperiment(int position) throws InPUTException {
+		int design = getDesignNumber();
+		int candidate = designCandidates.get(design)[position];
+		double[] point = points.get(candidate).clone();
+		point[budgetDimension] = encoder.coordinateOf(budgetDimension, designBudgets.get(design));
+		return encoder.toExperiment(++experimentCounter, point, candidate + 1, 1, design, rng.nextInt());
+	}
+
+	@Override
+	protected void feedback(IExperiment experiment, IDesign newResult) throws InPUTException {
+		// the results are recorded by design and position, see below.
+		experiment.addOutput(newResult);
+	}
+
+	@Override
+	protected void feedback(IExperiment experiment, IDesign newResult, int design, int position) throws InPUTException {
+		feedback(experiment, newResult);
+		double y = ((Number) newResult.getValue(SINGLE_OUTPUT_PARAMETER)).doubleValue();
+		if (!minProblem)
+			y = -y;
+		double[] designResponses = responses.get(design);
+		if (designResponses == null) // a late result of a former bracket
+			return;
+		designResponses[position] = y;
+		double budget = designBudgets.get(design);
+		if (budget > bestBudget || (budget == bestBudget && y < bestResponse)) {
+			best = experiment;
+			bestBudget = budget;
+			bestResponse = y;
+		}
+	}
+
+	/**
+	 * returns the configuration with the best response at the highest budget evaluated so far, or null if nothing has been
+	 * evaluated yet.
+	 * 
+	 * @return
+	 */
+	public IExperiment getBest() {
+		return best;
+	}
+
+	/**
+	 * @return the budget of the current design, or NaN before the first design.
+	 */
+	public double getCurrentBudget() {
+		Double budget = designBudgets.get(getDesignNumber());
+		return budget == null ? Double.NaN : budget;
+	}
+
+	public String getBudgetParamId() {
+		return budgetParamId;
+	}
+
+	@Override
+	public void resetStudy(List<IDesign> problems, String studyId) throws InPUTException {
+		super.resetStudy(problems, studyId);
+		this.studyId = studyId;
+		points.clear();
+		designCandidates.clear();
+		designBudgets.clear();
+		responses.clear();
+		initBrackets();
+	}
+}
@@ -22,6 +22,7 @@ import java.util.List;
 
 import se.miun.itm.input.model.InPUTException;
 import se.miun.itm.input.model.design.IDesign;
+import se.miun.itm.input.tuning.EvaluationCache;
 import se.miun.itm.input.tuning.ITuner;
 
 public interface ISequentialTuner extends ITuner {
@@ -61,4 +62,38 @@ public interface ISequentialTuner extends ITuner {
 	void feedback(IDesign result) throws InPUTException;
 
 	int getTotalAmountRunsInitialDesign() throws InPUTException;
+
+	/**
+	 * hands out up to <code>amount</code> experiments of the current design for parallel evaluation. The tuner only advances to
+	 * the next design once the quorum of the current design has been fed back, so that fewer, or no, experiments are returned
+	 * while results are outstanding. This batch protocol must not be mixed with <code>nextExperiment()</code> and
+	 * <code>feedback(IDesign)</code> within a study.
+	 * @param amount
+	 * @return
+	 * @throws InPUTException
+	 */
+	List<ExperimentTicket> nextExperiments(int amount) throws InPUTException;
+
+	/**
+	 * feeds back the result of a ticketed experiment. Results are accepted in any order, also for designs the tuner has already
+	 * advanced from.
+	 * @param ticket
+	 * @param result
+	 * @throws InPUTException
+	 */
+	void feedback(ExperimentTicket ticket, IDesign result) throws InPUTException;
+
+	/**
+	 * sets the fraction of a design, in (0, 1], that has to be fed back before the tuner advances to the next design. Default is 1.
+	 * @param quorum
+	 * @throws InPUTException
+	 */
+	void setQuorum(double quorum) throws InPUTException;
+
+	/**
+	 * sets the cache from which results of configurations that have been evaluated before are served, instead of
+	 * handing them out again. No cache is used by default.
+	 * @param cache the cache, or null to evaluate every proposed experiment.
+	 */
+	void setEvaluationCache(EvaluationCache cache);
 }
\ No newline at end of file
@@ -0,0 +1,271 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.input.tuning.sequential;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import se.miun.itm.input.IExperiment;
+import se.miun.itm.input.IInPUT;
+import se.miun.itm.input.model.InPUTException;
+import se.miun.itm.input.model.design.IDesign;
+import se.miun.itm.input.tuning.EvaluationCache;
+import se.miun.itm.input.tuning.converter.HypercubeEncoder;
+import se.miun.itm.input.tuning.sequential.racing.FriedmanTest;
+
+/**
+ * A racing tuner in the style of F-race. A latin hypercube of candidate configurations is evaluated instance by instance: each
+ * design of the tuner runs all surviving candidates once on the next problem instance of the <code>problems</code>, which are
+ * cycled through in random order. Once enough instances have been completed, candidates that are statistically dominated under
+ * a Friedman test, or a paired t-test for two candidates, are dropped, so that the budget concentrates on the promising ones.
+ * Without problems, the designs are plain replications.
+ * 
+ * @author Felix Dobslaw
+ * 
+ * @NotThreadSafe
+ */
+public class RacingTuner extends SequentialTuner {
+
+	public static final int DEFAULT_CANDIDATES = 20;
+
+	public static final double DEFAULT_ALPHA = 0.05;
+
+	public static final int DEFAULT_FIRST_TEST = 5;
+
+	private final boolean minProblem;
+
+	private final int candidates;
+
+	private final double alpha;
+
+	private final int firstTest;
+
+	private final Random rng;
+
+	private final HypercubeEncoder encoder;
+
+	private double[][] points;
+
+	private IExperiment[] configurations;
+
+	private final List<Integer> survivors = new ArrayList<Integer>();
+
+	// per design: the candidates in order of their position, the problem instance, and the responses by candidate.
+	private final Map<Integer, int[]> designCandidates = new HashMap<Integer, int[]>();
+
+	private final Map<Integer, IDesign> instances = new HashMap<Integer, IDesign>();
+
+	private final Map<Integer, double[]> responses = new HashMap<Integer, double[]>();
+
+	private final List<IDesign> instanceOrder = new ArrayList<IDesign>();
+
+	private int experimentCounter = 0;
+
+	public RacingTuner(IInPUT input, List<IDesign> problems, String studyId, boolean minProblem) throws InPUTException {
+		this(input, problems, studyId, minProblem, DEFAULT_CANDIDATES, DEFAULT_ALPHA, DEFAULT_FIRST_TEST, System.currentTimeMillis());
+	}
+
+	/**
+	 * @param input
+	 * @param problems
+	 * @param studyId
+	 * @param minProblem
+	 *            is the output parameter "Y" to be minimized?
+	 * @param candidates
+	 *            the amount of configurations that enter the race.
+	 * @param alpha
+	 *            the significance level of the elimination tests.
+	 * @param firstTest
+	 *            the amount of completed instances before candidates can be eliminated.
+	 * @param seed
+	 * @throws InPUTException
+	 */
+	public RacingTuner(IInPUT input, List<IDesign> problems, String studyId, boolean minProblem, int candidates, double alpha,
+			int firstTest, long seed) throws InPUTException {
+		super(input, problems, studyId, minProblem);
+		if (candidates < 2 || alpha <= 0 || alpha >= 1 || firstTest < 2)
+			throw new InPUTException("A race requires at least two candidates, a significance level in (0, 1), and at least two instances before the first test.");
+		this.minProblem = minProblem;
+		this.candidates = candidates;
+		this.alpha = alpha;
+		this.firstTest = firstTest;
+		rng = new Random(seed);
+		encoder = new HypercubeEncoder(input);
+		initRace();
+		currentDesignSize = getTotalAmountRunsInitialDesign();
+	}
+
+	private void initRace() {
+		points = encoder.latinHypercube(candidates, rng);
+		configurations = new IExperiment[candidates];
+		survivors.clear();
+		for (int i = 0; i < candidates; i++)
+			survivors.add(i);
+	}
+
+	@Override
+	public int getTotalAmountRunsInitialDesign() throws InPUTException {
+		return candidates;
+	}
+
+	@Override
+	int initNextDesign() throws InPUTException {
+		race();
+		int design = getDesignNumber();
+		int[] current = new int[survivors.size()];
+		for (int i = 0; i < current.length; i++)
+			current[i] = survivors.get(i);
+		designCandidates.put(design, current);
+		instances.put(design, nextInstance());
+		double[] blockResponses = new double[candidates];
+		Arrays.fill(blockResponses, Double.NaN);
+		responses.put(design, blockResponses);
+		return current.length;
+	}
+
+	private IDesign nextInstance() {
+		List<IDesign> problems = getProblems();
+		if (problems == null || problems.isEmpty())
+			return null;
+		if (instanceOrder.isEmpty()) {
+			instanceOrder.addAll(problems);
+			Collections.shuffle(instanceOrder, rng);
+		}
+		return instanceOrder.remove(0);
+	}
+
+	// drops the candidates that are dominated on the instances all survivors have completed.
+	private void race() {
+		if (survivors.size() < 2)
+			return;
+		List<double[]> blocks = new ArrayList<double[]>();
+		double[] block;
+		boolean complete;
+		for (double[] blockResponses : responses.values()) {
+			block = new double[survivors.size()];
+			complete = true;
+			for (int i = 0; i < block.length && complete; i++) {
+				block[i] = blockResponses[survivors.get(i)];
+				complete = !Double.isNaN(block[i]);
+			}
+			if (complete)
+				blocks.add(block);
+		}
+		if (blocks.size() < firstTest)
+			return;
+
+		boolean[] dominated = FriedmanTest.dominated(blocks.toArray(new double[blocks.size()][]), alpha);
+		List<Integer> remaining = new ArrayList<Integer>();
+		for (int i = 0; i < dominated.length; i++)
+			if (!dominated[i])
+				remaining.add(survivors.get(i));
+		survivors.clear();
+		survivors.addAll(remaining);
+	}
+
+	@Override
+	IExperiment nextExperiment(int position) throws InPUTException {
+		int design = getDesignNumber();
+		int candidate = designCandidates.get(design)[position];
+		IExperiment experiment = encoder.toExperiment(++experimentCounter, points[candidate], candidate + 1, 1, design,
+				rng.nextInt());
+		if (configurations[candidate] == null)
+			configurations[candidate] = experiment;
+		return experiment;
+	}
+
+	// each design runs the survivors once on an instance; a design that returns to an instance runs a new replication on it.
+	@Override
+	protected EvaluationCache.Key cacheKeyOf(IExperiment experiment, int design, int position) throws InPUTException {
+		List<IDesign> problems = getProblems();
+		int instances = problems == null || problems.isEmpty() ? 1 : problems.size();
+		return EvaluationCache.keyOf(experiment, (design - 1) / instances);
+	}
+
+	@Override
+	protected IDesign problemFeaturesFor(int design, int position) {
+		return instances.get(design);
+	}
+
+	@Override
+	protected void feedback(IExperiment experiment, IDesign newResult) throws InPUTException {
+		// the results are recorded by design and position, see below.
+		experiment.addOutput(newResult);
+	}
+
+	@Override
+	protected void feedback(IExperiment experiment, IDesign newResult, int design, int position) throws InPUTException {
+		feedback(experiment, newResult);
+		double y = ((Number) newResult.getValue(SINGLE_OUTPUT_PARAMETER)).doubleValue();
+		int candidate = designCandidates.get(design)[position];
+		responses.get(design)[candidate] = minProblem ? y : -y;
+	}
+
+	/**
+	 * @return the amount of candidates that are still in the race.
+	 */
+	public int getAmountSurvivors() {
+		return survivors.size();
+	}
+
+	/**
+	 * returns the surviving configuration with the best mean response, or null if nothing has been evaluated yet.
+	 * 
+	 * @return
+	 */
+	public IExperiment getBest() {
+		int best = -1;
+		double bestMean = Double.POSITIVE_INFINITY, mean;
+		for (int candidate : survivors) {
+			mean = mean(candidate);
+			if (mean < bestMean) {
+				bestMean = mean;
+				best = candidate;
+			}
+		}
+		return best < 0 ? null : configurations[best];
+	}
+
+	private double mean(int candidate) {
+		double sum = 0;
+		int count = 0;
+		for (double[] blockResponses : responses.values())
+			if (!Double.isNaN(blockResponses[candidate])) {
+				sum += blockResponses[candidate];
+				count++;
+			}
+		return count == 0 ? Double.NaN : sum / count;
+	}
+
+	@Override
+	public void resetStudy(List<IDesign> problems, String studyId) throws InPUTException {
+		super.resetStudy(problems, studyId);
+		this.studyId = studyId;
+		designCandidates.clear();
+		instances.clear();
+		responses.clear();
+		instanceOrder.clear();
+		initRace();
+	}
+}
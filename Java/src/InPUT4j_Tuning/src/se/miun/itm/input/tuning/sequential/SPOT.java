@@ -32,8 +32,10 @@ import se.miun.itm.input.model.InPUTException;
 import se.miun.itm.input.model.design.DesignSpace;
 import se.miun.itm.input.model.design.IDesign;
 import se.miun.itm.input.model.design.IDesignSpace;
+import se.miun.itm.input.tuning.sequential.spot.CheckpointPolicy;
 import se.miun.itm.input.tuning.sequential.spot.SPOTQ;
 import se.miun.itm.input.tuning.sequential.spot.SpotHelper;
+import se.miun.itm.input.tuning.sequential.spot.SpotSession;
 import se.miun.itm.input.util.Q;
 
 /**
@@ -54,15 +56,11 @@ public class SPOT extends SequentialTuner {
 
 	private final IDesign config;
 
-	/** 
-	 * TODO create a SPOT that is based on a former experimental image. So either have it as a constructor parameter
-	 * or load it by automation and see if an inputConfig is set. If it is set, the state should be adjusted accordingly.
-	 * That way experiments that abruptly ended can be resumed. 
-	 */
-	
+	private boolean resumed;
+
 	/**
-	 * In test stadium: the R environment used is a "one in a JVM thing", so
-	 * that only one SPOT at a time can be created in practice.
+	 * Several SPOTs can run concurrently: they share the one R engine of the
+	 * JVM, each in a session of its own (see {@link SpotSession}).
 	 * 
 	 * @param input
 	 * @throws InPUTException
@@ -87,8 +85,8 @@ public class SPOT extends SequentialTuner {
 	}
 
 	/**
-	 * In test stadium: the R environment used is a "one in a JVM thing", so
-	 * that only one SPOT at a time can be created in practice.
+	 * Several SPOTs can run concurrently: they share the one R engine of the
+	 * JVM, each in a session of its own (see {@link SpotSession}).
 	 * 
 	 * @param input
 	 * @throws InPUTException
@@ -151,6 +149,17 @@ public class SPOT extends SequentialTuner {
 		helper.feedbackSpot(newResult);
 	}
 
+	@Override
+	protected void feedback(IExperiment experiment, IDesign newResult, int design, int position) throws InPUTException {
+		experiment.addOutput(newResult);
+		helper.feedbackSpot(newResult, design, position);
+	}
+
+	@Override
+	protected void designCompleted(int design) throws InPUTException {
+		helper.closeDesign(design);
+	}
+
 	@Override
 	protected IExperiment nextExperiment(int position) throws InPUTException {
 		return helper.nextExperiment(position);
@@ -160,9 +169,52 @@ public class SPOT extends SequentialTuner {
 	public void resetStudy(List<IDesign> problems, String studyId) throws InPUTException {
 		super.resetStudy(problems, studyId);
 		helper.reset(studyId);
+		resumed = false;
+	}
+
+	/**
+	 * resumes a study that ended abruptly from the checkpoint and result journal in its experimental folder. The study
+	 * continues with a sequential step that takes all replayed results into account. Has to be called before the first
+	 * experiment is requested.
+	 * 
+	 * @param experimentalFolderPath
+	 * @return the amount of results that have been replayed.
+	 * @throws InPUTException
+	 */
+	public int resume(String experimentalFolderPath) throws InPUTException {
+		if (getDesignNumber() > 0)
+			throw new InPUTException("A study can only be resumed before its first experiment has been requested.");
+		int replayed = helper.resume(experimentalFolderPath);
+		resumed = replayed > 0;
+		return replayed;
+	}
+
+	/**
+	 * sets when the state of the study is checkpointed, see {@link CheckpointPolicy}.
+	 * @param policy
+	 */
+	public void setCheckpointPolicy(CheckpointPolicy policy) {
+		helper.setCheckpointPolicy(policy);
+	}
+
+	/**
+	 * checkpoints the state of the study immediately.
+	 * @throws InPUTException
+	 */
+	public void checkpoint() throws InPUTException {
+		helper.checkpoint();
 	}
 	
 
+	/**
+	 * takes a final checkpoint and releases all resources of the study. Has to be called once the study is finished, in
+	 * particular when several studies run in the same JVM.
+	 * @throws InPUTException
+	 */
+	public void close() throws InPUTException {
+		helper.close();
+	}
+
 	/**
 	 * retrieves the folder in which the experimental data is stored. Returns null if no data is stored.
 	 * @return
@@ -173,10 +225,13 @@ public class SPOT extends SequentialTuner {
 
 	@Override
 	int initNextDesign() throws InPUTException {
-		if (getAmountEvaluatedRuns() == 0)
-			return helper.initInitialDesign();
+		int size;
+		if (getAmountEvaluatedRuns() == 0 && !resumed)
+			size = helper.initInitialDesign();
 		else
-			return helper.initSequentialDesign();
+			size = helper.initSequentialDesign();
+		helper.openDesign(getDesignNumber());
+		return size;
 	}
 
 	@Override
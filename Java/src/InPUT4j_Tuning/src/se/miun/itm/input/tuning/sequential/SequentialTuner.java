@@ -18,7 +18,10 @@ OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
 SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  */package se.miun.itm.input.tuning.sequential;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 import se.miun.itm.input.IExperiment;
@@ -26,6 +29,7 @@ import se.miun.itm.input.IInPUT;
 import se.miun.itm.input.InPUTConfig;
 import se.miun.itm.input.model.InPUTException;
 import se.miun.itm.input.model.design.IDesign;
+import se.miun.itm.input.tuning.EvaluationCache;
 import se.miun.itm.input.tuning.Tuner;
 import se.miun.itm.input.util.Q;
 
@@ -50,6 +54,29 @@ public abstract class SequentialTuner extends Tuner implements ISequentialTuner
 
 	private int amountEvaluatedRuns = 0;
 
+	// the state of the batch protocol.
+	private int designNumber = 0;
+
+	private int handedOut = 0; // the amount of experiments of the current design that have been handed out
+
+	private int reported = 0; // the amount of results of the current design that have been fed back
+
+	private double quorum = 1;
+
+	private long ticketCounter = 0;
+
+	private IExperiment lastHandedOut;
+
+	private final Map<Long, ExperimentTicket> outstanding = new HashMap<Long, ExperimentTicket>();
+
+	private final Map<Integer, Integer> outstandingPerDesign = new HashMap<Integer, Integer>();
+
+	private EvaluationCache cache;
+
+	private EvaluationCache.Key currentKey; // the cache key of the current experiment
+
+	private final Map<Long, EvaluationCache.Key> ticketKeys = new HashMap<Long, EvaluationCache.Key>();
+
 	/**
 	 * A sequential tuner requires an experimental context to be set, that extends the use of an IInPUT element to a concrete problem
 	 * instance under investigation. To differentiate between different problem instances allows for a differentiated analysis of the
@@ -77,6 +104,25 @@ public abstract class SequentialTuner extends Tuner implements ISequentialTuner
 		return problems.get(rng.nextInt(problems.size()));
 	}
 
+	/**
+	 * returns the problem instance the experiment at the given position of the given design is to be run on. By default, a random
+	 * instance of the problems is chosen for each experiment.
+	 * 
+	 * @param design
+	 * @param position
+	 * @return the problem features, or null if no problems are set.
+	 */
+	protected IDesign problemFeaturesFor(int design, int position) {
+		return randomInstance();
+	}
+
+	/**
+	 * @return the problem instances under investigation, or null if none are set.
+	 */
+	protected List<IDesign> getProblems() {
+		return problems;
+	}
+
 	// @Override
 	// public IExperiment getBest() {
 	// return best;
@@ -89,6 +135,17 @@ public abstract class SequentialTuner extends Tuner implements ISequentialTuner
 		amountInvestigatedConfigurations = 0;
 		amountEvaluatedRuns = 0;
 		currentDesignSize = getTotalAmountRunsInitialDesign();
+		designNumber = 0;
+		handedOut = 0;
+		reported = 0;
+		lastHandedOut = null;
+		outstanding.clear();
+		outstandingPerDesign.clear();
+		currentKey = null;
+		ticketKeys.clear();
+		// the measured results remain valid for the new study, only the replications are counted anew.
+		if (cache != null)
+			cache.resetReplications();
 	}
 
 	// @Override
@@ -170,8 +227,60 @@ public abstract class SequentialTuner extends Tuner implements ISequentialTuner
 
 	protected abstract void feedback(IExperiment experiment, IDesign newResult) throws InPUTException;
 
+	/**
+	 * feeds back the result for the given position of the given design, which does not have to be the current one. By default,
+	 * the position is ignored.
+	 * 
+	 * @param experiment
+	 * @param newResult
+	 * @param design
+	 * @param position
+	 * @throws InPUTException
+	 */
+	protected void feedback(IExperiment experiment, IDesign newResult, int design, int position) throws InPUTException {
+		feedback(experiment, newResult);
+	}
+
+	/**
+	 * is called once all experiments of a design have been handed out and fed back, so that design specific resources can be
+	 * released.
+	 * 
+	 * @param design
+	 * @throws InPUTException
+	 */
+	protected void designCompleted(int design) throws InPUTException {
+	}
+
+	/**
+	 * @return the number of the current design, starting with 1 for the initial design.
+	 */
+	protected int getDesignNumber() {
+		return designNumber;
+	}
+
 	abstract int initNextDesign() throws InPUTException;
 
+	private int startNextDesign() throws InPUTException {
+		if (cache != null)
+			cache.resetReplications();
+		return initNextDesign();
+	}
+
+	/**
+	 * returns the key under which the result of the experiment at the given position of the given design is cached. By
+	 * default, the replications of a configuration on its problem instance are counted within the design, see
+	 * {@link EvaluationCache#nextReplication(IExperiment)}.
+	 * 
+	 * @param experiment
+	 * @param design
+	 * @param position
+	 * @return
+	 * @throws InPUTException
+	 */
+	protected EvaluationCache.Key cacheKeyOf(IExperiment experiment, int design, int position) throws InPUTException {
+		return cache.nextReplication(experiment);
+	}
+
 	abstract IExperiment nextExperiment(int position) throws InPUTException;
 
 	@Override
@@ -181,10 +290,14 @@ public abstract class SequentialTuner extends Tuner implements ISequentialTuner
 
 	@Override
 	public void feedback(IDesign result) throws InPUTException {
+		if (currentKey != null) {
+			cache.store(currentKey, result);
+			currentKey = null;
+		}
 		currentDesignPointer++;
 		amountEvaluatedRuns++;
 		// add the result as output to the current experiment and serialize to the result file!
-		feedback(currentExperiment, result);
+		feedback(currentExperiment, result, designNumber, currentDesignPointer - 1);
 	}
 
 	@Override
@@ -192,19 +305,135 @@ public abstract class SequentialTuner extends Tuner implements ISequentialTuner
 	 *  either get the next experiment from the current design or if the current design is done, start a new and take the first one.
 	 */
 	public IExperiment nextExperiment() throws InPUTException {
-		if (currentDesignPointer== 0 || currentDesignPointer == currentDesignSize) {
-			currentDesignPointer = 0;
-			currentDesignSize = initNextDesign();
+		IDesign cached;
+		do {
+			if (currentDesignPointer== 0 || currentDesignPointer == currentDesignSize) {
+				if (designNumber > 0)
+					designCompleted(designNumber);
+				currentDesignPointer = 0;
+				designNumber++;
+				currentDesignSize = startNextDesign();
+			}
+			IExperiment nextExperiment = nextExperiment(currentDesignPointer);
+			nextExperiment.setProblemFeatures(problemFeaturesFor(designNumber, currentDesignPointer));
+
+			if (!nextExperiment.same(currentExperiment)) {
+				currentExperiment = nextExperiment;
+				amountInvestigatedConfigurations++;
+			}
+
+			cached = serveFromCache(currentExperiment, currentDesignPointer);
+		} while (cached != null);
+		
+		return currentExperiment;
+	}
+
+	/**
+	 * feeds back the cached result of the current experiment, if there is one.
+	 * @param experiment
+	 * @param position
+	 * @return the cached result, or null if the experiment has to be run.
+	 * @throws InPUTException
+	 */
+	private IDesign serveFromCache(IExperiment experiment, int position) throws InPUTException {
+		if (cache == null)
+			return null;
+		currentKey = cacheKeyOf(experiment, designNumber, position);
+		IDesign cached = cache.lookup(currentKey);
+		if (cached != null) {
+			currentKey = null;
+			feedback(cached);
 		}
-		IExperiment nextExperiment = nextExperiment(currentDesignPointer);
-		nextExperiment.setProblemFeatures(randomInstance());
+		return cached;
+	}
 
-		if (!nextExperiment.same(currentExperiment)) {
-			currentExperiment = nextExperiment;
-			amountInvestigatedConfigurations++;
+	@Override
+	public synchronized List<ExperimentTicket> nextExperiments(int amount) throws InPUTException {
+		List<ExperimentTicket> tickets = new ArrayList<ExperimentTicket>();
+		IExperiment experiment;
+		ExperimentTicket ticket;
+		while (tickets.size() < amount) {
+			if (designNumber == 0 || handedOut == currentDesignSize) {
+				if (designNumber > 0 && reported < Math.ceil(quorum * currentDesignSize))
+					break;
+				designNumber++;
+				handedOut = 0;
+				reported = 0;
+				currentDesignSize = startNextDesign();
+				if (currentDesignSize == 0)
+					break;
+			}
+			experiment = nextExperiment(handedOut);
+			experiment.setProblemFeatures(problemFeaturesFor(designNumber, handedOut));
+			if (!experiment.same(lastHandedOut))
+				amountInvestigatedConfigurations++;
+			lastHandedOut = experiment;
+
+			ticket = new ExperimentTicket(++ticketCounter, designNumber, handedOut, experiment);
+			outstanding.put(ticket.getId(), ticket);
+			Integer open = outstandingPerDesign.get(designNumber);
+			outstandingPerDesign.put(designNumber, open == null ? 1 : open + 1);
+			handedOut++;
+			if (cache != null) {
+				EvaluationCache.Key key = cacheKeyOf(experiment, designNumber, handedOut - 1);
+				IDesign cached = cache.lookup(key);
+				if (cached != null) {
+					feedback(ticket, cached);
+					continue;
+				}
+				ticketKeys.put(ticket.getId(), key);
+			}
+			tickets.add(ticket);
 		}
-		
-		return currentExperiment;
+		return tickets;
+	}
+
+	@Override
+	public synchronized void feedback(ExperimentTicket ticket, IDesign result) throws InPUTException {
+		if (outstanding.remove(ticket.getId()) == null)
+			throw new InPUTException("The " + ticket + " is unknown to the tuner, or has already been fed back.");
+		EvaluationCache.Key key = ticketKeys.remove(ticket.getId());
+		if (key != null)
+			cache.store(key, result);
+		amountEvaluatedRuns++;
+		int design = ticket.getDesign();
+		if (design == designNumber)
+			reported++;
+		feedback(ticket.getExperiment(), result, design, ticket.getPosition());
+
+		int open = outstandingPerDesign.get(design) - 1;
+		if (open > 0)
+			outstandingPerDesign.put(design, open);
+		else {
+			outstandingPerDesign.remove(design);
+			if (design < designNumber || handedOut == currentDesignSize)
+				designCompleted(design);
+		}
+	}
+
+	@Override
+	public synchronized void setQuorum(double quorum) throws InPUTException {
+		if (quorum <= 0 || quorum > 1)
+			throw new InPUTException("The quorum has to be in (0, 1], but was " + quorum + ".");
+		this.quorum = quorum;
+	}
+
+	@Override
+	public synchronized void setEvaluationCache(EvaluationCache cache) {
+		this.cache = cache;
+		currentKey = null;
+		ticketKeys.clear();
+	}
+
+	public synchronized EvaluationCache getEvaluationCache() {
+		return cache;
+	}
+
+	/**
+	 * @return the amount of ticketed experiments that have been handed out but not fed back yet.
+	 */
+	public synchronized int getAmountOutstandingExperiments() {
+		return outstanding.size();
 	}
 
 	public IExperiment getExperimentUnderInvestigation() {
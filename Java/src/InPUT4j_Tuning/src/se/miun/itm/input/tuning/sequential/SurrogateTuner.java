@@ -0,0 +1,293 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.input.tuning.sequential;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import se.miun.itm.input.IExperiment;
+import se.miun.itm.input.IInPUT;
+import se.miun.itm.input.model.InPUTException;
+import se.miun.itm.input.model.design.IDesign;
+import se.miun.itm.input.tuning.converter.HypercubeEncoder;
+import se.miun.itm.input.tuning.sequential.surrogate.GaussianProcess;
+
+/**
+ * A sequential tuner that runs entirely in the JVM, as an alternative to {@link SPOT} which requires R. The region of interest is
+ * derived from the algorithm design space as for SPOT. The initial design is a latin hypercube; each sequential design consists of
+ * the candidates with the highest expected improvement under a Gaussian process model of the mean response per configuration.
+ * Integer and factor parameters are rounded to their grid.
+ * 
+ * @author Felix Dobslaw
+ * 
+ * @NotThreadSafe
+ */
+public class SurrogateTuner extends SequentialTuner {
+
+	public static final int DEFAULT_INITIAL_DESIGN_SIZE = 10;
+
+	public static final int DEFAULT_REPEATS = 2;
+
+	public static final int DEFAULT_SEQUENTIAL_DESIGN_SIZE = 3;
+
+	public static final int DEFAULT_CANDIDATES = 1000;
+
+	private final boolean minProblem;
+
+	private final int initialDesignSize;
+
+	private final int repeats;
+
+	private final int sequentialDesignSize;
+
+	private final int candidates;
+
+	private final Random rng;
+
+	private final HypercubeEncoder encoder;
+
+	private final GaussianProcess model = new GaussianProcess();
+
+	// the evaluated configurations, as points in the unit hypercube, and their response sums and counts.
+	private final List<double[]> points = new ArrayList<double[]>();
+
+	private final List<double[]> responses = new ArrayList<double[]>();
+
+	private final List<IExperiment> configurations = new ArrayList<IExperiment>();
+
+	private final Map<String, Integer> pointByExperiment = new HashMap<String, Integer>();
+
+	// the handed out experiments per design, whose points are forgotten once the design is completed.
+	private final Map<Integer, List<String>> experimentsByDesign = new HashMap<Integer, List<String>>();
+
+	private final List<Integer> currentPoints = new ArrayList<Integer>();
+
+	private int step = 0;
+
+	private int experimentCounter = 0;
+
+	public SurrogateTuner(IInPUT input, List<IDesign> problems, String studyId, boolean minProblem) throws InPUTException {
+		this(input, problems, studyId, minProblem, DEFAULT_INITIAL_DESIGN_SIZE, DEFAULT_REPEATS, DEFAULT_SEQUENTIAL_DESIGN_SIZE,
+				System.currentTimeMillis());
+	}
+
+	/**
+	 * @param input
+	 * @param problems
+	 * @param studyId
+	 * @param minProblem
+	 *            is the output parameter "Y" to be minimized?
+	 * @param initialDesignSize
+	 *            the amount of configurations in the initial design.
+	 * @param repeats
+	 *            the amount of runs per configuration.
+	 * @param sequentialDesignSize
+	 *            the amount of new configurations per sequential design.
+	 * @param seed
+	 * @throws InPUTException
+	 */
+	public SurrogateTuner(IInPUT input, List<IDesign> problems, String studyId, boolean minProblem, int initialDesignSize,
+			int repeats, int sequentialDesignSize, long seed) throws InPUTException {
+		super(input, problems, studyId, minProblem);
+		if (initialDesignSize < 2 || repeats < 1 || sequentialDesignSize < 1)
+			throw new InPUTException("A surrogate tuner requires at least two initial configurations, one repeat and one new configuration per step.");
+		this.minProblem = minProblem;
+		this.initialDesignSize = initialDesignSize;
+		this.repeats = repeats;
+		this.sequentialDesignSize = sequentialDesignSize;
+		this.candidates = DEFAULT_CANDIDATES;
+		rng = new Random(seed);
+		encoder = new HypercubeEncoder(input);
+		currentDesignSize = getTotalAmountRunsInitialDesign();
+	}
+
+	@Override
+	public int getTotalAmountRunsInitialDesign() throws InPUTException {
+		return initialDesignSize * repeats;
+	}
+
+	@Override
+	int initNextDesign() throws InPUTException {
+		currentPoints.clear();
+		if (points.isEmpty())
+			initInitialDesign();
+		else
+			initSequentialDesign();
+		step++;
+		return currentPoints.size() * repeats;
+	}
+
+	private void initInitialDesign() {
+		for (double[] point : encoder.latinHypercube(initialDesignSize, rng))
+			addPoint(point);
+	}
+
+	private void initSequentialDesign() {
+		List<double[]> x = new ArrayList<double[]>();
+		List<Double> y = new ArrayList<Double>();
+		double best = Double.POSITIVE_INFINITY;
+		int bestPoint = -1;
+		for (int i = 0; i < points.size(); i++)
+			if (responses.get(i)[1] > 0) {
+				x.add(points.get(i));
+				y.add(mean(i));
+				if (mean(i) < best) {
+					best = mean(i);
+					bestPoint = i;
+				}
+			}
+
+		if (x.size() < 2) {
+			// not enough information for a model, keep exploring.
+			for (int i = 0; i < sequentialDesignSize; i++)
+				addPoint(encoder.randomPoint(rng));
+			return;
+		}
+
+		double[] yArray = new double[y.size()];
+		for (int i = 0; i < yArray.length; i++)
+			yArray[i] = y.get(i);
+		model.fit(x.toArray(new double[x.size()][]), yArray);
+
+		List<double[]> chosen = new ArrayList<double[]>();
+		double[] chosenImprovement = new double[sequentialDesignSize];
+		double[] candidate, prediction;
+		double improvement;
+		for (int c = 0; c < candidates; c++) {
+			// half of the candidates explore globally, the others locally around the best configuration.
+			candidate = c % 2 == 0 ? encoder.randomPoint(rng) : encoder.perturb(points.get(bestPoint), 0.1, rng);
+			if (isKnown(candidate, chosen))
+				continue;
+			prediction = model.predict(candidate);
+			improvement = GaussianProcess.expectedImprovement(prediction[0], prediction[1], best);
+			insert(chosen, chosenImprovement, candidate, improvement);
+		}
+
+		for (double[] point : chosen)
+			addPoint(point);
+		if (chosen.isEmpty())
+			addPoint(encoder.randomPoint(rng));
+	}
+
+	private void insert(List<double[]> chosen, double[] improvements, double[] candidate, double improvement) {
+		int position = chosen.size();
+		while (position > 0 && improvements[position - 1] < improvement)
+			position--;
+		if (position >= sequentialDesignSize)
+			return;
+		chosen.add(position, candidate);
+		System.arraycopy(improvements, position, improvements, position + 1, sequentialDesignSize - position - 1);
+		improvements[position] = improvement;
+		if (chosen.size() > sequentialDesignSize)
+			chosen.remove(sequentialDesignSize);
+	}
+
+	private boolean isKnown(double[] candidate, List<double[]> chosen) {
+		for (double[] point : points)
+			if (Arrays.equals(point, candidate))
+				return true;
+		for (double[] point : chosen)
+			if (Arrays.equals(point, candidate))
+				return true;
+		return false;
+	}
+
+	private void addPoint(double[] point) {
+		currentPoints.add(points.size());
+		points.add(point);
+		responses.add(new double[2]);
+		configurations.add(null);
+	}
+
+	private double mean(int point) {
+		double[] response = responses.get(point);
+		return response[0] / response[1];
+	}
+
+	@Override
+	IExperiment nextExperiment(int position) throws InPUTException {
+		int point = currentPoints.get(position / repeats);
+		IExperiment experiment = encoder.toExperiment(++experimentCounter, points.get(point), point + 1, repeats, step, rng.nextInt());
+		pointByExperiment.put(experiment.getId(), point);
+		List<String> handedOut = experimentsByDesign.get(getDesignNumber());
+		if (handedOut == null) {
+			handedOut = new ArrayList<String>();
+			experimentsByDesign.put(getDesignNumber(), handedOut);
+		}
+		handedOut.add(experiment.getId());
+		if (configurations.get(point) == null)
+			configurations.set(point, experiment);
+		return experiment;
+	}
+
+	@Override
+	protected void feedback(IExperiment experiment, IDesign newResult) throws InPUTException {
+		experiment.addOutput(newResult);
+		Integer point = pointByExperiment.get(experiment.getId());
+		if (point == null)
+			throw new InPUTException("The experiment '" + experiment.getId() + "' has not been suggested by this tuner.");
+		double y = ((Number) newResult.getValue(SINGLE_OUTPUT_PARAMETER)).doubleValue();
+		double[] response = responses.get(point);
+		response[0] += minProblem ? y : -y;
+		response[1]++;
+	}
+
+	// the replications of a configuration are fed back to the same experiment, so points are released per design.
+	@Override
+	protected void designCompleted(int design) throws InPUTException {
+		List<String> handedOut = experimentsByDesign.remove(design);
+		if (handedOut != null)
+			for (String experimentId : handedOut)
+				pointByExperiment.remove(experimentId);
+	}
+
+	int getAmountTrackedExperiments() {
+		return pointByExperiment.size();
+	}
+
+	/**
+	 * returns the evaluated configuration with the best mean response so far, or null if nothing has been evaluated yet.
+	 * 
+	 * @return
+	 */
+	public IExperiment getBest() {
+		int bestPoint = -1;
+		for (int i = 0; i < points.size(); i++)
+			if (responses.get(i)[1] > 0 && (bestPoint < 0 || mean(i) < mean(bestPoint)))
+				bestPoint = i;
+		return bestPoint < 0 ? null : configurations.get(bestPoint);
+	}
+
+	@Override
+	public void resetStudy(List<IDesign> problems, String studyId) throws InPUTException {
+		super.resetStudy(problems, studyId);
+		this.studyId = studyId;
+		points.clear();
+		responses.clear();
+		configurations.clear();
+		pointByExperiment.clear();
+		experimentsByDesign.clear();
+		currentPoints.clear();
+		step = 0;
+	}
+}
@@ -0,0 +1,242 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.input.tuning.sequential.racing;
+
+/**
+ * The statistical test of F-race (Birattari et al.): a Friedman test over blocks of results, followed by pairwise comparisons
+ * of the rank sums with the candidate of the best rank sum. For two candidates, a paired t-test is used instead.
+ * 
+ * @author Felix Dobslaw
+ * 
+ * @ThreadSafe
+ */
+public class FriedmanTest {
+
+	/**
+	 * Determines the candidates that are dominated by the best one at significance level <code>alpha</code>.
+	 * 
+	 * @param results
+	 *            the responses, to be minimized, per block (e.g. problem instance) and candidate.
+	 * @param alpha
+	 * @return the dominated candidates.
+	 */
+	public static boolean[] dominated(double[][] results, double alpha) {
+		int blocks = results.length;
+		int candidates = blocks == 0 ? 0 : results[0].length;
+		boolean[] dominated = new boolean[candidates];
+		if (blocks < 2 || candidates < 2)
+			return dominated;
+		if (candidates == 2)
+			return pairedTTest(results, alpha);
+
+		double[] rankSums = new double[candidates];
+		double squaredRanks = 0;
+		double[] ranks;
+		for (double[] block : results) {
+			ranks = ranks(block);
+			for (int j = 0; j < candidates; j++) {
+				rankSums[j] += ranks[j];
+				squaredRanks += ranks[j] * ranks[j];
+			}
+		}
+
+		int best = 0;
+		double expected = blocks * (candidates + 1) / 2.0;
+		double deviation = 0;
+		for (int j = 0; j < candidates; j++) {
+			deviation += (rankSums[j] - expected) * (rankSums[j] - expected);
+			if (rankSums[j] < rankSums[best])
+				best = j;
+		}
+		double ties = squaredRanks - blocks * candidates * (candidates + 1) * (candidates + 1) / 4.0;
+		if (ties <= 0) // all results are equal.
+			return dominated;
+
+		double statistic = (candidates - 1) * deviation / ties;
+		if (chiSquareSurvival(statistic, candidates - 1) >= alpha)
+			return dominated;
+
+		int df = (blocks - 1) * (candidates - 1);
+		double critical = tQuantile(1 - alpha / 2, df);
+		double scale = Math.sqrt(2 * blocks * (1 - statistic / (blocks * (candidates - 1))) * ties / df);
+		for (int j = 0; j < candidates; j++)
+			dominated[j] = j != best && Math.abs(rankSums[j] - rankSums[best]) > critical * scale;
+		return dominated;
+	}
+
+	private static boolean[] pairedTTest(double[][] results, double alpha) {
+		int n = results.length;
+		double mean = 0, variance = 0, d;
+		for (double[] block : results)
+			mean += block[0] - block[1];
+		mean /= n;
+		for (double[] block : results) {
+			d = block[0] - block[1] - mean;
+			variance += d * d;
+		}
+		variance /= n - 1;
+
+		boolean[] dominated = new boolean[2];
+		if (variance == 0) {
+			if (mean != 0)
+				dominated[mean > 0 ? 0 : 1] = true;
+			return dominated;
+		}
+		double t = mean / Math.sqrt(variance / n);
+		if (Math.abs(t) > tQuantile(1 - alpha / 2, n - 1))
+			dominated[t > 0 ? 0 : 1] = true;
+		return dominated;
+	}
+
+	// ranks within a block, with average ranks for ties, starting with 1.
+	private static double[] ranks(double[] values) {
+		int n = values.length;
+		double[] ranks = new double[n];
+		int smaller, equal;
+		for (int i = 0; i < n; i++) {
+			smaller = 0;
+			equal = 0;
+			for (int j = 0; j < n; j++)
+				if (values[j] < values[i])
+					smaller++;
+				else if (values[j] == values[i])
+					equal++;
+			ranks[i] = smaller + (equal + 1) / 2.0;
+		}
+		return ranks;
+	}
+
+	/**
+	 * @param x
+	 * @param df
+	 * @return P(X > x) for a chi-square distributed X with <code>df</code> degrees of freedom.
+	 */
+	public static double chiSquareSurvival(double x, int df) {
+		if (x <= 0)
+			return 1;
+		return 1 - regularizedGammaP(df / 2.0, x / 2);
+	}
+
+	// series expansion and continued fraction, as in Numerical Recipes.
+	private static double regularizedGammaP(double a, double x) {
+		if (x < a + 1) {
+			double term = 1 / a, sum = term;
+			for (int n = 1; n < 500; n++) {
+				term *= x / (a + n);
+				sum += term;
+				if (Math.abs(term) < Math.abs(sum) * 1e-15)
+					break;
+			}
+			return sum * Math.exp(-x + a * Math.log(x) - logGamma(a));
+		}
+		double b = x + 1 - a, c = 1 / Double.MIN_VALUE, d = 1 / b, h = d, an, delta;
+		for (int i = 1; i < 500; i++) {
+			an = -i * (i - a);
+			b += 2;
+			d = an * d + b;
+			if (Math.abs(d) < Double.MIN_VALUE)
+				d = Double.MIN_VALUE;
+			c = b + an / c;
+			if (Math.abs(c) < Double.MIN_VALUE)
+				c = Double.MIN_VALUE;
+			d = 1 / d;
+			delta = d * c;
+			h *= delta;
+			if (Math.abs(delta - 1) < 1e-15)
+				break;
+		}
+		return 1 - Math.exp(-x + a * Math.log(x) - logGamma(a)) * h;
+	}
+
+	// Lanczos approximation.
+	private static double logGamma(double x) {
+		double[] coefficients = { 76.18009172947146, -86.50532032941677, 24.01409824083091, -1.231739572450155,
+				0.1208650973866179e-2, -0.5395239384953e-5 };
+		double y = x, tmp = x + 5.5, series = 1.000000000190015;
+		tmp -= (x + 0.5) * Math.log(tmp);
+		for (double coefficient : coefficients)
+			series += coefficient / ++y;
+		return -tmp + Math.log(2.5066282746310005 * series / x);
+	}
+
+	/**
+	 * @param p
+	 * @param df
+	 * @return the <code>p</code> quantile of Student's t distribution with <code>df</code> degrees of freedom.
+	 */
+	public static double tQuantile(double p, int df) {
+		double low = -1e3, high = 1e3, middle = 0;
+		for (int i = 0; i < 200; i++) {
+			middle = (low + high) / 2;
+			if (tCdf(middle, df) < p)
+				low = middle;
+			else
+				high = middle;
+		}
+		return middle;
+	}
+
+	private static double tCdf(double t, int df) {
+		double tail = 0.5 * regularizedBeta(df / (df + t * t), df / 2.0, 0.5);
+		return t > 0 ? 1 - tail : tail;
+	}
+
+	private static double regularizedBeta(double x, double a, double b) {
+		if (x <= 0)
+			return 0;
+		if (x >= 1)
+			return 1;
+		double front = Math.exp(logGamma(a + b) - logGamma(a) - logGamma(b) + a * Math.log(x) + b * Math.log(1 - x));
+		if (x < (a + 1) / (a + b + 2))
+			return front * betaFraction(x, a, b) / a;
+		return 1 - front * betaFraction(1 - x, b, a) / b;
+	}
+
+	private static double betaFraction(double x, double a, double b) {
+		double c = 1, d = 1 - (a + b) * x / (a + 1), aa, delta;
+		if (Math.abs(d) < Double.MIN_VALUE)
+			d = Double.MIN_VALUE;
+		d = 1 / d;
+		double h = d;
+		for (int m = 1; m < 500; m++) {
+			aa = m * (b - m) * x / ((a + 2 * m - 1) * (a + 2 * m));
+			d = 1 + aa * d;
+			if (Math.abs(d) < Double.MIN_VALUE)
+				d = Double.MIN_VALUE;
+			c = 1 + aa / c;
+			if (Math.abs(c) < Double.MIN_VALUE)
+				c = Double.MIN_VALUE;
+			d = 1 / d;
+			h *= d * c;
+			aa = -(a + m) * (a + b + m) * x / ((a + 2 * m) * (a + 2 * m + 1));
+			d = 1 + aa * d;
+			if (Math.abs(d) < Double.MIN_VALUE)
+				d = Double.MIN_VALUE;
+			c = 1 + aa / c;
+			if (Math.abs(c) < Double.MIN_VALUE)
+				c = Double.MIN_VALUE;
+			d = 1 / d;
+			delta = d * c;
+			h *= delta;
+			if (Math.abs(delta - 1) < 1e-15)
+				break;
+		}
+		return h;
+	}
+}
@@ -0,0 +1,107 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.input.tuning.sequential.spot;
+
+import se.miun.itm.input.model.InPUTException;
+
+/**
+ * Decides when the state of a SPOT study is checkpointed. A checkpoint flushes the result journal and, if it has
+ * changed since, saves the R workspace. Checkpoints can be taken every n results, every t seconds, and when the JVM
+ * shuts down, in any combination. A value of 0 disables the respective trigger.
+ * 
+ * @author Felix Dobslaw
+ * 
+ * @ThreadSafe
+ */
+public class CheckpointPolicy {
+
+	/**
+	 * checkpoints after every result and on shutdown. Because the workspace is only saved when it has changed, this
+	 * costs one save per design.
+	 */
+	public static final CheckpointPolicy DEFAULT = new CheckpointPolicy(1, 0L, true);
+
+	private final int everyResults;
+
+	private final long everyMillis;
+
+	private final boolean onShutdown;
+
+	private CheckpointPolicy(int everyResults, long everyMillis, boolean onShutdown) {
+		this.everyResults = everyResults;
+		this.everyMillis = everyMillis;
+		this.onShutdown = onShutdown;
+	}
+
+	/**
+	 * @param everyResults
+	 *            the amount of results after which a checkpoint is taken, or 0.
+	 * @param everySeconds
+	 *            the amount of seconds after which a checkpoint is taken, or 0.
+	 * @param onShutdown
+	 *            should a checkpoint be taken when the JVM shuts down?
+	 * @return
+	 * @throws InPUTException
+	 */
+	public static CheckpointPolicy of(int everyResults, long everySeconds, boolean onShutdown) throws InPUTException {
+		if (everyResults < 0 || everySeconds < 0)
+			throw new InPUTException("The checkpoint intervals have to be positive, or 0 for none, but were " + everyResults
+					+ " results and " + everySeconds + " seconds.");
+		return new CheckpointPolicy(everyResults, everySeconds * 1000, onShutdown);
+	}
+
+	public static CheckpointPolicy everyResults(int results) throws InPUTException {
+		return of(results, 0L, true);
+	}
+
+	public static CheckpointPolicy everySeconds(long seconds) throws InPUTException {
+		return of(0, seconds, true);
+	}
+
+	public static CheckpointPolicy onShutdown() throws InPUTException {
+		return of(0, 0L, true);
+	}
+
+	/**
+	 * is a checkpoint due, given the amount of results since the last one?
+	 * @param resultsSinceCheckpoint
+	 * @return
+	 */
+	public boolean isDue(int resultsSinceCheckpoint) {
+		return everyResults > 0 && resultsSinceCheckpoint >= everyResults;
+	}
+
+	public int getEveryResults() {
+		return everyResults;
+	}
+
+	public long getEveryMillis() {
+		return everyMillis;
+	}
+
+	public boolean isOnShutdown() {
+		return onShutdown;
+	}
+
+	@Override
+	public String toString() {
+		return "CheckpointPolicy [everyResults=" + everyResults + ", everyMillis=" + everyMillis + ", onShutdown="
+				+ onShutdown + "]";
+	}
+}
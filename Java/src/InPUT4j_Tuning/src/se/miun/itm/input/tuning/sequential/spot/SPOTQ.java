@@ -61,6 +61,12 @@ public class SPOTQ {
 	public static final String FILE_CONFIG_ENDING = ".conf";
 	
 	public static final String FILE_RES_ENDING = ".res";
+
+	public static final String FILE_JOURNAL_ENDING = ".journal";
+
+	public static final String FILE_WORKSPACE_ENDING = ".RData";
+
+	public static final String FILE_HISTORY_ENDING = ".Rhistory";
 	
 	
 	
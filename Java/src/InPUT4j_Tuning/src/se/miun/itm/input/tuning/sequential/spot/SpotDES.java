@@ -28,7 +28,9 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.rosuda.JRI.REXP;
 import org.rosuda.JRI.RVector;
@@ -64,9 +66,18 @@ public class SpotDES {
 		this(experiments, null, null);
 	}
 
+	/**
+	 * binds the designs proposed by SPOT as a column-major matrix of values. Each design is repeated as often as its
+	 * REPEATS column demands.
+	 * @param designs the columns of the design data frame.
+	 * @param paramIds the ids of the columns.
+	 * @param roi
+	 * @throws InPUTException
+	 */
 	public SpotDES(RVector designs, String[] paramIds, SpotROI roi)
 			throws InPUTException {
-		this(roi, paramIds, designs);
+		this.roi = roi;
+		this.designs = initSpotDesigns(designs, paramIds);
 	}
 
 	public SpotDES(String filePath, SpotROI roi) throws InPUTException {
@@ -84,6 +95,27 @@ public class SpotDES {
 		return Collections.unmodifiableList(designs);
 	}
 
+	private List<SpotDesign> initSpotDesigns(RVector columns, String[] paramIds) {
+		int rows = ((REXP) columns.get(0)).asDoubleArray().length;
+		double[] matrix = new double[columns.size() * rows];
+		for (int i = 0; i < columns.size(); i++)
+			System.arraycopy(((REXP) columns.get(i)).asDoubleArray(), 0, matrix, i * rows, rows);
+
+		Map<String, Integer> index = new HashMap<String, Integer>();
+		for (int i = 0; i < paramIds.length; i++)
+			index.put(paramIds[i], i);
+
+		int repeatPosition = columns.size() - 3;
+		List<SpotDesign> designs = new ArrayList<SpotDesign>();
+		SpotDesign design;
+		for (int row = 0; row < rows; row++) {
+			design = new SpotDesign(roi, paramIds, index, matrix, rows, row);
+			for (int j = 0; j < (int) matrix[repeatPosition * rows + row]; j++)
+				designs.add(design);
+		}
+		return Collections.unmodifiableList(designs);
+	}
+
 	public SpotDesign getDesign(int position) {
 		return designs.get(position);
 	}
@@ -96,25 +128,12 @@ public class SpotDES {
 		if (helper instanceof List<?>) {
 			is = initDesigns(exporter, (List<IDesign>) (List<?>) helper);
 		} else if (helper instanceof SpotROI) {
-			if (secondHelper != null) {
-				if (secondHelper instanceof String[]) {
-					is = initDesigns((RVector) thirdHelper,
-							(String[]) secondHelper);
-				} else {
-					is = new FileInputStream((String) secondHelper);
-				}
-			}
+			if (secondHelper != null)
+				is = new FileInputStream((String) secondHelper);
 		}
 		return new InputStreamWrapper(is);
 	}
 
-	public static InputStream initDesigns(RVector designs, String[] paramIds) {
-		StringBuilder b = new StringBuilder();
-		appendHeader(paramIds, b);
-		appendDesigns(designs, b);
-		return new ByteArrayInputStream(b.toString().getBytes());
-	}
-
 	public static InputStream initDesigns(SpotExporter exporter,
 			List<IDesign> designs) throws InPUTException {
 		InputStream is = null;
@@ -182,52 +201,6 @@ public class SpotDES {
 		}
 	}
 
-	public static void appendDesigns(RVector designLines, StringBuilder b) {
-		List<String[]> values = initValues(designLines);
-
-		double[] repeats = extractRepeats(designLines);
-
-		StringBuilder desBuilder;
-		for (int i = 0; i < values.get(0).length; i++) {
-			desBuilder = new StringBuilder();
-			for (int j = 0; j < values.size(); j++) {
-				desBuilder.append(values.get(j)[i]);
-				desBuilder.append(' ');
-			}
-			desBuilder.append('\n');
-
-			for (int j = 0; j < (int) repeats[i]; j++)
-				b.append(desBuilder);
-		}
-	}
-
-	private static double[] extractRepeats(RVector designLines) {
-		int repeatPosition = designLines.size() - 3;
-		return ((REXP) designLines.get(repeatPosition)).asDoubleArray();
-	}
-
-	private static List<String[]> initValues(RVector designLines) {
-		List<String[]> params = new ArrayList<String[]>();
-		REXP expr;
-		double[] values;
-		String[] valuesString;
-		for (int i = 0; i < designLines.size(); i++) {
-			expr = (REXP)designLines.get(i);
-			values = expr.asDoubleArray();
-			valuesString = doubleArrayToStringArray(values);
-			params.add(valuesString);
-		}
-		return params;
-	}
-	
-
-	private static String[] doubleArrayToStringArray(double[] values) {
-		String[] results = new String[values.length];
-		for (int i = 0; i < results.length; i++)
-			results[i] = "" + values[i];
-		return results;
-	}
-
 	@Override
 	public String toString() {
 		StringBuilder b = new StringBuilder();
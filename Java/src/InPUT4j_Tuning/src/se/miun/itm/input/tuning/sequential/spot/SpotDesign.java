@@ -31,12 +31,39 @@ public class SpotDesign {
 	private final Map<String, Integer> map;
 	private final SpotROI roi;
 	private String[] paramIdsNoConfig;
+
+	// column-major values of all designs of a DES, if the design is a row of it
+	private final double[] matrix;
+	private final int rows;
+	private final int row;
 	
 	public SpotDesign(SpotROI roi , String[] paramIds, String desLine) {
 		this.roi = roi;
 		paramIdsNoConfig = Arrays.copyOfRange(paramIds, 0, paramIds.length-4);
 		map = new HashMap<String, Integer>();
 		values = initValues(paramIds, desLine);
+		matrix = null;
+		rows = 0;
+		row = 0;
+	}
+
+	/**
+	 * a design that is the given row of a column-major matrix of design values, without copying it.
+	 * @param roi
+	 * @param paramIds the ids of the columns.
+	 * @param index the column index of each param id.
+	 * @param matrix
+	 * @param rows the amount of rows of the matrix.
+	 * @param row
+	 */
+	SpotDesign(SpotROI roi, String[] paramIds, Map<String, Integer> index, double[] matrix, int rows, int row) {
+		this.roi = roi;
+		paramIdsNoConfig = Arrays.copyOfRange(paramIds, 0, paramIds.length-4);
+		map = index;
+		values = null;
+		this.matrix = matrix;
+		this.rows = rows;
+		this.row = row;
 	}
 	
 	private List<String> initValues(String[] params, String desLine) {
@@ -51,14 +78,28 @@ public class SpotDesign {
 	}
 
 	public String getValueFor(String paramId) {
-		return values.get(map.get(paramId));
+		return getValueAt(map.get(paramId));
 	}
 	
 	public String getValueAt(int position) {
+		if (values == null)
+			return "" + matrix[position * rows + row];
 		return values.get(position);
 	}
+
+	public double getNumericValueFor(String paramId) {
+		return getNumericValueAt(map.get(paramId));
+	}
+
+	public double getNumericValueAt(int position) {
+		if (values == null)
+			return matrix[position * rows + row];
+		return Double.parseDouble(values.get(position));
+	}
 	
 	public int size() {
+		if (values == null)
+			return map.size();
 		return values.size();
 	}
 
@@ -73,8 +114,8 @@ public class SpotDesign {
 	@Override
 	public String toString() {
 		StringBuilder b = new StringBuilder();
-		for (String var : values) {
-			b.append(var);
+		for (int i = 0; i < size(); i++) {
+			b.append(getValueAt(i));
 			b.append(' ');
 		}
 		return b.toString();
@@ -18,17 +18,29 @@ OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
 SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  */package se.miun.itm.input.tuning.sequential.spot;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.rosuda.JRI.REXP;
-import org.rosuda.JRI.Rengine;
 
 import se.miun.itm.input.IExperiment;
 import se.miun.itm.input.IInPUT;
@@ -42,18 +54,16 @@ import se.miun.itm.input.util.InputStreamWrapper;
 
 public class SpotHelper {
 
+	private static final String R_RESULTS = "inputResults";
+
+	private static final String R_RESULT_COLUMN = ".inputResultColumn";
+
 	private static AtomicInteger globalExperimentCounter = new AtomicInteger(0);
 
-	private static SpotConverter converter;
+	private final SpotConverter converter;
+
+	private final SpotSession session;
 
-	static{
-		try {
-			converter = new SpotConverter();
-		} catch (InPUTException e) {
-			System.out.println("An internal initialization error of class SpotConverter occured. Is the config.xml valid (esp. the validation setup)?");
-		}
-	}
-	
 	private final SpotROI inputROI;
 
 	private final SpotROI outputROI;
@@ -62,8 +72,33 @@ public class SpotHelper {
 
 	private final SpotRES currentRES;
 
+	private final Map<Integer, SpotDES> openDESs = new HashMap<Integer, SpotDES>();
+
 	private String[] paramIds;
 
+	private CheckpointPolicy checkpointPolicy;
+
+	private final StringBuilder journal = new StringBuilder(); // journal rows that have not been written yet
+
+	private boolean journalStarted;
+
+	private boolean workspaceChanged;
+
+	private int resultsSinceCheckpoint;
+
+	private final Object checkpointLock = new Object();
+
+	private final AtomicBoolean checkpointRequested = new AtomicBoolean();
+
+	private ScheduledExecutorService checkpointer;
+
+	private ScheduledFuture<?> timedCheckpoints;
+
+	private Thread shutdownHook;
+
+	// the first failure of a background checkpoint, rethrown by the next checkpoint or feedback.
+	private volatile InPUTException checkpointFailure;
+
 	private final String investigationId;
 
 	private final File experimentalFolder;
@@ -72,22 +107,7 @@ public class SpotHelper {
 
 	private final IInPUT input;
 
-	private String studyId; // TODO does not work for more than one SPOT at a
-							// time! Maybe this engine
-	// can simply be shared in a meaningful way, using intrinsic locking among
-	// all SPOT instances.
-	private static Rengine engine;
-
-	private static int repetitionCounter;
-
-	static {
-		String[] args = { "--vanilla" };
-		engine = new Rengine(args, false, null);
-//		engine.DEBUG = 1;
-		REXP allRight = engine.eval(SPOTQ.COMMAND_LOAD_SPOT, false);
-		if (allRight == null)
-			System.err.println("SPOT is not appropriately installed. Open R and install SPOT by: 'install.packages(\"SPOT\")'.");
-	}
+	private String studyId;
 
 	public SpotHelper(IInPUT input, IDesign config, String studyId)
 			throws InPUTException {
@@ -96,21 +116,27 @@ public class SpotHelper {
 		investigationId = initExperimentId(studyId, config, experimentalFolder);
 		this.config = initConfig(investigationId, config);
 		this.input = input;
+		converter = new SpotConverter();
+		session = new SpotSession();
 		initInverseFunction();
 		checkSPOTIsInstalled();
 		inputROI = new SpotROI(input);
 		outputROI = new SpotROI(input.getOutputSpace());
 		currentRES = new SpotRES(inputROI, outputROI);
+		initResults();
 		initExperimentalFolder();
+		journal.append(currentRES.headerToSpot());
+		journal.append('\n');
+		setCheckpointPolicy(CheckpointPolicy.DEFAULT);
 	}
 
-	private void initResultHeading() {
-		engine.eval("inputConfig$alg.currentResult <- read.table(textConnection(\"" + currentRES.toString() + "\"), header=TRUE)");
+	private void initResults() {
+		session.eval(R_RESULTS + " <- NULL", false);
 	}
 
 	private void checkSPOTIsInstalled() throws InPUTException {
-		REXP spotInstalled = engine
-				.eval("is.element('SPOT', installed.packages()[,1])");
+		REXP spotInstalled = session
+				.evalGlobal("is.element('SPOT', installed.packages()[,1])", true);
 		if (!spotInstalled.asBool().isTRUE())
 			throw new InPUTException(
 					"In order to use InPUT tuning extension, you have to install the SPOT package for R: \"install.packages('SPOT')\" in the R console.");
@@ -154,21 +180,11 @@ public class SpotHelper {
 	}
 
 	private void initInverseFunction() {
-		engine.eval(
+		session.evalGlobal(
 				"source(textConnection(\"inverse<-function(x){v<-x\n if(x>0)v<-1/x\n return(v)}\"))",
 				false);
 	}
 
-	public static String initRelativeFileString(String studyId, IDesign config,
-			String fileName) throws InPUTException {
-
-		String folderId = adjustExpFolderId(studyId, config);
-
-		if (folderId == null || folderId.equals(""))
-			return fileName;
-		return folderId + repetitionCounter + File.separator + fileName;
-	}
-
 	private static File initExperimentalFolder(String studyId, IDesign config)
 			throws InPUTException {
 
@@ -177,19 +193,13 @@ public class SpotHelper {
 		String expFolderId = adjustExpFolderId(studyId, config);
 
 		if (expFolderId != null) {
-			File expFolder;
-			synchronized (globalExperimentCounter) { // make sure that the
-														// counter is
-				// consistent
-				expFolder = new File(expFolderId);
-				while (expFolder.exists()) {
-					repetitionCounter = globalExperimentCounter
-							.incrementAndGet();
-					expFolder = new File(initExperimentalFolder(expFolderId));
-				}
-				repetitionCounter = globalExperimentCounter.intValue();
+			File expFolder = new File(expFolderId);
+			// creating the folder claims it, so that concurrent studies never share one
+			while (!expFolder.mkdirs()) {
+				if (!expFolder.exists())
+					throw new InPUTException("The experimental folder " + expFolder.getPath() + " could not be created.");
+				expFolder = new File(initExperimentalFolder(expFolderId, globalExperimentCounter.incrementAndGet()));
 			}
-			expFolder.mkdirs();
 			experimentalFolder = expFolder;
 		}
 		return experimentalFolder;
@@ -215,9 +225,9 @@ public class SpotHelper {
 		return expFolderId;
 	}
 
-	private static String initExperimentalFolder(String expFolderId) {
-		if (repetitionCounter > 0)
-			return expFolderId + "(" + repetitionCounter + ")";
+	private static String initExperimentalFolder(String expFolderId, int repetition) {
+		if (repetition > 0)
+			return expFolderId + "(" + repetition + ")";
 		return expFolderId;
 	}
 
@@ -228,12 +238,16 @@ public class SpotHelper {
 	private static void createFile(String ending,
 			SpotExportable<InputStream> exportable, String investigationId)
 			throws InPUTException {
+		writeFile(ending, exportable.export(), investigationId, false);
+	}
+
+	private static void writeFile(String ending, InputStream content,
+			String investigationId, boolean append) throws InPUTException {
 		String fileId = fileId(investigationId, ending);
 		try {
-			OutputStream fileOut = new FileOutputStream(fileId);
+			OutputStream fileOut = new FileOutputStream(fileId, append);
 
-			InputStreamWrapper.fromInputStreamToOutputStream(
-					exportable.export(), fileOut);
+			InputStreamWrapper.fromInputStreamToOutputStream(content, fileOut);
 			fileOut.flush();
 			fileOut.close();
 		} catch (FileNotFoundException e) {
@@ -276,79 +290,388 @@ public class SpotHelper {
 		initSPOTConfFileName();
 		initSPOTinitialDesign();
 		retrieveNextDesign();
-		saveSPOTWorkspace();
+		workspaceChanged();
 		currentDES = initializeDesign();
 		return currentDES.size();
 	}
 
 	private void saveSPOTWorkspace() throws InPUTException {
-		// engine.eval("load(paste(getwd(), \"" + rData + "\", sep = \""
-		// + File.separator + "\"))", false);
-		String rData = initRelativeFileString(studyId, config, ".RData");
-		engine.eval("save.image(paste(getwd(), \"" + rData + "\", sep = \""
-				+ File.separator + "\"))", false);
+		String rData = toRPath(fileId(investigationId, SPOTQ.FILE_WORKSPACE_ENDING));
+		session.save(rData);
 		saveSPOTHistory();
 	}
 
 	// TODO does not work!
 	private void saveSPOTHistory() throws InPUTException {
-		// engine.eval("loadhistory(file=paste(getwd(), \"" + rHistory +
-		// "\", sep = \""
-		// + File.separator + "\"))", false);
-		String rHistory = initRelativeFileString(studyId, config, ".Rhistory");
-		engine.eval("savehistory(file=paste(getwd(), \"" + rHistory
-				+ "\", sep = \"" + File.separator + "\"))", false);
+		String rHistory = toRPath(fileId(investigationId, SPOTQ.FILE_HISTORY_ENDING));
+		session.evalGlobal("savehistory(file=\"" + rHistory + "\")", false);
+	}
+
+	private static String toRPath(String path) {
+		return path.replace('\\', '/');
+	}
+
+	/**
+	 * sets the policy by which the state of the study is checkpointed. The default is {@link CheckpointPolicy#DEFAULT}.
+	 * @param policy
+	 */
+	public void setCheckpointPolicy(CheckpointPolicy policy) {
+		synchronized (checkpointLock) {
+			checkpointPolicy = policy;
+			if (timedCheckpoints != null)
+				timedCheckpoints.cancel(false);
+			timedCheckpoints = null;
+			if (policy.getEveryMillis() > 0)
+				timedCheckpoints = checkpointer().scheduleWithFixedDelay(new Runnable() {
+					@Override
+					public void run() {
+						requestCheckpoint();
+					}
+				}, policy.getEveryMillis(), policy.getEveryMillis(), TimeUnit.MILLISECONDS);
+			updateShutdownHook(policy.isOnShutdown());
+		}
+	}
+
+	public CheckpointPolicy getCheckpointPolicy() {
+		return checkpointPolicy;
+	}
+
+	private void updateShutdownHook(boolean onShutdown) {
+		if (onShutdown && shutdownHook == null) {
+			shutdownHook = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						writeCheckpoint();
+					} catch (InPUTException e) {
+						checkpointFailed(e);
+						// the JVM is exiting; there is no later call to rethrow the failure from.
+						System.err.println("The final checkpoint of the study in " + investigationId + " failed: " + e.getMessage());
+					}
+				}
+			});
+			Runtime.getRuntime().addShutdownHook(shutdownHook);
+		} else if (!onShutdown && shutdownHook != null) {
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+			shutdownHook = null;
+		}
+	}
+
+	private ScheduledExecutorService checkpointer() {
+		if (checkpointer == null)
+			checkpointer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "SPOT checkpoints");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		return checkpointer;
+	}
+
+	/**
+	 * takes a checkpoint in the background, unless one is already waiting to be taken.
+	 */
+	private void requestCheckpoint() {
+		if (checkpointRequested.compareAndSet(false, true))
+			checkpointer().execute(new Runnable() {
+				@Override
+				public void run() {
+					checkpointRequested.set(false);
+					try {
+						writeCheckpoint();
+					} catch (InPUTException e) {
+						checkpointFailed(e);
+					}
+				}
+			});
+	}
+
+	private void checkpointFailed(InPUTException e) {
+		if (checkpointFailure == null)
+			checkpointFailure = e;
+	}
+
+	private void rethrowCheckpointFailure() throws InPUTException {
+		InPUTException e = checkpointFailure;
+		if (e != null) {
+			checkpointFailure = null;
+			throw new InPUTException("A background checkpoint of the study in " + investigationId + " failed.", e);
+		}
+	}
+
+	/**
+	 * appends all results that have been fed back since the last checkpoint to the journal, and saves the R workspace
+	 * if it has changed since.
+	 * @throws InPUTException if this or an earlier background checkpoint has failed.
+	 */
+	public void checkpoint() throws InPUTException {
+		rethrowCheckpointFailure();
+		writeCheckpoint();
+	}
+
+	private void writeCheckpoint() throws InPUTException {
+		synchronized (checkpointLock) {
+			String rows;
+			boolean saveWorkspace;
+			synchronized (journal) {
+				rows = journal.toString();
+				journal.setLength(0);
+				saveWorkspace = workspaceChanged;
+				workspaceChanged = false;
+				resultsSinceCheckpoint = 0;
+			}
+			if (rows.length() > 0) {
+				writeFile(SPOTQ.FILE_JOURNAL_ENDING, new ByteArrayInputStream(rows.getBytes()), investigationId, journalStarted);
+				journalStarted = true;
+			}
+			if (saveWorkspace)
+				saveSPOTWorkspace();
+		}
+	}
+
+	/**
+	 * takes a final checkpoint and releases the resources of the study: the timed checkpoints, the checkpoint thread and the
+	 * shutdown hook, which would otherwise keep the study reachable until the JVM exits, and the R environment of its
+	 * session in the shared R engine. The helper cannot be used afterwards.
+	 * @throws InPUTException if the final or an earlier background checkpoint has failed.
+	 */
+	public void close() throws InPUTException {
+		ScheduledExecutorService released;
+		synchronized (checkpointLock) {
+			if (timedCheckpoints != null)
+				timedCheckpoints.cancel(false);
+			timedCheckpoints = null;
+			released = checkpointer;
+		}
+		try {
+			// checkpoints that have been requested already are taken before the final one.
+			if (released != null) {
+				released.shutdown();
+				released.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			}
+			checkpoint();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InPUTException("The study in " + investigationId + " has been interrupted while closing.", e);
+		} finally {
+			synchronized (checkpointLock) {
+				try {
+					updateShutdownHook(false);
+				} catch (IllegalStateException e) {
+					// the JVM is shutting down already; the hook runs regardless.
+				}
+			}
+			session.close();
+		}
+	}
+
+	private void workspaceChanged() {
+		synchronized (journal) {
+			workspaceChanged = true;
+		}
+	}
+
+	private void resultAdded() {
+		boolean due;
+		synchronized (journal) {
+			journal.append(currentRES.getLastResult().toSpot());
+			resultsSinceCheckpoint++;
+			due = checkpointPolicy.isDue(resultsSinceCheckpoint);
+		}
+		if (due)
+			requestCheckpoint();
+	}
+
+	/**
+	 * resumes a study that ended abruptly, from its experimental folder: the last checkpoint of the R workspace is
+	 * loaded, and the results of the journal are replayed, including those that came after the checkpoint. Has to be
+	 * called before the first design is initialized.
+	 * 
+	 * @param experimentalFolderPath
+	 *            the folder of the study to resume.
+	 * @return the amount of results that have been replayed.
+	 * @throws InPUTException
+	 */
+	public int resume(String experimentalFolderPath) throws InPUTException {
+		String previousId = new File(experimentalFolderPath, (String) config.getValue(SPOTQ.ATTR_INPUT_EXPERIMENT_ID)).getPath();
+		File workspace = new File(previousId + SPOTQ.FILE_WORKSPACE_ENDING);
+		createROIFile();
+		initSPOTConfFileName();
+		if (workspace.exists())
+			session.load(toRPath(workspace.getAbsolutePath()));
+		else
+			initSPOTinitialDesign();
+		// the workspace refers to the files of the previous study
+		initSPOTConfFileName();
+		int replayed = replayJournal(new File(previousId + SPOTQ.FILE_JOURNAL_ENDING));
+		initResults();
+		currentRES.resetTransfer();
+		if (replayed > 0 && isFileMode())
+			feedbackResultInRESFile();
+		workspaceChanged();
+		checkpoint();
+		return replayed;
+	}
+
+	private int replayJournal(File journalFile) throws InPUTException {
+		if (!journalFile.exists())
+			return 0;
+		int replayed = 0;
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile)));
+			try {
+				String line = reader.readLine();
+				if (line == null)
+					return 0;
+				if (!line.trim().equals(currentRES.headerToSpot().trim()))
+					throw new InPUTException("The journal " + journalFile.getPath() + " does not belong to this study, its header is \"" + line
+							+ "\".");
+				while ((line = reader.readLine()) != null) {
+					if (line.trim().length() == 0)
+						continue;
+					currentRES.replay(line);
+					synchronized (journal) {
+						journal.append(currentRES.getLastResult().toSpot());
+					}
+					replayed++;
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (IOException e) {
+			throw new InPUTException("The journal " + journalFile.getPath() + " could not be read.", e);
+		}
+		return replayed;
 	}
 
 	public int initSequentialDesign() throws InPUTException {
 		writeResultsToSPOTProjectCache();
 		initSPOTSequentialDesign();
-		saveSPOTWorkspace();
+		workspaceChanged();
 		currentDES = initializeDesign();
 		return currentDES.size();
 	}
 
+	/**
+	 * transfers the results that have not been transferred before as typed column vectors, and appends them to the
+	 * results that are already known to R.
+	 */
 	private void writeResultsToSPOTProjectCache() {
-		engine.eval("inputConfig$alg.currentResult <- read.table(textConnection(\"" + currentRES.toString() + "\"), header=TRUE)");
+		List<SpotResult> pending = currentRES.nextTransfer();
+		if (!pending.isEmpty()) {
+			List<String> header = currentRES.getHeader();
+			StringBuilder frame = new StringBuilder();
+			StringBuilder symbols = new StringBuilder();
+			for (int i = 0; i < header.size(); i++) {
+				String symbol = R_RESULT_COLUMN + i;
+				assignColumn(symbol, header.get(i), pending);
+				if (i > 0) {
+					frame.append(", ");
+					symbols.append(", ");
+				}
+				frame.append('`' + header.get(i) + "`=" + symbol);
+				symbols.append(symbol);
+			}
+			session.eval(R_RESULTS + " <- rbind(" + R_RESULTS + ", data.frame(" + frame + "))", false);
+			session.eval("rm(" + symbols + ")", false);
+		}
+		session.eval("inputConfig$alg.currentResult <- " + R_RESULTS, false);
+	}
+
+	private void assignColumn(String symbol, String var, List<SpotResult> results) {
+		if (var.equals(SPOTQ.ATTR_ALGORITHM_ID)) {
+			String[] column = new String[results.size()];
+			for (int i = 0; i < column.length; i++)
+				column[i] = results.get(i).getValueFor(var);
+			session.assign(symbol, column);
+		} else {
+			double[] column = new double[results.size()];
+			for (int i = 0; i < column.length; i++)
+				column[i] = toDouble(results.get(i).getValueFor(var));
+			session.assign(symbol, column);
+		}
+	}
+
+	private static double toDouble(String value) {
+		if (value == null)
+			return Double.NaN;
+		return Double.parseDouble(value);
 	}
 
 	public void retrieveNextDesign() {
-		paramIds = engine.eval("colnames(inputConfig$alg.currentDesign)")
+		paramIds = session.eval("colnames(inputConfig$alg.currentDesign)")
 				.asStringArray();
 	}
 
 	public void initSPOTinitialDesign() {
 		initInverseFunction();
-		engine.eval("inputConfig<-spot(inputFile,\"init\")", false);
+		session.eval("inputConfig<-spot(inputFile,\"init\")", false);
 	}
 
 	public void initSPOTConfFileName() {
-		engine.eval("inputFile=paste(getwd(), \"" + investigationId
+		session.eval("inputFile=paste(getwd(), \"" + investigationId
 				+ ".conf\", sep = \"" + File.separator + "\")", false);
 	}
 
 	public SpotDES initializeDesign() throws InPUTException {
-		REXP designs = engine.eval("inputConfig$alg.currentDesign");
+		REXP designs = session.eval("inputConfig$alg.currentDesign");
 		return new SpotDES(designs.asVector(), paramIds, inputROI);
 	}
 
 	public void initSPOTSequentialDesign() {
-		engine.eval(
+		session.eval(
 				"inputConfig<-spot(inputFile,\"seq\", spotConfig=inputConfig)",
 				false);
 	}
 
 	public void feedbackSpot(IDesign result) throws InPUTException {
+		rethrowCheckpointFailure();
 		currentRES.append(result, currentDES);
 		
 		if (isFileMode())
 			feedbackResultInRESFile();
 
-		saveSPOTWorkspace();
+		resultAdded();
+	}
+
+	/**
+	 * feeds back the result for the given position of a design that has been opened before, which might not be the current one.
+	 * @param result
+	 * @param design
+	 * @param position
+	 * @throws InPUTException if the design has never been opened, or has been closed already, or if a background
+	 *             checkpoint has failed.
+	 */
+	public void feedbackSpot(IDesign result, int design, int position) throws InPUTException {
+		rethrowCheckpointFailure();
+		SpotDES des = openDESs.get(design);
+		if (des == null)
+			throw new InPUTException("The design " + design + " is not open; its results cannot be related to a design row.");
+		currentRES.append(result, des, position, des == currentDES);
+
+		if (isFileMode())
+			feedbackResultInRESFile();
+
+		resultAdded();
+	}
+
+	/**
+	 * remembers the current design under the given number, so that results for it can be fed back after the next design has been initialized.
+	 * @param design
+	 */
+	public void openDesign(int design) {
+		openDESs.put(design, currentDES);
+	}
+
+	public void closeDesign(int design) {
+		openDESs.remove(design);
 	}
 
 	private void feedbackResultInRESFile() throws InPUTException {
-			createFile(SPOTQ.FILE_RES_ENDING, currentRES, investigationId);
+		boolean append = currentRES.hasExported();
+		writeFile(SPOTQ.FILE_RES_ENDING, currentRES.exportNew(), investigationId, append);
 	}
 
 	private Boolean isFileMode() throws InPUTException {
@@ -357,7 +680,11 @@ public class SpotHelper {
 
 	public void reset(String studyId) throws InPUTException {
 		this.studyId = studyId;
-		engine.eval("rm(list=ls())", false);
+		openDESs.clear();
+		session.clear();
+		currentRES.resetTransfer();
+		initResults();
+		workspaceChanged();
 	}
 
 	public String getExperimentalFolderPath() {
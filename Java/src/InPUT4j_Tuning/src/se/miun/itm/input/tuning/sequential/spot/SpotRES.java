@@ -38,6 +38,10 @@ public class SpotRES implements SpotExportable<InputStream> {
 	
 	private List<SpotResult> allResults = new ArrayList<SpotResult>();
 
+	private int transferred;
+
+	private int written;
+
 	public SpotRES(SpotROI input, SpotROI output) throws InPUTException {
 		this.input = input;
 		header = initHeader();
@@ -65,21 +69,50 @@ public class SpotRES implements SpotExportable<InputStream> {
 	}
 
 	private void append(IDesign output, SpotDES currentDES, List<SpotResult> to) throws InPUTException {
-		if (this.currentDES == null || !currentDES.equals(this.currentDES)){
-			to.clear();
-			this.currentDES = currentDES;
-		}
-			
+		resetIfNewDesign(currentDES, to);
 		SpotDesign design = currentDES.getDesign(to.size());
 		SpotResult result = new SpotResult(output, header, design);
 		allResults.add(result);
 		to.add(result);
 	}
 
+	private void resetIfNewDesign(SpotDES currentDES, List<SpotResult> to) {
+		if (this.currentDES == null || !currentDES.equals(this.currentDES)){
+			to.clear();
+			this.currentDES = currentDES;
+		}
+	}
+
 	public void append(IDesign result, SpotDES currentDES) throws InPUTException {
 		append(result, currentDES, results);
 	}
 
+	/**
+	 * appends the result for the given position of the design, for results that arrive out of order.
+	 * @param result
+	 * @param des
+	 * @param position
+	 * @param current is <code>des</code> the design currently under investigation?
+	 * @throws InPUTException
+	 */
+	public void append(IDesign result, SpotDES des, int position, boolean current) throws InPUTException {
+		if (current)
+			resetIfNewDesign(des, results);
+		SpotResult spotResult = new SpotResult(result, header, des.getDesign(position));
+		allResults.add(spotResult);
+		if (current)
+			results.add(spotResult);
+	}
+
+	/**
+	 * appends a result that has been written to a result file or journal before, e.g. when a study is resumed.
+	 * @param row a row of values, separated by whitespace, in the order of the header.
+	 * @throws InPUTException
+	 */
+	public void replay(String row) throws InPUTException {
+		allResults.add(new SpotResult(header, row.trim().split("\\s+")));
+	}
+
 	public String toSpot(List<SpotResult> results) {
 		StringBuilder spotb = new StringBuilder();
 		String spotHeader = headerToSpot();
@@ -95,7 +128,7 @@ public class SpotRES implements SpotExportable<InputStream> {
 		return toSpot(allResults);
 	}
 
-	private String headerToSpot() {
+	String headerToSpot() {
 		StringBuilder b = new StringBuilder();
 		for (String var : header) {
 			b.append(var);
@@ -109,6 +142,52 @@ public class SpotRES implements SpotExportable<InputStream> {
 		return new ByteArrayInputStream(toSpot(allResults).getBytes());
 	}
 
+	/**
+	 * returns the rows that have been appended since the last call, and the header if nothing has been exported this way
+	 * before. Meant for appending to an existing result file.
+	 * @return
+	 */
+	public InputStream exportNew() {
+		StringBuilder spotb = new StringBuilder();
+		if (written == 0) {
+			spotb.append(headerToSpot());
+			spotb.append('\n');
+		}
+		for (SpotResult result : allResults.subList(written, allResults.size()))
+			spotb.append(result.toSpot());
+		written = allResults.size();
+		return new ByteArrayInputStream(spotb.toString().getBytes());
+	}
+
+	/**
+	 * returns the results that have been appended since the last transfer, and marks them as transferred.
+	 * @return
+	 */
+	public List<SpotResult> nextTransfer() {
+		List<SpotResult> pending = new ArrayList<SpotResult>(allResults.subList(transferred, allResults.size()));
+		transferred = allResults.size();
+		return pending;
+	}
+
+	/**
+	 * all results have to be transferred anew with the next transfer, e.g. after the engine has been reset.
+	 */
+	public void resetTransfer() {
+		transferred = 0;
+	}
+
+	public boolean hasExported() {
+		return written > 0;
+	}
+
+	public List<String> getHeader() {
+		return header;
+	}
+
+	public int size() {
+		return allResults.size();
+	}
+
 	public SpotResult getLastResult() {
 		return allResults.get(allResults.size()-1);
 	}
@@ -38,6 +38,21 @@ public class SpotResult {
 		initVariables(output, design);
 	}
 
+	/**
+	 * restores a result from a row of a result file or journal, with the values in the order of the header.
+	 * @param header
+	 * @param values
+	 * @throws InPUTException
+	 */
+	SpotResult(List<String> header, String[] values) throws InPUTException {
+		if (values.length != header.size())
+			throw new InPUTException("The result row has " + values.length + " values, but the header expects " + header.size() + ".");
+		this.header = header;
+		variables = new HashMap<String, String>();
+		for (int i = 0; i < values.length; i++)
+			variables.put(header.get(i), values[i]);
+	}
+
 	private void initVariables(IDesign output, SpotDesign design) throws InPUTException {
 		String functionId, value = null;
 		functionId = design.getRoi().getFunctionId();
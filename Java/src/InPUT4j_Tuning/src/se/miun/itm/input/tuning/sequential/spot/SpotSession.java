@@ -0,0 +1,150 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.input.tuning.sequential.spot;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.rosuda.JRI.REXP;
+import org.rosuda.JRI.Rengine;
+
+import se.miun.itm.input.model.InPUTException;
+
+/**
+ * An isolated session of a SPOT study with R. JRI allows for only one R engine per JVM, so all sessions share one
+ * engine, which is started lazily once the first session is opened. Each session evaluates its commands in an R
+ * environment of its own, so that the variables of concurrent studies do not interfere. Commands of different
+ * sessions are serialized on the engine.
+ * 
+ * @author Felix Dobslaw
+ * 
+ * @ThreadSafe
+ */
+public class SpotSession {
+
+	private static final String[] R_ARGS = { "--vanilla" };
+
+	private static final AtomicInteger sessionCounter = new AtomicInteger();
+
+	private static Rengine engine;
+
+	private final Rengine r;
+
+	private final String environment;
+
+	public SpotSession() throws InPUTException {
+		r = startEngine();
+		environment = ".inputStudy" + sessionCounter.incrementAndGet();
+		evalGlobal(environment + " <- new.env(parent=globalenv())", false);
+	}
+
+	private static synchronized Rengine startEngine() throws InPUTException {
+		if (engine == null) {
+			Rengine started = Rengine.getMainEngine();
+			if (started == null)
+				started = new Rengine(R_ARGS, false, null);
+			if (!started.waitForR())
+				throw new InPUTException("R could not be started. Is R installed and JRI on the library path?");
+			REXP allRight = started.eval(SPOTQ.COMMAND_LOAD_SPOT, false);
+			if (allRight == null)
+				System.err.println("SPOT is not appropriately installed. Open R and install SPOT by: 'install.packages(\"SPOT\")'.");
+			engine = started;
+		}
+		return engine;
+	}
+
+	/**
+	 * evaluates the command in the environment of this session.
+	 * @param command
+	 * @param convert should the result be converted to Java?
+	 * @return
+	 */
+	public REXP eval(String command, boolean convert) {
+		synchronized (r) {
+			return r.eval("local({" + command + "}, envir=" + environment + ")", convert);
+		}
+	}
+
+	public REXP eval(String command) {
+		return eval(command, true);
+	}
+
+	/**
+	 * evaluates the command in the global environment, which is shared by all sessions.
+	 * @param command
+	 * @param convert
+	 * @return
+	 */
+	public REXP evalGlobal(String command, boolean convert) {
+		synchronized (r) {
+			return r.eval(command, convert);
+		}
+	}
+
+	public void assign(String symbol, double[] values) {
+		synchronized (r) {
+			r.assign(symbol, values);
+			moveToEnvironment(symbol);
+		}
+	}
+
+	public void assign(String symbol, String[] values) {
+		synchronized (r) {
+			r.assign(symbol, values);
+			moveToEnvironment(symbol);
+		}
+	}
+
+	private void moveToEnvironment(String symbol) {
+		r.eval("assign(\"" + symbol + "\", " + symbol + ", envir=" + environment + "); rm(" + symbol + ")", false);
+	}
+
+	/**
+	 * saves all variables of this session to the given file.
+	 * @param path
+	 */
+	public void save(String path) {
+		evalGlobal("save(list=ls(envir=" + environment + ", all.names=TRUE), envir=" + environment + ", file=\"" + path + "\")", false);
+	}
+
+	/**
+	 * loads the variables from the given file into this session.
+	 * @param path
+	 */
+	public void load(String path) {
+		evalGlobal("load(\"" + path + "\", envir=" + environment + ")", false);
+	}
+
+	/**
+	 * removes all variables of this session.
+	 */
+	public void clear() {
+		evalGlobal("rm(list=ls(envir=" + environment + ", all.names=TRUE), envir=" + environment + ")", false);
+	}
+
+	/**
+	 * removes the environment of this session. The session cannot be used afterwards.
+	 */
+	public void close() {
+		evalGlobal("rm(" + environment + ")", false);
+	}
+
+	public String getEnvironment() {
+		return environment;
+	}
+}
@@ -0,0 +1,232 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.input.tuning.sequential.surrogate;
+
+/**
+ * A Gaussian process regression model with a squared exponential kernel on the unit hypercube. The response is standardized,
+ * and the length scale and noise level are chosen from a grid by maximum marginal likelihood, which is cheap and robust for
+ * the small sample sizes of parameter tuning.
+ * 
+ * @author Felix Dobslaw
+ * 
+ * @NotThreadSafe
+ */
+public class GaussianProcess {
+
+	private static final double[] LENGTH_SCALES = { 0.05, 0.1, 0.2, 0.35, 0.5, 0.75, 1, 1.5, 2.5 };
+
+	private static final double[] NOISE_LEVELS = { 1e-6, 1e-4, 1e-2, 1e-1, 0.3 };
+
+	private double[][] x;
+
+	private double[][] cholesky;
+
+	private double[] alpha;
+
+	private double lengthScale;
+
+	private double noise;
+
+	private double yMean;
+
+	private double yScale;
+
+	/**
+	 * Fits the model to the given points in [0, 1]^d and their responses.
+	 * 
+	 * @param x
+	 * @param y
+	 */
+	public void fit(double[][] x, double[] y) {
+		if (x.length == 0 || x.length != y.length)
+			throw new IllegalArgumentException("A Gaussian process requires an equal, positive amount of points and responses.");
+		this.x = x;
+		standardize(y);
+
+		double[] z = new double[y.length];
+		for (int i = 0; i < y.length; i++)
+			z[i] = (y[i] - yMean) / yScale;
+
+		double bestLikelihood = Double.NEGATIVE_INFINITY, likelihood;
+		for (double l : LENGTH_SCALES)
+			for (double n : NOISE_LEVELS) {
+				likelihood = logMarginalLikelihood(z, l, n);
+				if (likelihood > bestLikelihood) {
+					bestLikelihood = likelihood;
+					lengthScale = l;
+					noise = n;
+				}
+			}
+		cholesky = cholesky(covariance(lengthScale, noise));
+		alpha = solve(cholesky, z);
+	}
+
+	private void standardize(double[] y) {
+		yMean = 0;
+		for (double value : y)
+			yMean += value;
+		yMean /= y.length;
+		double variance = 0;
+		for (double value : y)
+			variance += (value - yMean) * (value - yMean);
+		yScale = y.length > 1 ? Math.sqrt(variance / (y.length - 1)) : 0;
+		if (yScale == 0 || Double.isNaN(yScale))
+			yScale = 1;
+	}
+
+	private double logMarginalLikelihood(double[] z, double lengthScale, double noise) {
+		double[][] l = cholesky(covariance(lengthScale, noise));
+		if (l == null)
+			return Double.NEGATIVE_INFINITY;
+		double[] a = solve(l, z);
+		double result = 0;
+		for (int i = 0; i < z.length; i++)
+			result -= 0.5 * z[i] * a[i] + Math.log(l[i][i]);
+		return result;
+	}
+
+	private double[][] covariance(double lengthScale, double noise) {
+		int n = x.length;
+		double[][] k = new double[n][n];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < i; j++) {
+				k[i][j] = kernel(x[i], x[j], lengthScale);
+				k[j][i] = k[i][j];
+			}
+			k[i][i] = 1 + noise;
+		}
+		return k;
+	}
+
+	private static double kernel(double[] a, double[] b, double lengthScale) {
+		double distance = 0, d;
+		for (int i = 0; i < a.length; i++) {
+			d = a[i] - b[i];
+			distance += d * d;
+		}
+		return Math.exp(-0.5 * distance / (lengthScale * lengthScale));
+	}
+
+	// returns null if the matrix is not positive definite.
+	private static double[][] cholesky(double[][] a) {
+		int n = a.length;
+		double[][] l = new double[n][n];
+		double sum;
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j <= i; j++) {
+				sum = a[i][j];
+				for (int k = 0; k < j; k++)
+					sum -= l[i][k] * l[j][k];
+				if (i == j) {
+					if (sum <= 0)
+						return null;
+					l[i][i] = Math.sqrt(sum);
+				} else
+					l[i][j] = sum / l[j][j];
+			}
+		return l;
+	}
+
+	private static double[] forward(double[][] l, double[] b) {
+		int n = b.length;
+		double[] y = new double[n];
+		double sum;
+		for (int i = 0; i < n; i++) {
+			sum = b[i];
+			for (int k = 0; k < i; k++)
+				sum -= l[i][k] * y[k];
+			y[i] = sum / l[i][i];
+		}
+		return y;
+	}
+
+	private static double[] solve(double[][] l, double[] b) {
+		double[] y = forward(l, b);
+		int n = b.length;
+		double[] x = new double[n];
+		double sum;
+		for (int i = n - 1; i >= 0; i--) {
+			sum = y[i];
+			for (int k = i + 1; k < n; k++)
+				sum -= l[k][i] * x[k];
+			x[i] = sum / l[i][i];
+		}
+		return x;
+	}
+
+	/**
+	 * Predicts the response at the given point.
+	 * 
+	 * @param point
+	 * @return the mean and standard deviation of the prediction, in this order.
+	 */
+	public double[] predict(double[] point) {
+		if (cholesky == null)
+			throw new IllegalStateException("The Gaussian process has to be fitted before it can predict.");
+		int n = x.length;
+		double[] k = new double[n];
+		double mean = 0;
+		for (int i = 0; i < n; i++) {
+			k[i] = kernel(point, x[i], lengthScale);
+			mean += k[i] * alpha[i];
+		}
+		double[] v = forward(cholesky, k);
+		double variance = 1;
+		for (int i = 0; i < n; i++)
+			variance -= v[i] * v[i];
+		variance = Math.max(variance, 0);
+		return new double[] { yMean + yScale * mean, yScale * Math.sqrt(variance) };
+	}
+
+	/**
+	 * The expected improvement of a prediction over the best, i.e. smallest, response observed so far.
+	 * 
+	 * @param mean
+	 * @param sd
+	 * @param best
+	 * @return
+	 */
+	public static double expectedImprovement(double mean, double sd, double best) {
+		double improvement = best - mean;
+		if (sd <= 0)
+			return Math.max(improvement, 0);
+		double z = improvement / sd;
+		return improvement * cdf(z) + sd * pdf(z);
+	}
+
+	private static double pdf(double z) {
+		return Math.exp(-0.5 * z * z) / Math.sqrt(2 * Math.PI);
+	}
+
+	// Abramowitz and Stegun 7.1.26, with an absolute error below 1.5e-7.
+	private static double cdf(double z) {
+		double t = 1 / (1 + 0.3275911 * Math.abs(z) / Math.sqrt(2));
+		double erf = 1 - t * (0.254829592 + t * (-0.284496736 + t * (1.421413741 + t * (-1.453152027 + t * 1.061405429))))
+				* Math.exp(-z * z / 2);
+		return z >= 0 ? 0.5 * (1 + erf) : 0.5 * (1 - erf);
+	}
+
+	public double getLengthScale() {
+		return lengthScale;
+	}
+
+	public double getNoise() {
+		return noise;
+	}
+}
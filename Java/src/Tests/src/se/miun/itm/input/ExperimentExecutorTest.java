@@ -0,0 +1,119 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.input;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import se.miun.itm.input.model.InPUTException;
+import se.miun.itm.input.model.design.IDesign;
+
+public class ExperimentExecutorTest {
+
+	private final ConcurrentHashMap<String, AtomicInteger> runs = new ConcurrentHashMap<String, AtomicInteger>();
+
+	private ExecutorService pool;
+
+	@Before
+	public void setUp() {
+		pool = Executors.newFixedThreadPool(4);
+	}
+
+	@After
+	public void tearDown() {
+		pool.shutdownNow();
+	}
+
+	private ExperimentConductor<Integer> conductor(final String failingId) {
+		return new ExperimentConductor<Integer>((IInPUT) null) {
+			@Override
+			public Integer execute(IExperiment experiment) throws InPUTException {
+				AtomicInteger counter = new AtomicInteger();
+				AtomicInteger existing = runs.putIfAbsent(experiment.getId(), counter);
+				int run = (existing == null ? counter : existing).incrementAndGet();
+				if (experiment.getId().equals(failingId))
+					throw new InPUTException("failure of " + failingId);
+				return run;
+			}
+		};
+	}
+
+	private List<IExperiment> experiments(String... ids) {
+		List<IExperiment> experiments = new ArrayList<IExperiment>();
+		for (String id : ids)
+			experiments.add(new Experiment(id, (IInPUT) null));
+		return experiments;
+	}
+
+	@Test
+	public void testReplicationScheduling() throws InterruptedException, InPUTException {
+		ExperimentExecutor<Integer> executor = new ExperimentExecutor<Integer>(conductor(null), pool, 2, 3);
+		int successful = executor.execute(experiments("a", "b", "c").iterator());
+
+		assertEquals(9, successful);
+		for (String id : new String[] { "a", "b", "c" })
+			assertEquals(3, runs.get(id).get());
+		assertTrue(executor.getFailures().isEmpty());
+	}
+
+	@Test
+	public void testExistingOutputsAreNotRerun() throws InterruptedException, InPUTException {
+		ExperimentConductor<Integer> conductor = conductor(null);
+		List<IExperiment> experiments = experiments("a", "b");
+		experiments.get(0).addOutput((IDesign) null);
+		ExperimentExecutor<Integer> executor = new ExperimentExecutor<Integer>(conductor, pool, 2, 3);
+		int successful = executor.execute(experiments.iterator());
+
+		assertEquals(5, successful);
+		assertEquals(2, runs.get("a").get());
+		assertEquals(3, runs.get("b").get());
+		// the replications of the executor are no setting of the conductor.
+		assertEquals(1, conductor.getTotalRuns());
+	}
+
+	@Test
+	public void testFailureIsolation() throws InterruptedException, InPUTException {
+		ExecutorService single = Executors.newSingleThreadExecutor();
+		try {
+			ExperimentExecutor<Integer> executor = new ExperimentExecutor<Integer>(conductor("b"), single, 1, 3);
+			int successful = executor.execute(experiments("a", "b", "c").iterator());
+
+			assertEquals(6, successful);
+			assertEquals(1, executor.getFailures().size());
+			assertTrue(executor.getFailures().get("b") instanceof InPUTException);
+			// the remaining replications of the failed experiment are skipped.
+			assertEquals(1, runs.get("b").get());
+			assertEquals(3, runs.get("a").get());
+			assertEquals(3, runs.get("c").get());
+		} finally {
+			single.shutdownNow();
+		}
+	}
+}
@@ -22,11 +22,17 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
+import se.miun.itm.input.analysis.OutputAggregatorTest;
+import se.miun.itm.input.analysis.ResultStoreTest;
+import se.miun.itm.input.lazy.ExperimentCatalogTest;
+import se.miun.itm.input.lazy.StreamingFolderExperimentInitializerTest;
 import se.miun.itm.input.model.design.DesignSpaceTest;
 import se.miun.itm.input.model.design.DesignTest;
 
 @RunWith(Suite.class)
-@SuiteClasses({ ExperimentTest.class, InPUTConfigTest.class, InPUTTest.class, DesignSpaceTest.class, DesignTest.class })
+@SuiteClasses({ ExperimentTest.class, InPUTConfigTest.class, InPUTTest.class, DesignSpaceTest.class, DesignTest.class,
+		ExperimentCatalogTest.class, OutputAggregatorTest.class, ExperimentExecutorTest.class,
+		ResultStoreTest.class, StreamingFolderExperimentInitializerTest.class })
 public class InPUTAllNewTests {
 
 }
\ No newline at end of file
@@ -0,0 +1,159 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.input.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import se.miun.itm.input.model.InPUTException;
+
+public class OutputAggregatorTest {
+
+	private static final String FOLDER = "aggregationTest";
+
+	private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><in:Design xmlns:in=\"http://TheInPUT.org/Design\" id=\"d\">";
+
+	private File folder;
+
+	@Before
+	public void setUp() {
+		folder = new File(FOLDER);
+		folder.mkdirs();
+	}
+
+	@After
+	public void tearDown() {
+		for (File file : folder.listFiles())
+			file.delete();
+		folder.delete();
+	}
+
+	private void archive(String name, String choice, double... outputs) throws IOException {
+		String[] values = new String[outputs.length];
+		for (int i = 0; i < outputs.length; i++)
+			values[i] = String.valueOf(outputs[i]);
+		archiveValues(name, choice, values);
+	}
+
+	private void archiveValues(String name, String choice, String... outputs) throws IOException {
+		ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(new File(folder, name + ".exp")));
+		entry(zip, "algorithmDesign.xml", "<in:SValue id=\"Algorithm\" value=\"" + choice
+				+ "\"><in:NValue id=\"Rate\" value=\"0.5\"/></in:SValue>");
+		for (int i = 0; i < outputs.length; i++)
+			entry(zip, "output" + (i + 1) + ".xml", "<in:NValue id=\"Y\" value=\"" + outputs[i] + "\"/>");
+		zip.close();
+	}
+
+	private void entry(ZipOutputStream zip, String name, String content) throws IOException {
+		zip.putNextEntry(new ZipEntry(name));
+		zip.write((HEADER + content + "</in:Design>").getBytes("UTF-8"));
+		zip.closeEntry();
+	}
+
+	@Test
+	public void testGroupedAggregation() throws IOException, InPUTException {
+		archive("a", "First", 1, 2, 3);
+		archive("b", "First", 4, 5);
+		archive("c", "Second", 10);
+
+		Map<List<String>, OutputStatistics> result = new OutputAggregator("Y", "Algorithm", "Algorithm.First.Rate")
+				.aggregate(FOLDER);
+
+		assertEquals(2, result.size());
+		OutputStatistics first = result.get(Arrays.asList("First", "0.5"));
+		assertEquals(5, first.getCount());
+		assertEquals(3, first.getMean(), 1e-9);
+		assertEquals(2.5, first.getVariance(), 1e-9);
+		assertEquals(1, first.getMin(), 0);
+		assertEquals(5, first.getMax(), 0);
+		assertEquals(3, first.getMedian(), 1e-9);
+
+		OutputStatistics second = result.get(Arrays.asList("Second", "null"));
+		assertEquals(1, second.getCount());
+		assertEquals(10, second.getMean(), 0);
+	}
+
+	@Test
+	public void testBooleanOutputsCountAsNumbers() throws IOException, InPUTException {
+		archiveValues("a", "First", "true", "false", "true", "label");
+
+		OutputStatistics stats = new OutputAggregator("Y", "Algorithm").aggregate(FOLDER).get(Arrays.asList("First"));
+		assertEquals(3, stats.getCount());
+		assertEquals(2.0 / 3, stats.getMean(), 1e-9);
+	}
+
+	@Test
+	public void testRejectedArchivesReleaseTheirSlot() throws IOException {
+		archive("a", "First", 1);
+		archive("b", "First", 2);
+		archive("c", "First", 3);
+		File[] archives = folder.listFiles();
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		executor.shutdown();
+		try {
+			new OutputAggregator("Y", "Algorithm").aggregate(Arrays.asList(archives).iterator(), executor, 1);
+			fail("A rejected archive has to be reported.");
+		} catch (InPUTException e) {
+			assertTrue(e.getMessage().startsWith("3 out of 3"));
+		}
+	}
+
+	@Test
+	public void testMergedStatisticsEqualSequential() {
+		Random rng = new Random(42);
+		OutputStatistics all = new OutputStatistics();
+		OutputStatistics left = new OutputStatistics();
+		OutputStatistics right = new OutputStatistics();
+		double value;
+		for (int i = 0; i < 100000; i++) {
+			value = rng.nextGaussian();
+			all.add(value);
+			if (i % 3 == 0)
+				left.add(value);
+			else
+				right.add(value);
+		}
+		left.merge(right);
+
+		assertEquals(all.getCount(), left.getCount());
+		assertEquals(all.getMean(), left.getMean(), 1e-9);
+		assertEquals(all.getVariance(), left.getVariance(), 1e-9);
+		assertEquals(0, left.getMedian(), 0.02);
+		assertEquals(1.6449, left.getQuantile(0.95), 0.02);
+		assertEquals(-2.3263, left.getQuantile(0.01), 0.02);
+	}
+}
@@ -0,0 +1,129 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.input.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import se.miun.itm.input.Experiment;
+import se.miun.itm.input.IExperiment;
+import se.miun.itm.input.IInPUT;
+import se.miun.itm.input.InPUT;
+import se.miun.itm.input.analysis.ResultStore.ColumnType;
+import se.miun.itm.input.model.InPUTException;
+import se.miun.itm.input.model.design.DesignSpace;
+import se.miun.itm.input.model.design.IDesign;
+import se.miun.itm.input.model.design.IDesignSpace;
+import se.miun.itm.input.util.Q;
+
+public class ResultStoreTest {
+
+	private static final String STORE = "resultStoreTest" + Q.RESULTS;
+
+	private static final String VALUE = "output.AnotherInteger";
+
+	private IDesignSpace space;
+
+	private IInPUT input;
+
+	private File file;
+
+	@Before
+	public void setUp() throws InPUTException {
+		space = new DesignSpace("anotherTestSpace.xml");
+		input = new InPUT("resultStoreTest", space, null, null, space);
+		file = new File(STORE);
+		file.delete();
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	private IDesign design(String id, int value) throws InPUTException {
+		IDesign design = space.nextEmptyDesign(id);
+		design.setValue("AnotherInteger", value);
+		return design;
+	}
+
+	private void append(ResultStore store, int experiments, int runs) throws InPUTException {
+		for (int i = 0; i < experiments; i++) {
+			IExperiment experiment = new Experiment("e" + i, input);
+			experiment.setAlgorithmDesign(design("a" + i, i % 2));
+			for (int run = 1; run <= runs; run++)
+				store.append(experiment, run, design("o" + run, run));
+		}
+	}
+
+	@Test
+	public void testWriteAndScan() throws InPUTException, IOException {
+		ResultStore store = ResultStore.open(file, 100);
+		append(store, 50, 5);
+		store.close();
+
+		ResultTable table = ResultTable.open(file);
+		assertEquals(250, table.getRowCount());
+		assertEquals(3, table.getChunkCount());
+		assertEquals(ColumnType.LONG, table.getType(VALUE));
+		assertEquals(ColumnType.TEXT, table.getType(ResultStore.EXPERIMENT_COLUMN));
+
+		double[] values = table.readDoubles(VALUE);
+		assertEquals(1, values[0], 0);
+		assertEquals(5, values[249], 0);
+		assertEquals("e49", table.getText(table.getCodes(2, ResultStore.EXPERIMENT_COLUMN).get(49)));
+
+		Map<List<String>, OutputStatistics> result = table.aggregate(VALUE, "algorithmDesign.AnotherInteger");
+		assertEquals(2, result.size());
+		assertEquals(125, result.get(Arrays.asList("0")).getCount());
+		assertEquals(3, result.get(Arrays.asList("1")).getMean(), 1e-9);
+		table.close();
+	}
+
+	@Test
+	public void testReopenDropsTornChunk() throws InPUTException, IOException {
+		ResultStore store = ResultStore.open(file, 10);
+		append(store, 4, 5);
+		store.close();
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.setLength(raf.length() - 3);
+		raf.close();
+
+		store = ResultStore.open(file, 10);
+		append(store, 1, 5);
+		store.close();
+
+		ResultTable table = ResultTable.open(file);
+		assertEquals(15, table.getRowCount());
+		assertTrue(table.getText(table.getCodes(1, ResultStore.EXPERIMENT_COLUMN).get(0)).equals("e0"));
+		table.close();
+	}
+}
@@ -0,0 +1,138 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.input.lazy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import se.miun.itm.input.Experiment;
+import se.miun.itm.input.ExperimentConductor;
+import se.miun.itm.input.IExperiment;
+import se.miun.itm.input.IInPUT;
+import se.miun.itm.input.lazy.ExperimentCatalog.State;
+import se.miun.itm.input.model.InPUTException;
+import se.miun.itm.input.model.design.IDesign;
+
+public class ExperimentCatalogTest {
+
+	private static final String FOLDER = "catalogTest";
+
+	private File folder;
+
+	@Before
+	public void setUp() {
+		folder = new File(FOLDER);
+		folder.mkdirs();
+	}
+
+	@After
+	public void tearDown() {
+		for (File file : folder.listFiles())
+			file.delete();
+		folder.delete();
+	}
+
+	private IExperiment experiment(String id) {
+		return new Experiment(id, (IInPUT) null);
+	}
+
+	@Test
+	public void testRegisterIsPending() throws InPUTException {
+		ExperimentCatalog catalog = ExperimentCatalog.open(FOLDER);
+		catalog.register(experiment("a.exp"));
+		assertEquals(State.PENDING, catalog.get("a.exp").getState());
+		assertFalse(catalog.isCompleted("a.exp"));
+	}
+
+	@Test
+	public void testStateSurvivesReopen() throws InPUTException {
+		ExperimentCatalog catalog = ExperimentCatalog.open(FOLDER);
+		catalog.update(experiment("a.exp"), State.COMPLETED);
+		catalog.update(experiment("b.exp"), State.FAILED);
+
+		ExperimentCatalog reopened = ExperimentCatalog.open(FOLDER);
+		assertEquals(2, reopened.size());
+		assertTrue(reopened.isCompleted("a.exp"));
+		assertEquals(1, reopened.getEntries(State.FAILED).size());
+		assertFalse(reopened.notCompleted().accept("a.exp"));
+		assertTrue(reopened.notCompleted().accept("b.exp"));
+	}
+
+	@Test
+	public void testTornRecordIsDropped() throws InPUTException, IOException {
+		ExperimentCatalog catalog = ExperimentCatalog.open(FOLDER);
+		catalog.update(experiment("a.exp"), State.RUNNING);
+		catalog.update(experiment("a.exp"), State.COMPLETED);
+
+		File file = new File(folder, ExperimentCatalog.CATALOG_FILE);
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.setLength(file.length() - 3);
+		raf.close();
+
+		ExperimentCatalog reopened = ExperimentCatalog.open(FOLDER);
+		assertEquals(State.RUNNING, reopened.get("a.exp").getState());
+		reopened.update(experiment("a.exp"), State.COMPLETED);
+		assertTrue(ExperimentCatalog.open(FOLDER).isCompleted("a.exp"));
+	}
+
+	@Test
+	public void testCompaction() throws InPUTException, IOException {
+		ExperimentCatalog catalog = ExperimentCatalog.open(FOLDER);
+		for (int i = 0; i < 50; i++) {
+			catalog.update(experiment("a.exp"), State.RUNNING);
+			catalog.update(experiment("a.exp"), State.PENDING);
+		}
+		catalog.compact();
+		ExperimentCatalog reopened = ExperimentCatalog.open(FOLDER);
+		assertEquals(1, reopened.size());
+		assertEquals(State.PENDING, reopened.get("a.exp").getState());
+	}
+
+	@Test
+	public void testCompletedOnlyAfterTotalRuns() throws InPUTException {
+		ExperimentConductor<Void> conductor = new ExperimentConductor<Void>((IInPUT) null) {
+			@Override
+			public Void execute(IExperiment experiment) {
+				return null;
+			}
+		};
+		conductor.setCatalog(ExperimentCatalog.open(FOLDER));
+		conductor.setTotalRuns(2);
+
+		IExperiment experiment = experiment("a.exp");
+		experiment.addOutput((IDesign) null);
+		conductor.recordOutputs(experiment);
+		assertEquals(State.RUNNING, conductor.getCatalog().get("a.exp").getState());
+		assertEquals(1, conductor.getCatalog().get("a.exp").getOutputs());
+
+		experiment.addOutput((IDesign) null);
+		conductor.recordOutputs(experiment);
+		assertTrue(ExperimentCatalog.open(FOLDER).isCompleted("a.exp"));
+		assertEquals(2, conductor.getCatalog().get("a.exp").getOutputs());
+	}
+}
@@ -0,0 +1,228 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.input.lazy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import se.miun.itm.input.Experiment;
+import se.miun.itm.input.ExperimentConductor;
+import se.miun.itm.input.IExperiment;
+import se.miun.itm.input.IInPUT;
+import se.miun.itm.input.export.InPUTExporter;
+import se.miun.itm.input.impOrt.InPUTImporter;
+import se.miun.itm.input.model.InPUTException;
+import se.miun.itm.input.model.design.IDesign;
+import se.miun.itm.input.model.design.IDesignSpace;
+import se.miun.itm.input.util.InputStreamWrapper;
+
+public class StreamingFolderExperimentInitializerTest {
+
+	private static final String FOLDER = "streamingTest";
+
+	private File folder;
+
+	private ExperimentConductor<Void> conductor;
+
+	@Before
+	public void setUp() {
+		folder = new File(FOLDER);
+		folder.mkdirs();
+		conductor = new ExperimentConductor<Void>(new ArchiveFreeInPUT()) {
+			@Override
+			public Void execute(IExperiment experiment) {
+				return null;
+			}
+		};
+	}
+
+	@After
+	public void tearDown() {
+		for (File file : folder.listFiles())
+			file.delete();
+		folder.delete();
+	}
+
+	private void create(String... names) throws IOException {
+		for (String name : names)
+			new File(folder, name).createNewFile();
+	}
+
+	private static List<String> drain(StreamingFolderExperimentInitializer source) {
+		List<String> ids = new ArrayList<String>();
+		while (source.hasNext())
+			ids.add(source.next().getId());
+		Collections.sort(ids);
+		return ids;
+	}
+
+	private static void closeLater(final StreamingFolderExperimentInitializer source, final long millis) {
+		Thread closer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(millis);
+					source.close();
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		});
+		closer.setDaemon(true);
+		closer.start();
+	}
+
+	@Test
+	public void testStreamsAllExperiments() throws IOException {
+		create("a.exp", "b.exp", "c.exp", "notes.txt");
+		StreamingFolderExperimentInitializer source = new StreamingFolderExperimentInitializer(FOLDER, conductor);
+
+		assertEquals(3, drain(source).size());
+		assertFalse(source.hasNext());
+		assertTrue(conductor.hasImported("b.exp"));
+		source.close();
+	}
+
+	@Test
+	public void testCriterionFiltersExperiments() throws IOException {
+		create("a.exp", "b.exp");
+		StreamingFolderExperimentInitializer source = new StreamingFolderExperimentInitializer(FOLDER, conductor,
+				new ExperimentFilterCriterion() {
+					@Override
+					public boolean accept(String fileName) {
+						return fileName.equals("b.exp");
+					}
+				}, false);
+
+		assertEquals(Collections.singletonList("b.exp"), drain(source));
+		assertFalse(conductor.hasImported("a.exp"));
+		source.close();
+	}
+
+	@Test
+	public void testTailsNewExperiments() throws IOException {
+		create("a.exp");
+		StreamingFolderExperimentInitializer source = new StreamingFolderExperimentInitializer(FOLDER, conductor,
+				StreamingFolderExperimentInitializer.ALL_EXPERIMENTS, true);
+		closeLater(source, 10000);
+		assertEquals("a.exp", source.next().getId());
+
+		// producers rename complete archives into place.
+		create("b.tmp");
+		assertTrue(new File(folder, "b.tmp").renameTo(new File(folder, "b.exp")));
+		assertTrue(source.hasNext());
+		assertEquals("b.exp", source.next().getId());
+		source.close();
+	}
+
+	@Test
+	public void testExperimentsSeenTwiceAreHandedOutOnce() throws IOException {
+		create("a.exp");
+		StreamingFolderExperimentInitializer source = new StreamingFolderExperimentInitializer(FOLDER, conductor,
+				StreamingFolderExperimentInitializer.ALL_EXPERIMENTS, true);
+		// arrives after the watcher is registered, during the scan; both may report it.
+		create("b.exp");
+		closeLater(source, 1500);
+
+		assertEquals(2, drain(source).size());
+	}
+
+	@Test
+	public void testRescanSkipsImportedExperiments() throws IOException {
+		create("a.exp", "b.exp");
+		StreamingFolderExperimentInitializer source = new StreamingFolderExperimentInitializer(FOLDER, conductor,
+				StreamingFolderExperimentInitializer.ALL_EXPERIMENTS, true, 1);
+		source.next();
+		source.next();
+		assertTrue(conductor.hasImported("a.exp") && conductor.hasImported("b.exp"));
+
+		// the window only remembers one experiment; the catalog and the conductor remember the rest.
+		source.rescan();
+		closeLater(source, 1000);
+		assertEquals(0, drain(source).size());
+	}
+
+	@Test
+	public void testCloseReleasesTailingConsumer() throws IOException {
+		StreamingFolderExperimentInitializer source = new StreamingFolderExperimentInitializer(FOLDER, conductor,
+				StreamingFolderExperimentInitializer.ALL_EXPERIMENTS, true);
+		closeLater(source, 300);
+
+		assertFalse(source.hasNext());
+		create("a.exp");
+		assertFalse(source.hasNext());
+		source.close();
+	}
+
+	// hands out empty experiments for any existing archive file.
+	private static class ArchiveFreeInPUT implements IInPUT {
+
+		@Override
+		public String getId() {
+			return "streaming";
+		}
+
+		@Override
+		public <O> O export(InPUTExporter<O> exporter) throws InPUTException {
+			return null;
+		}
+
+		@Override
+		public IDesignSpace getProblemFeatureSpace() {
+			return null;
+		}
+
+		@Override
+		public IDesignSpace getAlgorithmDesignSpace() {
+			return null;
+		}
+
+		@Override
+		public IDesignSpace getPropertySpace() {
+			return null;
+		}
+
+		@Override
+		public IDesignSpace getOutputSpace() {
+			return null;
+		}
+
+		@Override
+		public IExperiment impOrt(String id, InPUTImporter<Map<String, InputStreamWrapper>> importer) throws InPUTException {
+			return new Experiment(id, this);
+		}
+
+		@Override
+		public IExperiment nextExperiment(String expId, IDesign problemFeatures) throws InPUTException {
+			return new Experiment(expId, this);
+		}
+	}
+}
@@ -23,10 +23,16 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 import se.miun.itm.input.tuning.converter.SpotConverterTest;
+import se.miun.itm.input.tuning.sequential.HyperbandTunerTest;
+import se.miun.itm.input.tuning.sequential.RacingTunerTest;
 import se.miun.itm.input.tuning.sequential.SPOTTest;
+import se.miun.itm.input.tuning.sequential.SurrogateTunerTest;
+import se.miun.itm.input.tuning.sequential.spot.SpotDESTest;
+import se.miun.itm.input.watchmaker.OnlineParameterControllerTest;
 
 @RunWith(Suite.class)
-@SuiteClasses({ SPOTTest.class, SpotConverterTest.class})
+@SuiteClasses({ SPOTTest.class, SpotConverterTest.class, SurrogateTunerTest.class,
+		RacingTunerTest.class, SpotDESTest.class, HyperbandTunerTest.class, OnlineParameterControllerTest.class})
 public class AllTunerTests {
 
 }
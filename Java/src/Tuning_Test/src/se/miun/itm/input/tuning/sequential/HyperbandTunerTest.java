@@ -0,0 +1,124 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.input.tuning.sequential;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import se.miun.itm.input.IExperiment;
+import se.miun.itm.input.IInPUT;
+import se.miun.itm.input.InPUT;
+import se.miun.itm.input.model.InPUTException;
+import se.miun.itm.input.model.design.DesignSpace;
+import se.miun.itm.input.model.design.IDesign;
+import se.miun.itm.input.model.design.IDesignSpace;
+
+public class HyperbandTunerTest {
+
+	private static final String BUDGET = "SimpleInt";
+
+	private static final String QUALITY = "SimpleFloat";
+
+	private IInPUT input;
+
+	@Before
+	public void setUp() throws InPUTException {
+		IDesignSpace algorithmSpace = new DesignSpace("numericalSpace.xml");
+		input = new InPUT(algorithmSpace.getId(), algorithmSpace, null, null, SequentialTuner.getSingleObjectiveSpace());
+	}
+
+	private IDesign output(double y) throws InPUTException {
+		IDesign output = SequentialTuner.getSingleObjectiveSpace().nextEmptyDesign("" + y);
+		output.setValue(SequentialTuner.SINGLE_OUTPUT_PARAMETER, new BigDecimal(y));
+		return output;
+	}
+
+	private double quality(IExperiment experiment) throws InPUTException {
+		return ((Number) experiment.getValue(QUALITY)).doubleValue();
+	}
+
+	@Test
+	public void testSuccessiveHalvingPromotesTheBest() throws InPUTException {
+		HyperbandTuner tuner = new HyperbandTuner(input, null, null, true, BUDGET, Double.NaN, Double.NaN, 3, true, 42);
+		int[] sizes = { 27, 9, 3, 1 };
+		int[] budgets = { 2, 6, 17, 50 };
+		for (int rung = 0; rung < sizes.length; rung++) {
+			List<ExperimentTicket> tickets = tuner.nextExperiments(100);
+			assertEquals(sizes[rung], tickets.size());
+			for (ExperimentTicket ticket : tickets) {
+				IExperiment experiment = ticket.getExperiment();
+				assertEquals(budgets[rung], ((Number) experiment.getValue(BUDGET)).intValue());
+				tuner.feedback(ticket, output(quality(experiment)));
+			}
+		}
+		assertEquals(50, ((Number) tuner.getBest().getValue(BUDGET)).intValue());
+		// a new bracket starts at the minimum budget again.
+		assertEquals(27, tuner.nextExperiments(100).size());
+	}
+
+	@Test
+	public void testPromotedAreTheBestFraction() throws InPUTException {
+		HyperbandTuner tuner = new HyperbandTuner(input, null, null, true, BUDGET, Double.NaN, Double.NaN, 3, true, 7);
+		List<ExperimentTicket> first = tuner.nextExperiments(100);
+		double[] qualities = new double[first.size()];
+		for (int i = 0; i < qualities.length; i++) {
+			qualities[i] = quality(first.get(i).getExperiment());
+			tuner.feedback(first.get(i), output(qualities[i]));
+		}
+		Arrays.sort(qualities);
+		for (ExperimentTicket ticket : tuner.nextExperiments(100))
+			assertTrue(quality(ticket.getExperiment()) <= qualities[8] + 1e-9);
+	}
+
+	@Test
+	public void testHyperbandCyclesBrackets() throws InPUTException {
+		HyperbandTuner tuner = new HyperbandTuner(input, null, null, false, BUDGET, Double.NaN, Double.NaN, 3, false, 42);
+		int[] firstRungs = new int[2];
+		int designs = 0;
+		for (int bracket = 0; bracket < 2; bracket++) {
+			boolean first = true;
+			do {
+				List<ExperimentTicket> tickets = tuner.nextExperiments(100);
+				if (first)
+					firstRungs[bracket] = tickets.size();
+				first = false;
+				designs++;
+				for (ExperimentTicket ticket : tickets)
+					tuner.feedback(ticket, output(quality(ticket.getExperiment())));
+			} while (tuner.getCurrentBudget() < 50 - 1e-9);
+		}
+		assertEquals(27, firstRungs[0]);
+		assertEquals(12, firstRungs[1]);
+		assertEquals(4 + 3, designs);
+		assertNotNull(tuner.getBest());
+	}
+
+	@Test(expected = InPUTException.class)
+	public void testBudgetHasToBeTuned() throws InPUTException {
+		new HyperbandTuner(input, null, null, true, "NoSuchParam");
+	}
+}
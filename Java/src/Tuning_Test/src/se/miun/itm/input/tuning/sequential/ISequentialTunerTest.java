@@ -39,6 +39,7 @@ import se.miun.itm.input.IExperiment;
 import se.miun.itm.input.model.InPUTException;
 import se.miun.itm.input.model.design.IDesign;
 import se.miun.itm.input.model.design.IDesignSpace;
+import se.miun.itm.input.tuning.EvaluationCache;
 import se.miun.itm.input.tuning.ITunerTest;
 import se.miun.itm.input.util.TUtil;
 
@@ -155,6 +156,69 @@ public class ISequentialTunerTest extends ITunerTest<SequentialTuner> {
 		assertEquals(10, tuner.getAmountInvestigatedConfigurations());
 	}
 
+	@Test
+	public void testBatchFeedbackOutOfOrder() throws InPUTException {
+		List<ExperimentTicket> tickets = tuner.nextExperiments(5);
+		assertEquals(5, tickets.size());
+		tickets.addAll(tuner.nextExperiments(20));
+		assertEquals(12, tickets.size());
+		assertTrue(tuner.nextExperiments(1).isEmpty());
+
+		for (int i = tickets.size() - 1; i >= 0; i--)
+			tuner.feedback(tickets.get(i), initialResults.get(i));
+
+		assertEquals(12, tuner.getAmountEvaluatedRuns());
+		assertEquals(4, tuner.getAmountInvestigatedConfigurations());
+		assertEquals((Object) initialResults.get(0).getValue(SequentialTuner.SINGLE_OUTPUT_PARAMETER), (Object) tickets.get(0)
+				.getExperiment().getOutput().get(0).getValue(SequentialTuner.SINGLE_OUTPUT_PARAMETER));
+
+		List<ExperimentTicket> sequential = tuner.nextExperiments(1);
+		assertEquals(1, sequential.size());
+		assertEquals(2, sequential.get(0).getDesign());
+	}
+
+	@Test
+	public void testBatchQuorum() throws InPUTException {
+		tuner.setQuorum(0.5);
+		List<ExperimentTicket> tickets = tuner.nextExperiments(12);
+		for (int i = 0; i < 6; i++)
+			tuner.feedback(tickets.get(i), initialResults.get(i));
+
+		List<ExperimentTicket> sequential = tuner.nextExperiments(2);
+		assertEquals(2, sequential.size());
+		assertEquals(2, sequential.get(0).getDesign());
+
+		for (int i = 6; i < 12; i++)
+			tuner.feedback(tickets.get(i), initialResults.get(i));
+		assertEquals(2, tuner.getAmountOutstandingExperiments());
+		assertEquals(12, tuner.getAmountEvaluatedRuns());
+	}
+
+	@Test(expected = InPUTException.class)
+	public void testTicketCannotBeFedBackTwice() throws InPUTException {
+		ExperimentTicket ticket = tuner.nextExperiments(1).get(0);
+		tuner.feedback(ticket, initialResults.get(0));
+		tuner.feedback(ticket, initialResults.get(1));
+	}
+
+	@Test
+	public void testResetStudyKeepsMeasuredResults() throws InPUTException {
+		EvaluationCache cache = new EvaluationCache();
+		tuner.setEvaluationCache(cache);
+		IExperiment experiment = null;
+		for (int i = 0; i < initialResults.size(); i++) {
+			experiment = tuner.nextExperiment();
+			tuner.feedback(initialResults.get(i));
+		}
+		assertEquals(12, cache.size());
+		assertEquals(0, cache.getHits());
+		assertEquals(3, cache.getAmountReplications(experiment));
+
+		tuner.resetStudy(null, null);
+		assertEquals(12, cache.size());
+		assertEquals(0, cache.getAmountReplications(experiment));
+	}
+
 	@Test
 	public void testGetFixedSingleArrayEntry() throws InPUTException {
 		IDesign algorithmDesign = input.getAlgorithmDesignSpace().nextDesign(
@@ -0,0 +1,111 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.input.tuning.sequential;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import se.miun.itm.input.model.InPUTException;
+import se.miun.itm.input.model.design.IDesign;
+import se.miun.itm.input.tuning.EvaluationCache;
+import se.miun.itm.input.tuning.ITunerTest;
+import se.miun.itm.input.tuning.sequential.racing.FriedmanTest;
+
+public class RacingTunerTest extends ITunerTest<RacingTuner> {
+
+	private List<IDesign> problems;
+
+	@Before
+	public void setUp() throws InPUTException {
+		super.setUp();
+		problems = new ArrayList<IDesign>();
+		for (int i = 0; i < 3; i++)
+			problems.add(input.getProblemFeatureSpace().nextDesign("problem" + i));
+		tuner = new RacingTuner(input, problems, null, true, 6, 0.05, 3, 42);
+	}
+
+	private IDesign output(double y) throws InPUTException {
+		IDesign output = SequentialTuner.getSingleObjectiveSpace().nextEmptyDesign("" + y);
+		output.setValue(SequentialTuner.SINGLE_OUTPUT_PARAMETER, new BigDecimal(y));
+		return output;
+	}
+
+	@Test
+	public void testDominatedCandidatesAreDropped() throws InPUTException {
+		List<ExperimentTicket> tickets;
+		for (int design = 0; design < 8; design++) {
+			tickets = tuner.nextExperiments(100);
+			assertEquals(tuner.getAmountSurvivors(), tickets.size());
+			for (ExperimentTicket ticket : tickets) {
+				assertSame(tickets.get(0).getExperiment().getProblemFeatures(), ticket.getExperiment().getProblemFeatures());
+				// the first candidate is always best, the last always worst.
+				tuner.feedback(ticket, output(ticket.getPosition() + design % 2));
+			}
+		}
+		tuner.nextExperiments(0);
+		assertTrue(tuner.getAmountSurvivors() < 6);
+		assertTrue(tuner.getAmountEvaluatedRuns() < 6 * 8);
+		assertNotNull(tuner.getBest());
+	}
+
+	@Test
+	public void testNoEliminationWithoutDifferences() throws InPUTException {
+		for (int design = 0; design < 6; design++)
+			for (ExperimentTicket ticket : tuner.nextExperiments(100))
+				tuner.feedback(ticket, output(1));
+		assertEquals(6, tuner.getAmountSurvivors());
+	}
+
+	@Test
+	public void testReturningToAnInstanceIsANewReplication() throws InPUTException {
+		EvaluationCache cache = new EvaluationCache();
+		tuner.setEvaluationCache(cache);
+		for (int design = 0; design < 6; design++)
+			for (ExperimentTicket ticket : tuner.nextExperiments(100))
+				tuner.feedback(ticket, output(1));
+		assertEquals(0, cache.getHits());
+		assertEquals(36, cache.size());
+	}
+
+	@Test
+	public void testDistributions() {
+		assertEquals(0.05, FriedmanTest.chiSquareSurvival(3.841, 1), 1e-3);
+		assertEquals(0.05, FriedmanTest.chiSquareSurvival(11.070, 5), 1e-3);
+		assertEquals(2.228, FriedmanTest.tQuantile(0.975, 10), 1e-3);
+		assertEquals(1.96, FriedmanTest.tQuantile(0.975, 10000), 1e-2);
+	}
+
+	@Test
+	public void testPairedTTest() {
+		double[][] results = { { 1, 2 }, { 1.1, 2.2 }, { 0.9, 1.8 }, { 1, 2.1 } };
+		boolean[] dominated = FriedmanTest.dominated(results, 0.05);
+		assertFalse(dominated[0]);
+		assertTrue(dominated[1]);
+	}
+}
@@ -49,6 +49,7 @@ public class SPOTTest extends ISequentialTunerTest {
 
 	@After
 	public void tearDown() throws InPUTException {
+		((SPOT) tuner).close();
 		super.tearDown();
 		File parentFolder = new File(".");
 		if (parentFolder.exists()) {
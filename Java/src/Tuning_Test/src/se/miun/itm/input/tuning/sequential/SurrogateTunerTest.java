@@ -0,0 +1,106 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.input.tuning.sequential;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import se.miun.itm.input.model.InPUTException;
+import se.miun.itm.input.tuning.EvaluationCache;
+
+public class SurrogateTunerTest extends ISequentialTunerTest {
+
+	@Before
+	public void setUp() throws InPUTException {
+		super.setUp();
+		tuner = new SurrogateTuner(input, null, null, false, 4, 3, 6, 42);
+	}
+
+	// the same seed proposes the same initial configurations again, now with five instead of three replications.
+	private SurrogateTuner reproposal(EvaluationCache cache) throws InPUTException {
+		SurrogateTuner reproposal = new SurrogateTuner(input, null, null, false, 4, 5, 6, 42);
+		reproposal.setEvaluationCache(cache);
+		return reproposal;
+	}
+
+	@Test
+	public void testEvaluationCacheTopsUpReproposedReplications() throws InPUTException {
+		EvaluationCache cache = new EvaluationCache();
+		tuner.setEvaluationCache(cache);
+		for (int i = 0; i < initialResults.size(); i++) {
+			tuner.nextExperiment();
+			tuner.feedback(initialResults.get(i));
+		}
+
+		SurrogateTuner reproposal = reproposal(cache);
+		for (int i = 0; i < 8; i++) {
+			reproposal.nextExperiment();
+			reproposal.feedback(sequentialResults.get(i));
+			assertTrue(reproposal.getCurrentDesignPointer() % 5 >= 3);
+		}
+		assertEquals(20, reproposal.getCurrentDesignSize());
+		assertEquals(20, reproposal.getAmountEvaluatedRuns());
+		assertEquals(12, cache.getHits());
+		assertEquals(20, cache.size());
+	}
+
+	@Test
+	public void testCompletedDesignsAreForgotten() throws InPUTException {
+		SurrogateTuner surrogate = (SurrogateTuner) tuner;
+		for (int i = 0; i < initialResults.size(); i++) {
+			surrogate.nextExperiment();
+			surrogate.feedback(initialResults.get(i));
+		}
+		assertEquals(12, surrogate.getAmountTrackedExperiments());
+		surrogate.nextExperiment();
+		assertEquals(1, surrogate.getAmountTrackedExperiments());
+	}
+
+	@Test
+	public void testCompletedTicketDesignsAreForgotten() throws InPUTException {
+		SurrogateTuner surrogate = (SurrogateTuner) tuner;
+		List<ExperimentTicket> tickets = surrogate.nextExperiments(12);
+		for (int i = 0; i < tickets.size(); i++)
+			surrogate.feedback(tickets.get(i), initialResults.get(i));
+		assertEquals(0, surrogate.getAmountTrackedExperiments());
+	}
+
+	@Test
+	public void testEvaluationCacheServesReproposedTickets() throws InPUTException {
+		EvaluationCache cache = new EvaluationCache();
+		tuner.setEvaluationCache(cache);
+		List<ExperimentTicket> tickets = tuner.nextExperiments(12);
+		for (int i = 0; i < tickets.size(); i++)
+			tuner.feedback(tickets.get(i), initialResults.get(i));
+
+		SurrogateTuner reproposal = reproposal(cache);
+		tickets = reproposal.nextExperiments(100);
+		assertEquals(8, tickets.size());
+		for (ExperimentTicket ticket : tickets)
+			assertTrue(ticket.getPosition() % 5 >= 3);
+		assertEquals(12, cache.getHits());
+		assertEquals(12, reproposal.getAmountEvaluatedRuns());
+		assertEquals(8, reproposal.getAmountOutstandingExperiments());
+	}
+}
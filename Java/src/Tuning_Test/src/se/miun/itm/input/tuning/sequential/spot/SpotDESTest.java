@@ -0,0 +1,78 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.input.tuning.sequential.spot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.rosuda.JRI.REXP;
+import org.rosuda.JRI.RVector;
+
+import se.miun.itm.input.model.InPUTException;
+import se.miun.itm.input.util.TUtil;
+
+public class SpotDESTest {
+
+	private static final String[] PARAM_IDS = { "SimpleBoolean", "SimpleFloat", "SimpleInt", "CONFIG", "REPEATS", "STEP",
+			"SEED" };
+
+	private RVector columns;
+
+	@Before
+	public void setUp() {
+		columns = new RVector();
+		columns.add(new REXP(new double[] { 1, 0, 0, 1 }));
+		columns.add(new REXP(new double[] { 2.0101889994953759, 3.0103420820088591, 4.0107341045773355, 5.010909980296623 }));
+		columns.add(new REXP(new double[] { 30, 40, 50, 10 }));
+		columns.add(new REXP(new double[] { 1, 2, 3, 4 }));
+		columns.add(new REXP(new double[] { 1, 1, 1, 1 }));
+		columns.add(new REXP(new double[] { 0, 0, 0, 0 }));
+		columns.add(new REXP(new double[] { 4321, 4321, 4321, 4321 }));
+	}
+
+	@Test
+	public void testMatrixMatchesFile() throws InPUTException {
+		SpotDES des = new SpotDES(columns, PARAM_IDS, TUtil.ROI_NUMERIC);
+		assertEquals(TUtil.DES_NUMERIC.size(), des.size());
+		for (int i = 0; i < des.size(); i++)
+			for (String paramId : PARAM_IDS)
+				assertEquals(Double.parseDouble(TUtil.DES_NUMERIC.getDesign(i).getValueFor(paramId)), des.getDesign(i)
+						.getNumericValueFor(paramId), 0);
+	}
+
+	@Test
+	public void testRepeats() throws InPUTException {
+		columns.set(4, new REXP(new double[] { 2, 1, 3, 1 }));
+		SpotDES des = new SpotDES(columns, PARAM_IDS, TUtil.ROI_NUMERIC);
+		assertEquals(7, des.size());
+		assertSame(des.getDesign(0), des.getDesign(1));
+		assertEquals("40.0", des.getDesign(2).getValueFor("SimpleInt"));
+		assertEquals(3, (int) des.getDesign(5).getNumericValueFor("CONFIG"));
+		assertEquals(4, (int) des.getDesign(6).getNumericValueFor("CONFIG"));
+	}
+
+	@Test
+	public void testParamIdsWithoutConfig() throws InPUTException {
+		SpotDES des = new SpotDES(columns, PARAM_IDS, TUtil.ROI_NUMERIC);
+		assertEquals(3, des.getDesign(0).getParamIds().length);
+		assertEquals(PARAM_IDS.length, des.getDesign(0).size());
+	}
+}
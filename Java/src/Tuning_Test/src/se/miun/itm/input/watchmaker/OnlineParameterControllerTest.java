@@ -0,0 +1,129 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.input.watchmaker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.uncommons.watchmaker.framework.EvaluatedCandidate;
+import org.uncommons.watchmaker.framework.EvolutionaryOperator;
+import org.uncommons.watchmaker.framework.MyPopulationData;
+
+import se.miun.itm.input.model.InPUTException;
+import se.miun.itm.input.model.design.DesignSpace;
+import se.miun.itm.input.model.design.IDesign;
+
+public class OnlineParameterControllerTest {
+
+	private static final String RATE = "MutationRate";
+
+	private static final int POPULATION_SIZE = 1000;
+
+	private static IDesign design;
+
+	private final Random rng = new Random(1);
+
+	// the fitness of all candidates so far, by identity.
+	private final Map<String, Double> fitness = new IdentityHashMap<String, Double>();
+
+	private OnlineParameterController<String> controller;
+
+	private AdaptiveOperator<String> operator;
+
+	private boolean improving;
+
+	@Before
+	public void setUp() throws InPUTException {
+		if (design == null)
+			design = new DesignSpace("adaptiveOperatorSpace.xml").nextDesign("adaptive");
+		design.setValue(RATE, 0.0);
+		operator = new AdaptiveOperator<String>(new EvolutionaryOperator<String>() {
+			@Override
+			public List<String> apply(List<String> selectedCandidates, Random rng) {
+				List<String> offspring = new ArrayList<String>(selectedCandidates.size());
+				for (String parent : selectedCandidates) {
+					String child = new String(parent);
+					fitness.put(child, fitness.get(parent) + (improving ? 1 : 0));
+					offspring.add(child);
+				}
+				return offspring;
+			}
+		}, 0);
+		controller = new OnlineParameterController<String>(design, true);
+		controller.control(RATE, operator);
+	}
+
+	private List<String> evolve(List<String> population, int generations) {
+		for (int i = 0; i < generations; i++) {
+			population = operator.apply(population, rng);
+			List<EvaluatedCandidate<String>> evaluated = new ArrayList<EvaluatedCandidate<String>>(population.size());
+			for (String candidate : population)
+				evaluated.add(new EvaluatedCandidate<String>(candidate, fitness.get(candidate)));
+			controller.populationUpdate(new MyPopulationData<String>(null, evaluated));
+		}
+		return population;
+	}
+
+	private List<String> initialPopulation() {
+		List<String> population = new ArrayList<String>(POPULATION_SIZE);
+		for (int i = 0; i < POPULATION_SIZE; i++) {
+			String candidate = new String("candidate");
+			fitness.put(candidate, 0.0);
+			population.add(candidate);
+		}
+		// the first update only makes the population the ancestors of the next one.
+		List<EvaluatedCandidate<String>> evaluated = new ArrayList<EvaluatedCandidate<String>>(population.size());
+		for (String candidate : population)
+			evaluated.add(new EvaluatedCandidate<String>(candidate, 0));
+		controller.populationUpdate(new MyPopulationData<String>(null, evaluated));
+		return population;
+	}
+
+	@Test
+	public void testZeroIsLiftedToTheExplorationFloor() {
+		assertEquals(OnlineParameterController.EXPLORATION_FLOOR, operator.getProbability(), 0);
+	}
+
+	@Test
+	public void testOperatorRecoversFromZero() throws InPUTException {
+		improving = true;
+		evolve(initialPopulation(), 60);
+		assertTrue(operator.getProbability() > .5);
+		assertEquals(operator.getProbability(), ((Number) design.getValue(RATE)).doubleValue(), 1e-9);
+	}
+
+	@Test
+	public void testUnsuccessfulOperatorKeepsExploring() {
+		improving = true;
+		List<String> population = evolve(initialPopulation(), 30);
+		double grown = operator.getProbability();
+		improving = false;
+		evolve(population, 100);
+		assertTrue(grown > .1);
+		assertEquals(OnlineParameterController.EXPLORATION_FLOOR, operator.getProbability(), 1e-12);
+	}
+}
@@ -0,0 +1,38 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package org.uncommons.watchmaker.framework;
+
+/**
+ * Maps a candidate to the key under which its fitness is memoized by a
+ * {@link FitnessCache}. Two candidates with equal keys are expected to receive
+ * the same fitness score. Useful for candidate types without value equality,
+ * such as arrays.
+ * 
+ * @author Felix Dobslaw
+ *
+ * @param <T>
+ */
+public interface CandidateKey<T> {
+
+	/**
+	 * @param candidate The candidate to identify.
+	 * @return A key with value based <code>equals</code> and <code>hashCode</code>.
+	 */
+	Object keyOf(T candidate);
+}
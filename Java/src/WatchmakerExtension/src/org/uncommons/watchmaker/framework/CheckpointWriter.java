@@ -0,0 +1,125 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package org.uncommons.watchmaker.framework;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Writes serialized checkpoints on a background thread. If the writer falls behind,
+ * only the most recent checkpoint is written. Files are replaced atomically, so that
+ * a crash during a write leaves the previous checkpoint intact.
+ * 
+ * @ThreadSafe
+ * 
+ * @author Felix Dobslaw
+ */
+class CheckpointWriter {
+
+	private final File file;
+
+	private final AtomicReference<byte[]> pending = new AtomicReference<byte[]>();
+
+	private final ExecutorService writer;
+
+	private volatile IOException failure;
+
+	CheckpointWriter(File file) {
+		this.file = file;
+		writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable task) {
+				Thread thread = new Thread(task, "EvolutionCheckpointWriter");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	void write(byte[] checkpoint) {
+		pending.set(checkpoint);
+		// every task writes the latest checkpoint, if any; superfluous tasks do nothing.
+		writer.execute(new Runnable() {
+			@Override
+			public void run() {
+				byte[] latest = pending.getAndSet(null);
+				if (latest != null)
+					try {
+						writeAtomically(latest);
+					} catch (IOException e) {
+						failure = e;
+					}
+			}
+		});
+	}
+
+	/**
+	 * Blocks until all checkpoints handed over so far are written.
+	 * @throws IllegalStateException if a write has failed.
+	 */
+	void flush() {
+		try {
+			writer.submit(new Runnable() {
+				@Override
+				public void run() {
+				}
+			}).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+		IOException e = failure;
+		if (e != null) {
+			failure = null;
+			throw new IllegalStateException("The checkpoint '" + file + "' could not be written.", e);
+		}
+	}
+
+	void shutdown() {
+		writer.shutdown();
+	}
+
+	File getFile() {
+		return file;
+	}
+
+	private void writeAtomically(byte[] checkpoint) throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null)
+			parent.mkdirs();
+		File tmp = new File(file.getPath() + ".tmp");
+		OutputStream out = new FileOutputStream(tmp);
+		try {
+			out.write(checkpoint);
+		} finally {
+			out.close();
+		}
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+}
@@ -0,0 +1,92 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package org.uncommons.watchmaker.framework;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.uncommons.maths.random.RepeatableRNG;
+
+/**
+ * Wraps a repeatable random number generator and counts the 32 bit words drawn
+ * from it, so that its state can be captured without disturbing it: the state is
+ * the seed and the amount of draws. A deserialized instance recreates the generator
+ * from its seed and fast-forwards it by the recorded draws.
+ * 
+ * All numbers are derived from the upper bits of the words of the generator, as
+ * the repeatable generators of the Uncommons Maths library do themselves, so that
+ * the wrapper yields the same stream as the wrapped generator. Draws that bypass the
+ * wrapper, also those before it has been created, are not counted.
+ * 
+ * @ThreadSafe
+ * 
+ * @author Felix Dobslaw
+ */
+class DrawCountingRNG extends Random implements RepeatableRNG {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String rngClass;
+
+	private final byte[] seed;
+
+	private final AtomicLong draws = new AtomicLong();
+
+	private transient Random rng;
+
+	DrawCountingRNG(Random rng) {
+		if (!(rng instanceof RepeatableRNG))
+			throw new IllegalArgumentException("Only repeatable generators can be restored from their seed.");
+		this.rng = rng;
+		rngClass = rng.getClass().getName();
+		seed = ((RepeatableRNG) rng).getSeed();
+	}
+
+	@Override
+	protected int next(int bits) {
+		draws.incrementAndGet();
+		return rng.nextInt() >>> (32 - bits);
+	}
+
+	@Override
+	public byte[] getSeed() {
+		return seed.clone();
+	}
+
+	public long getDraws() {
+		return draws.get();
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		rng = instantiate(rngClass, seed);
+		for (long i = draws.get(); i > 0; i--)
+			rng.nextInt();
+	}
+
+	private static Random instantiate(String rngClass, byte[] seed) throws IOException {
+		try {
+			return (Random) Class.forName(rngClass).getConstructor(byte[].class).newInstance((Object) seed);
+		} catch (Exception e) {
+			throw new IOException("The random number generator '" + rngClass + "' cannot be created from a seed.", e);
+		}
+	}
+}
@@ -0,0 +1,147 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package org.uncommons.watchmaker.framework;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The state of an evolution at the end of a generation: the evaluated population,
+ * the generation index, the elapsed time and the state of the random number
+ * generator. Termination conditions are not part of it and have to be given again on
+ * resume. Candidates have to be serializable. Repeatable generators, such as the
+ * Mersenne twister, are not serializable; the engine records them by their seed and
+ * the amount of numbers drawn, see {@link DrawCountingRNG}. Checkpoints are stored as
+ * compressed object streams, with the fitness scores as a primitive array.
+ * 
+ * @ThreadSafe
+ * 
+ * @author Felix Dobslaw
+ *
+ * @param <T>
+ */
+public class EvolutionCheckpoint<T> implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int generation;
+
+	private final long elapsedTime;
+
+	private final int eliteCount;
+
+	private final Random rng;
+
+	private final ArrayList<T> candidates;
+
+	private final double[] fitness;
+
+	EvolutionCheckpoint(List<EvaluatedCandidate<T>> evaluatedPopulation, int generation, long elapsedTime,
+			int eliteCount, Random rng) {
+		this.generation = generation;
+		this.elapsedTime = elapsedTime;
+		this.eliteCount = eliteCount;
+		this.rng = rng;
+		candidates = new ArrayList<T>(evaluatedPopulation.size());
+		fitness = new double[evaluatedPopulation.size()];
+		for (int i = 0; i < fitness.length; i++) {
+			candidates.add(evaluatedPopulation.get(i).getCandidate());
+			fitness[i] = evaluatedPopulation.get(i).getFitness();
+		}
+	}
+
+	/**
+	 * Serializes the checkpoint. The random number generator is captured at this
+	 * moment, so this has to happen on the evolution thread.
+	 */
+	byte[] toBytes() {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(bytes));
+			out.writeObject(this);
+			out.close();
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			throw new IllegalStateException("The evolution state cannot be serialized; are the candidates serializable?", e);
+		}
+	}
+
+	/**
+	 * @param file A checkpoint written by an evolution engine.
+	 * @return The checkpoint.
+	 * @throws IOException if the file cannot be read or does not contain a checkpoint.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> EvolutionCheckpoint<T> read(File file) throws IOException {
+		ObjectInputStream in = new ObjectInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(file))));
+		try {
+			return (EvolutionCheckpoint<T>) in.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException("The checkpoint '" + file + "' refers to unknown classes.", e);
+		} catch (ClassCastException e) {
+			throw new IOException("The file '" + file + "' is no evolution checkpoint.", e);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * @return The evaluated population, sorted by fitness.
+	 */
+	public List<EvaluatedCandidate<T>> getEvaluatedPopulation() {
+		List<EvaluatedCandidate<T>> evaluatedPopulation = new ArrayList<EvaluatedCandidate<T>>(fitness.length);
+		for (int i = 0; i < fitness.length; i++)
+			evaluatedPopulation.add(new EvaluatedCandidate<T>(candidates.get(i), fitness[i]));
+		return evaluatedPopulation;
+	}
+
+	public int getGeneration() {
+		return generation;
+	}
+
+	public long getElapsedTime() {
+		return elapsedTime;
+	}
+
+	public int getEliteCount() {
+		return eliteCount;
+	}
+
+	public int getPopulationSize() {
+		return fitness.length;
+	}
+
+	/**
+	 * @return The random number generator in its state at the checkpoint.
+	 */
+	public Random getRng() {
+		return rng;
+	}
+}
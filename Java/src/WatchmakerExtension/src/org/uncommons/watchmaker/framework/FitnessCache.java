@@ -0,0 +1,121 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package org.uncommons.watchmaker.framework;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least-recently-used memo of fitness scores, so that candidates
+ * which reappear during a run (elites, unchanged offspring, duplicates) are
+ * only evaluated once. Candidates are identified by their own equality, or by
+ * a user supplied {@link CandidateKey}.
+ * 
+ * The cache is only sound for fitness evaluators whose score of a candidate
+ * does not depend on the rest of the population, which they declare by
+ * implementing {@link PopulationIndependentFitnessEvaluator}.
+ * 
+ * @ThreadSafe
+ * 
+ * @author Felix Dobslaw
+ *
+ * @param <T>
+ */
+public class FitnessCache<T> {
+
+	private final CandidateKey<? super T> key;
+
+	private final Map<Object, Double> scores;
+
+	private final int capacity;
+
+	private long hits, misses;
+
+	/**
+	 * Creates a cache that identifies candidates by their own equality.
+	 * @param capacity The maximum amount of remembered scores.
+	 */
+	public FitnessCache(int capacity) {
+		this(capacity, null);
+	}
+
+	/**
+	 * @param capacity The maximum amount of remembered scores.
+	 * @param key Identifies candidates, or <code>null</code> to use candidate equality.
+	 */
+	public FitnessCache(final int capacity, CandidateKey<? super T> key) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("The capacity of a fitness cache has to be positive.");
+		this.capacity = capacity;
+		this.key = key;
+		scores = new LinkedHashMap<Object, Double>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Object, Double> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	public Object keyOf(T candidate) {
+		if (key == null)
+			return candidate;
+		return key.keyOf(candidate);
+	}
+
+	/**
+	 * @param key A key as returned by {@link #keyOf(Object)}.
+	 * @return The remembered score, or <code>null</code> if there is none.
+	 */
+	public synchronized Double lookup(Object key) {
+		Double score = scores.get(key);
+		if (score == null)
+			misses++;
+		else
+			hits++;
+		return score;
+	}
+
+	public synchronized void store(Object key, double score) {
+		scores.put(key, score);
+	}
+
+	public synchronized int size() {
+		return scores.size();
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized void clear() {
+		scores.clear();
+		hits = 0;
+		misses = 0;
+	}
+}
@@ -0,0 +1,59 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package org.uncommons.watchmaker.framework;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Callable task that evaluates a contiguous chunk of candidates, so that cheap fitness
+ * functions do not pay for one task and future per candidate.
+ * 
+ * @author Felix Dobslaw
+ *
+ * @param <T>
+ */
+class FitnessEvaluationChunk<T> implements Callable<List<EvaluatedCandidate<T>>> {
+
+	private final FitnessEvaluator<? super T> fitnessEvaluator;
+
+	private final List<T> candidates;
+
+	private final List<T> population;
+
+	/**
+	 * @param fitnessEvaluator The fitness function used to determine candidate fitness.
+	 * @param candidates The candidates to evaluate by this task.
+	 * @param population The entire current population.
+	 */
+	FitnessEvaluationChunk(FitnessEvaluator<? super T> fitnessEvaluator, List<T> candidates, List<T> population) {
+		this.fitnessEvaluator = fitnessEvaluator;
+		this.candidates = candidates;
+		this.population = population;
+	}
+
+	@Override
+	public List<EvaluatedCandidate<T>> call() {
+		List<EvaluatedCandidate<T>> evaluated = new ArrayList<EvaluatedCandidate<T>>(candidates.size());
+		for (T candidate : candidates)
+			evaluated.add(new EvaluatedCandidate<T>(candidate, fitnessEvaluator.getFitness(candidate, population)));
+		return evaluated;
+	}
+}
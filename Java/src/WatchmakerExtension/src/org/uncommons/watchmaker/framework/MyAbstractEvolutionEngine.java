@@ -18,40 +18,63 @@ OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
 SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  */package org.uncommons.watchmaker.framework;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.uncommons.maths.random.RepeatableRNG;
 
 import org.uncommons.watchmaker.framework.CandidateFactory;
 import org.uncommons.watchmaker.framework.EvaluatedCandidate;
 import org.uncommons.watchmaker.framework.EvolutionEngine;
 import org.uncommons.watchmaker.framework.EvolutionObserver;
 import org.uncommons.watchmaker.framework.EvolutionUtils;
-import org.uncommons.watchmaker.framework.FitnessEvaluationWorker;
 import org.uncommons.watchmaker.framework.FitnessEvaluator;
 import org.uncommons.watchmaker.framework.TerminationCondition;
 
 public abstract class MyAbstractEvolutionEngine<T> implements EvolutionEngine<T> {
-	 // A single multi-threaded worker is shared among multiple evolution engine instances.
-    private static FitnessEvaluationWorker concurrentWorker = null;
+	 // A single multi-threaded executor is shared among engines that do not bring their own.
+    private static ExecutorService sharedExecutor = null;
+
+    // Chunks per processor when the chunk size is chosen automatically, for load balancing.
+    private static final int CHUNKS_PER_PROCESSOR = 4;
 
     private final Set<EvolutionObserver<? super T>> observers = new CopyOnWriteArraySet<EvolutionObserver<? super T>>();
 
     private final Set<MyEvolutionObserver<T>> myObservers = new CopyOnWriteArraySet<MyEvolutionObserver<T>>();
     
-    private final Random rng;
+    private Random rng;
     private final CandidateFactory<T> candidateFactory;
     private final FitnessEvaluator<? super T> fitnessEvaluator;
 
     private volatile boolean singleThreaded = false;
 
+    private volatile FitnessCache<T> fitnessCache;
+
+    private volatile ExecutorService executor;
+
+    private volatile int chunkSize = 0;
+
+    private volatile ObserverDispatcher observerDispatcher;
+
+    private volatile CheckpointWriter checkpointWriter;
+
+    private volatile int checkpointInterval;
+
     private List<TerminationCondition> satisfiedTerminationConditions;
 
 
@@ -63,7 +86,9 @@ public abstract class MyAbstractEvolutionEngine<T> implements EvolutionEngine<T>
      * @param fitnessEvaluator A function for assigning fitness scores to candidate
      * solutions.
      * @param rng The source of randomness used by all stochastic processes (including
-     * evolutionary operators and selection strategies).
+     * evolutionary operators and selection strategies). A repeatable generator is
+     * checkpointed by its seed and the amount of numbers drawn from it by the engine, so
+     * it has to be unused when passed in, and must not be shared outside the engine.
      */
     protected MyAbstractEvolutionEngine(CandidateFactory<T> candidateFactory,
                                       FitnessEvaluator<? super T> fitnessEvaluator,
@@ -71,7 +96,7 @@ public abstract class MyAbstractEvolutionEngine<T> implements EvolutionEngine<T>
     {
         this.candidateFactory = candidateFactory;
         this.fitnessEvaluator = fitnessEvaluator;
-        this.rng = rng;
+        this.rng = rng instanceof RepeatableRNG ? new DrawCountingRNG(rng) : rng;
     }
 
 
@@ -136,6 +161,11 @@ public abstract class MyAbstractEvolutionEngine<T> implements EvolutionEngine<T>
         }
 
         satisfiedTerminationConditions = null;
+        if (fitnessCache != null)
+        {
+            // Scores are remembered per run only.
+            fitnessCache.clear();
+        }
         int currentGenerationIndex = 0;
         long startTime = System.currentTimeMillis();
 
@@ -154,24 +184,122 @@ public abstract class MyAbstractEvolutionEngine<T> implements EvolutionEngine<T>
         // Notify observers of the state of the population.
         notifyPopulationChange(data);
 
-        List<TerminationCondition> satisfiedConditions = EvolutionUtils.shouldContinue(data, conditions);
-        while (satisfiedConditions == null)
+        return evolveFrom(evaluatedPopulation, data, eliteCount, startTime, conditions);
+    }
+
+
+    /**
+     * Continues an evolution from a checkpoint written by an engine of the same
+     * configuration, with the population, generation index, elapsed time and random
+     * number generator of the checkpoint. Offspring in flight at the time of the
+     * checkpoint are not part of it.
+     * @param checkpoint The checkpoint file.
+     * @param conditions The conditions that may cause the evolution to terminate. Those
+     * that decide on the population data alone, such as generation counts, elapsed time
+     * or target fitness, continue where they left off; stateful ones, such as
+     * {@link org.uncommons.watchmaker.framework.termination.Stagnation}, start anew.
+     * @return The evaluated population at termination, sorted by fitness.
+     * @throws IOException if the checkpoint cannot be read.
+     */
+    public List<EvaluatedCandidate<T>> resume(File checkpoint,
+                                              TerminationCondition... conditions) throws IOException
+    {
+        if (conditions.length == 0)
         {
-            ++currentGenerationIndex;
-            evaluatedPopulation = nextEvolutionStep(evaluatedPopulation, eliteCount, rng);
-            EvolutionUtils.sortEvaluatedPopulation(evaluatedPopulation, fitnessEvaluator.isNatural());
-            data = EvolutionUtils.getPopulationData(evaluatedPopulation,
-                                                    fitnessEvaluator.isNatural(),
-                                                    eliteCount,
-                                                    currentGenerationIndex,
-                                                    startTime);
-            // Notify observers of the state of the population.
-            notifyPopulationChange(data);
-            notifyMyPopulationChange(new MyPopulationData<T>(data, evaluatedPopulation));
-            satisfiedConditions = EvolutionUtils.shouldContinue(data, conditions);
+            throw new IllegalArgumentException("At least one TerminationCondition must be specified.");
         }
-        this.satisfiedTerminationConditions = satisfiedConditions;
-        return evaluatedPopulation;
+        EvolutionCheckpoint<T> state = EvolutionCheckpoint.read(checkpoint);
+
+        satisfiedTerminationConditions = null;
+        if (fitnessCache != null)
+        {
+            fitnessCache.clear();
+        }
+        rng = state.getRng();
+        long startTime = System.currentTimeMillis() - state.getElapsedTime();
+        List<EvaluatedCandidate<T>> evaluatedPopulation = state.getEvaluatedPopulation();
+        PopulationData<T> data = EvolutionUtils.getPopulationData(evaluatedPopulation,
+                                                                  fitnessEvaluator.isNatural(),
+                                                                  state.getEliteCount(),
+                                                                  state.getGeneration(),
+                                                                  startTime);
+        return evolveFrom(evaluatedPopulation, data, state.getEliteCount(), startTime, conditions);
+    }
+
+
+    private List<EvaluatedCandidate<T>> evolveFrom(List<EvaluatedCandidate<T>> evaluatedPopulation,
+                                                   PopulationData<T> data,
+                                                   int eliteCount,
+                                                   long startTime,
+                                                   TerminationCondition[] conditions)
+    {
+        int currentGenerationIndex = data.getGenerationNumber();
+        try
+        {
+            List<TerminationCondition> satisfiedConditions = EvolutionUtils.shouldContinue(data, conditions);
+            while (satisfiedConditions == null)
+            {
+                ++currentGenerationIndex;
+                evaluatedPopulation = nextEvolutionStep(evaluatedPopulation, eliteCount, rng);
+                EvolutionUtils.sortEvaluatedPopulation(evaluatedPopulation, fitnessEvaluator.isNatural());
+                data = EvolutionUtils.getPopulationData(evaluatedPopulation,
+                                                        fitnessEvaluator.isNatural(),
+                                                        eliteCount,
+                                                        currentGenerationIndex,
+                                                        startTime);
+                // Notify observers of the state of the population.
+                notifyPopulationChange(data);
+                notifyMyPopulationChange(data, evaluatedPopulation);
+                satisfiedConditions = EvolutionUtils.shouldContinue(data, conditions);
+                if (satisfiedConditions == null && currentGenerationIndex % Math.max(1, checkpointInterval) == 0)
+                {
+                    checkpoint(evaluatedPopulation, data, eliteCount, false);
+                }
+            }
+            awaitObservers();
+            checkpoint(evaluatedPopulation, data, eliteCount, true);
+            this.satisfiedTerminationConditions = satisfiedConditions;
+            return evaluatedPopulation;
+        }
+        finally
+        {
+            evolutionFinished();
+        }
+    }
+
+
+    /**
+     * Hands a snapshot of the evolution to the background writer, if checkpoints are
+     * enabled; the final checkpoint of a run is awaited.
+     */
+    private void checkpoint(List<EvaluatedCandidate<T>> evaluatedPopulation,
+                            PopulationData<T> data,
+                            int eliteCount,
+                            boolean await)
+    {
+        CheckpointWriter writer = checkpointWriter;
+        if (writer == null)
+        {
+            return;
+        }
+        writer.write(new EvolutionCheckpoint<T>(evaluatedPopulation,
+                                                data.getGenerationNumber(),
+                                                data.getElapsedTime(),
+                                                eliteCount,
+                                                rng).toBytes());
+        if (await)
+        {
+            writer.flush();
+        }
+    }
+
+
+    /**
+     * Invoked when a run ends, regularly or not. Subclasses that keep state across
+     * the steps of a run can release it here.
+     */
+    protected void evolutionFinished()
+    {
     }
 
 
@@ -200,11 +328,79 @@ public abstract class MyAbstractEvolutionEngine<T> implements EvolutionEngine<T>
      */
     protected List<EvaluatedCandidate<T>> evaluatePopulation(List<T> population)
     {
+        FitnessCache<T> cache = fitnessCache;
+        if (cache == null)
+        {
+            return evaluateCandidates(population, population);
+        }
+        return evaluateCached(population, cache);
+    }
+
+
+    /**
+     * Evaluates only those candidates whose score is neither remembered by the cache
+     * nor shared with an equal candidate earlier in the same population.
+     */
+    private List<EvaluatedCandidate<T>> evaluateCached(List<T> population, FitnessCache<T> cache)
+    {
+        Double[] scores = new Double[population.size()];
+        Object[] keys = new Object[population.size()];
+        Map<Object, Integer> pending = new HashMap<Object, Integer>();
+        List<T> unscored = new ArrayList<T>();
+        for (int i = 0; i < scores.length; i++)
+        {
+            keys[i] = cache.keyOf(population.get(i));
+            if (!pending.containsKey(keys[i]))
+            {
+                scores[i] = cache.lookup(keys[i]);
+                if (scores[i] == null)
+                {
+                    pending.put(keys[i], unscored.size());
+                    unscored.add(population.get(i));
+                }
+            }
+        }
+
+        List<EvaluatedCandidate<T>> evaluatedUnscored = evaluateCandidates(unscored, population);
+        for (EvaluatedCandidate<T> candidate : evaluatedUnscored)
+        {
+            cache.store(cache.keyOf(candidate.getCandidate()), candidate.getFitness());
+        }
+
+        // If interrupted, only a prefix of the unscored candidates has been evaluated; the
+        // population is then left partially evaluated, as without a cache, but in its order.
         List<EvaluatedCandidate<T>> evaluatedPopulation = new ArrayList<EvaluatedCandidate<T>>(population.size());
+        for (int i = 0; i < scores.length; i++)
+        {
+            Double score = scores[i];
+            if (score == null)
+            {
+                int evaluated = pending.get(keys[i]);
+                if (evaluated >= evaluatedUnscored.size())
+                {
+                    continue;
+                }
+                score = evaluatedUnscored.get(evaluated).getFitness();
+            }
+            evaluatedPopulation.add(new EvaluatedCandidate<T>(population.get(i), score));
+        }
+        return evaluatedPopulation;
+    }
+
+
+    /**
+     * Assigns a fitness score to each of the candidates.
+     * @param candidates The candidates to evaluate.
+     * @param population The population the candidates are evaluated within.
+     * @return The candidates with their fitness scores, in the same order.
+     */
+    private List<EvaluatedCandidate<T>> evaluateCandidates(List<T> candidates, List<T> population)
+    {
+        List<EvaluatedCandidate<T>> evaluatedPopulation = new ArrayList<EvaluatedCandidate<T>>(candidates.size());
 
         if (singleThreaded) // Do fitness evaluations on the request thread.
         {
-            for (T candidate : population)
+            for (T candidate : candidates)
             {
                 evaluatedPopulation.add(new EvaluatedCandidate<T>(candidate,
                                                                   fitnessEvaluator.getFitness(candidate, population)));
@@ -212,23 +408,26 @@ public abstract class MyAbstractEvolutionEngine<T> implements EvolutionEngine<T>
         }
         else
         {
-            // Divide the required number of fitness evaluations equally among the
-            // available processors and coordinate the threads so that we do not
-            // proceed until all threads have finished processing.
+            // Divide the required number of fitness evaluations into chunks for the
+            // executor and coordinate the threads so that we do not proceed until all
+            // threads have finished processing.
             try
             {
+                ExecutorService service = getEvaluationExecutor();
+                int size = candidates.size();
+                int chunk = chunkSizeFor(size);
                 List<T> unmodifiablePopulation = Collections.unmodifiableList(population);
-                List<Future<EvaluatedCandidate<T>>> results = new ArrayList<Future<EvaluatedCandidate<T>>>(population.size());
+                List<Future<List<EvaluatedCandidate<T>>>> results = new ArrayList<Future<List<EvaluatedCandidate<T>>>>(size / chunk + 1);
                 // Submit tasks for execution and wait until all threads have finished fitness evaluations.
-                for (T candidate : population)
+                for (int from = 0; from < size; from += chunk)
                 {
-                    results.add(getSharedWorker().submit(new FitnessEvalutationTask<T>(fitnessEvaluator,
-                                                                                       candidate,
-                                                                                       unmodifiablePopulation)));
+                    results.add(service.submit(new FitnessEvaluationChunk<T>(fitnessEvaluator,
+                                                                             candidates.subList(from, Math.min(size, from + chunk)),
+                                                                             unmodifiablePopulation)));
                 }
-                for (Future<EvaluatedCandidate<T>> result : results)
+                for (Future<List<EvaluatedCandidate<T>>> result : results)
                 {
-                    evaluatedPopulation.add(result.get());
+                    evaluatedPopulation.addAll(result.get());
                 }
             }
             catch (ExecutionException ex)
@@ -283,9 +482,9 @@ public abstract class MyAbstractEvolutionEngine<T> implements EvolutionEngine<T>
 
     /**
      * Adds a listener to receive status updates on the evolution progress.
-     * Updates are dispatched synchronously on the request thread.  Observers should
-     * complete their processing and return in a timely manner to avoid holding up
-     * the evolution.
+     * Updates are dispatched synchronously on the request thread, unless an
+     * {@link ObserverDispatcher} is set.  Observers should complete their processing
+     * and return in a timely manner to avoid holding up the evolution.
      * @param observer An evolution observer call-back.
      * @see #removeEvolutionObserver(EvolutionObserver)
      */
@@ -296,9 +495,9 @@ public abstract class MyAbstractEvolutionEngine<T> implements EvolutionEngine<T>
 
     /**
      * Adds a listener to receive status updates on the evolution progress.
-     * Updates are dispatched synchronously on the request thread.  Observers should
-     * complete their processing and return in a timely manner to avoid holding up
-     * the evolution.
+     * Updates are dispatched synchronously on the request thread, unless an
+     * {@link ObserverDispatcher} is set.  Observers should complete their processing
+     * and return in a timely manner to avoid holding up the evolution.
      * @param observer An evolution observer call-back.
      * @see #removeEvolutionObserver(EvolutionObserver)
      */
@@ -329,27 +528,125 @@ public abstract class MyAbstractEvolutionEngine<T> implements EvolutionEngine<T>
     }
     
     /**
-     * Send the population data to all registered observers.
+     * Send the population data to all registered observers. The population data,
+     * including the evaluated population, is only assembled if there are observers.
      * @param data Information about the current state of the population.
+     * @param evaluatedPopulation The sorted population of the current generation.
      */
-    private void notifyMyPopulationChange(MyPopulationData<T> data)
+    private void notifyMyPopulationChange(PopulationData<T> data, List<EvaluatedCandidate<T>> evaluatedPopulation)
     {
-        for (MyEvolutionObserver<T> observer : myObservers)
+        if (myObservers.isEmpty())
         {
-            observer.populationUpdate(data);
+            return;
         }
+        final MyPopulationData<T> myData = new MyPopulationData<T>(data, evaluatedPopulation);
+        dispatch(new Runnable()
+        {
+            public void run()
+            {
+                for (MyEvolutionObserver<T> observer : myObservers)
+                {
+                    observer.populationUpdate(myData);
+                }
+            }
+        });
     }
     
     /**
      * Send the population data to all registered observers.
      * @param data Information about the current state of the population.
      */
-    private void notifyPopulationChange(PopulationData<T> data)
+    private void notifyPopulationChange(final PopulationData<T> data)
+    {
+        if (observers.isEmpty())
+        {
+            return;
+        }
+        dispatch(new Runnable()
+        {
+            public void run()
+            {
+                for (EvolutionObserver<? super T> observer : observers)
+                {
+                    observer.populationUpdate(data);
+                }
+            }
+        });
+    }
+
+
+    private void dispatch(Runnable notification)
+    {
+        ObserverDispatcher dispatcher = observerDispatcher;
+        if (dispatcher == null)
+        {
+            notification.run();
+        }
+        else
+        {
+            dispatcher.dispatch(notification);
+        }
+    }
+
+
+    /**
+     * Waits until observers have received all updates of the run, so that they are
+     * complete once the engine returns.
+     */
+    private void awaitObservers()
+    {
+        ObserverDispatcher dispatcher = observerDispatcher;
+        if (dispatcher != null)
+        {
+            try
+            {
+                dispatcher.awaitIdle();
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+
+    /**
+     * By default, observers are notified synchronously on the request thread. Use this
+     * method to notify them on the dispatcher's thread instead, so that slow observers do
+     * not hold up the evolution. The engine still waits for all notifications at the end
+     * of each run.
+     * @param observerDispatcher The dispatcher, or <code>null</code> for synchronous
+     * notifications.
+     */
+    public void setObserverDispatcher(ObserverDispatcher observerDispatcher)
     {
-        for (EvolutionObserver<? super T> observer : observers)
+        this.observerDispatcher = observerDispatcher;
+    }
+
+
+    /**
+     * Writes a checkpoint of the evolution to the file every few generations, and at
+     * the end of each run, so that a run can be continued with {@link #resume(File,
+     * TerminationCondition...)}. The snapshot is taken on the request thread, and
+     * written on a background thread, replacing the previous checkpoint atomically.
+     * Candidates and the random number generator have to be serializable.
+     * @param file The checkpoint file, or <code>null</code> to disable checkpoints.
+     * @param everyGenerations The amount of generations between checkpoints.
+     */
+    public void setCheckpoint(File file, int everyGenerations)
+    {
+        if (file != null && everyGenerations < 1)
+        {
+            throw new IllegalArgumentException("Checkpoints have to be at least one generation apart.");
+        }
+        CheckpointWriter previous = checkpointWriter;
+        if (previous != null)
         {
-            observer.populationUpdate(data);
+            previous.flush();
+            previous.shutdown();
         }
+        checkpointInterval = everyGenerations;
+        checkpointWriter = file == null ? null : new CheckpointWriter(file);
     }
 
 
@@ -369,14 +666,108 @@ public abstract class MyAbstractEvolutionEngine<T> implements EvolutionEngine<T>
 
 
     /**
-     * Lazily create the multi-threaded worker for fitness evaluations.
+     * Remembers fitness scores for the duration of a run, so that candidates which
+     * reappear (elites, unchanged offspring, duplicates) are evaluated only once.
+     * As the score of the first occurrence is reused, the fitness evaluator has to declare
+     * that it scores each candidate independently of the population it is part of.
+     * @param fitnessCache The cache, or <code>null</code> to evaluate every candidate.
+     * @throws IllegalArgumentException If a cache is set for a fitness evaluator that is not a
+     * {@link PopulationIndependentFitnessEvaluator}.
+     */
+    public void setFitnessCache(FitnessCache<T> fitnessCache)
+    {
+        if (fitnessCache != null && !(fitnessEvaluator instanceof PopulationIndependentFitnessEvaluator))
+        {
+            throw new IllegalArgumentException("Only a PopulationIndependentFitnessEvaluator supports fitness caching.");
+        }
+        this.fitnessCache = fitnessCache;
+    }
+
+
+    public FitnessCache<T> getFitnessCache()
+    {
+        return fitnessCache;
+    }
+
+
+    /**
+     * Evaluates fitness on the given executor instead of the executor shared by all engines,
+     * e.g. a bounded pool, a fork/join pool or a virtual thread executor. Its lifecycle
+     * stays with the caller.
+     * @param executor The executor, or <code>null</code> to use the shared one.
+     */
+    public void setExecutorService(ExecutorService executor)
+    {
+        this.executor = executor;
+    }
+
+
+    /**
+     * Sets how many candidates are evaluated by a single task. Larger chunks reduce the
+     * scheduling overhead for cheap fitness functions, smaller chunks balance uneven
+     * evaluation times better.
+     * @param chunkSize The amount of candidates per task, or 0 to derive it from the
+     * population size and the available processors.
+     */
+    public void setChunkSize(int chunkSize)
+    {
+        if (chunkSize < 0)
+        {
+            throw new IllegalArgumentException("Chunk size must be non-negative.");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+
+    /**
+     * @return True if fitness evaluations are performed on the request thread.
+     */
+    protected boolean isSingleThreaded()
+    {
+        return singleThreaded;
+    }
+
+
+    /**
+     * @return The executor that performs fitness evaluations of this engine, the shared
+     * one if none has been set.
      */
-    private static synchronized FitnessEvaluationWorker getSharedWorker()
+    protected ExecutorService getEvaluationExecutor()
+    {
+        ExecutorService service = executor;
+        return service != null ? service : getSharedExecutor();
+    }
+
+
+    private int chunkSizeFor(int amountCandidates)
     {
-        if (concurrentWorker == null)
+        if (chunkSize > 0)
         {
-            concurrentWorker = new FitnessEvaluationWorker();
+            return chunkSize;
+        }
+        return Math.max(1, amountCandidates / (CHUNKS_PER_PROCESSOR * Runtime.getRuntime().availableProcessors()));
+    }
+
+
+    /**
+     * Lazily create the multi-threaded executor for fitness evaluations.
+     */
+    private static synchronized ExecutorService getSharedExecutor()
+    {
+        if (sharedExecutor == null)
+        {
+            sharedExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory()
+            {
+                private int counter = 0;
+
+                public synchronized Thread newThread(Runnable task)
+                {
+                    Thread thread = new Thread(task, "FitnessEvaluationWorker-" + counter++);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
         }
-        return concurrentWorker;
+        return sharedExecutor;
     }
 }
@@ -0,0 +1,206 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package org.uncommons.watchmaker.framework;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+
+/**
+ * A steady-state evolution engine: instead of rebuilding the whole population, each
+ * step replaces only the worst individuals by a few freshly bred offspring. Offspring
+ * are evaluated asynchronously; the engine keeps enough evaluations in flight to
+ * occupy all workers and integrates offspring in the order their evaluations
+ * complete, so that uneven evaluation times do not leave workers idle. As a
+ * consequence, a step may integrate offspring bred from the population of an earlier
+ * step.
+ * 
+ * @NotThreadSafe
+ * 
+ * @author Felix Dobslaw
+ *
+ * @param <T>
+ */
+public class MySteadyStateEvolutionEngine<T> extends MyAbstractEvolutionEngine<T> {
+
+	private final EvolutionaryOperator<T> evolutionScheme;
+
+	private final FitnessEvaluator<? super T> fitnessEvaluator;
+
+	private final SelectionStrategy<? super T> selectionStrategy;
+
+	private final int replacements;
+
+	private final int selectionSize;
+
+	private int maxPendingEvaluations;
+
+	private CompletionService<EvaluatedCandidate<T>> completions;
+
+	private final Map<Future<EvaluatedCandidate<T>>, T> pending = new HashMap<Future<EvaluatedCandidate<T>>, T>();
+
+	// offspring whose fitness was known without evaluation; together with the pending ones
+	// bounded by maxPendingEvaluations.
+	private final List<EvaluatedCandidate<T>> ready = new ArrayList<EvaluatedCandidate<T>>();
+
+	/**
+	 * @param candidateFactory Factory used to create the initial population.
+	 * @param evolutionScheme The operators that breed offspring from the selected parents.
+	 * @param fitnessEvaluator A function for assigning fitness scores to candidate solutions.
+	 * @param selectionStrategy A strategy for selecting the parents of offspring.
+	 * @param replacements The amount of individuals replaced per step.
+	 * @param rng The source of randomness used by all stochastic processes.
+	 */
+	public MySteadyStateEvolutionEngine(CandidateFactory<T> candidateFactory, EvolutionaryOperator<T> evolutionScheme,
+			FitnessEvaluator<? super T> fitnessEvaluator, SelectionStrategy<? super T> selectionStrategy,
+			int replacements, Random rng) {
+		this(candidateFactory, evolutionScheme, fitnessEvaluator, selectionStrategy, replacements, 2, rng);
+	}
+
+	/**
+	 * @param selectionSize The amount of parents the evolution scheme is applied to at
+	 *            once, e.g. 2 for pairwise crossover.
+	 */
+	public MySteadyStateEvolutionEngine(CandidateFactory<T> candidateFactory, EvolutionaryOperator<T> evolutionScheme,
+			FitnessEvaluator<? super T> fitnessEvaluator, SelectionStrategy<? super T> selectionStrategy,
+			int replacements, int selectionSize, Random rng) {
+		super(candidateFactory, fitnessEvaluator, rng);
+		if (replacements < 1)
+			throw new IllegalArgumentException("At least one individual has to be replaced per step.");
+		if (selectionSize < 1)
+			throw new IllegalArgumentException("At least one parent has to be selected.");
+		this.evolutionScheme = evolutionScheme;
+		this.fitnessEvaluator = fitnessEvaluator;
+		this.selectionStrategy = selectionStrategy;
+		this.replacements = replacements;
+		this.selectionSize = selectionSize;
+		maxPendingEvaluations = Math.max(replacements, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Sets how many offspring evaluations are kept in flight at most. It should be at
+	 * least the amount of evaluation threads, so that no worker idles. Offspring whose
+	 * fitness is cached count against the maximum until they replace a candidate.
+	 * @param maxPendingEvaluations The maximum, which is raised to the amount of
+	 *            replacements per step if lower.
+	 */
+	public void setMaxPendingEvaluations(int maxPendingEvaluations) {
+		this.maxPendingEvaluations = Math.max(replacements, maxPendingEvaluations);
+	}
+
+	public int getReplacements() {
+		return replacements;
+	}
+
+	@Override
+	protected void evolutionFinished() {
+		// offspring still in flight belong to a run that has terminated.
+		for (Future<EvaluatedCandidate<T>> future : pending.keySet())
+			future.cancel(true);
+		pending.clear();
+		ready.clear();
+		completions = null;
+	}
+
+	@Override
+	protected List<EvaluatedCandidate<T>> nextEvolutionStep(List<EvaluatedCandidate<T>> evaluatedPopulation,
+			int eliteCount, Random rng) {
+		if (replacements > evaluatedPopulation.size() - eliteCount)
+			throw new IllegalArgumentException("The amount of replacements must not exceed the non-elite population.");
+		List<EvaluatedCandidate<T>> offspring;
+		if (isSingleThreaded())
+			offspring = evaluatePopulation(breed(evaluatedPopulation, replacements, rng));
+		else
+			offspring = awaitOffspring(evaluatedPopulation, rng);
+
+		// replace the worst; the elite is never among them, as replacements do not
+		// exceed the non-elite part of the population.
+		List<EvaluatedCandidate<T>> population = new ArrayList<EvaluatedCandidate<T>>(evaluatedPopulation.size()
+				+ offspring.size());
+		population.addAll(evaluatedPopulation);
+		population.addAll(offspring);
+		EvolutionUtils.sortEvaluatedPopulation(population, fitnessEvaluator.isNatural());
+		return new ArrayList<EvaluatedCandidate<T>>(population.subList(0, evaluatedPopulation.size()));
+	}
+
+	private List<EvaluatedCandidate<T>> awaitOffspring(List<EvaluatedCandidate<T>> evaluatedPopulation, Random rng) {
+		List<EvaluatedCandidate<T>> offspring = new ArrayList<EvaluatedCandidate<T>>(replacements);
+		FitnessCache<T> cache = getFitnessCache();
+		if (completions == null)
+			completions = new ExecutorCompletionService<EvaluatedCandidate<T>>(getEvaluationExecutor());
+		List<T> population;
+		int outstanding = pending.size() + ready.size();
+		if (outstanding < maxPendingEvaluations) {
+			population = Collections.unmodifiableList(toCandidateList(evaluatedPopulation));
+			for (T child : breed(evaluatedPopulation, maxPendingEvaluations - outstanding, rng)) {
+				Double score = cache == null ? null : cache.lookup(cache.keyOf(child));
+				if (score != null)
+					ready.add(new EvaluatedCandidate<T>(child, score));
+				else
+					pending.put(completions.submit(new FitnessEvalutationTask<T>(fitnessEvaluator, child, population)),
+							child);
+			}
+		}
+		while (!ready.isEmpty() && offspring.size() < replacements)
+			offspring.add(ready.remove(ready.size() - 1));
+
+		try {
+			while (offspring.size() < replacements) {
+				Future<EvaluatedCandidate<T>> future = completions.take();
+				pending.remove(future);
+				EvaluatedCandidate<T> child = future.get();
+				if (cache != null)
+					cache.store(cache.keyOf(child.getCandidate()), child.getFitness());
+				offspring.add(child);
+			}
+		} catch (ExecutionException ex) {
+			throw new IllegalStateException("Fitness evaluation task execution failed.", ex);
+		} catch (InterruptedException ex) {
+			// Restore the interrupted status, allows methods further up the call-stack
+			// to abort processing if appropriate.
+			Thread.currentThread().interrupt();
+		}
+		return offspring;
+	}
+
+	private List<T> breed(List<EvaluatedCandidate<T>> evaluatedPopulation, int amount, Random rng) {
+		List<T> offspring = new ArrayList<T>(amount + selectionSize);
+		while (offspring.size() < amount) {
+			List<T> parents = new ArrayList<T>(selectionSize);
+			parents.addAll(selectionStrategy.select(evaluatedPopulation, fitnessEvaluator.isNatural(), selectionSize,
+					rng));
+			offspring.addAll(evolutionScheme.apply(parents, rng));
+		}
+		return offspring.subList(0, amount);
+	}
+
+	private static <T> List<T> toCandidateList(List<EvaluatedCandidate<T>> evaluatedCandidates) {
+		List<T> candidates = new ArrayList<T>(evaluatedCandidates.size());
+		for (EvaluatedCandidate<T> evaluatedCandidate : evaluatedCandidates)
+			candidates.add(evaluatedCandidate.getCandidate());
+		return candidates;
+	}
+}
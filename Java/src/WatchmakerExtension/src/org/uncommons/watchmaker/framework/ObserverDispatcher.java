@@ -0,0 +1,193 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package org.uncommons.watchmaker.framework;
+
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Delivers observer notifications of an evolution engine on a separate daemon thread,
+ * so that slow observers, such as loggers or design exporters, do not stall the
+ * evolution. Pending notifications are held in a bounded queue; what happens when it
+ * is full is decided by the {@link OverflowPolicy}. Notifications are delivered in
+ * order, and an engine waits for all of them at the end of a run.
+ * 
+ * @ThreadSafe
+ * 
+ * @author Felix Dobslaw
+ */
+public class ObserverDispatcher {
+
+	public enum OverflowPolicy {
+		/**
+		 * The engine waits until there is space; no notification is lost.
+		 */
+		BLOCK,
+		/**
+		 * The newest notification is discarded.
+		 */
+		DROP,
+		/**
+		 * The oldest pending notification is discarded, so that observers catch up
+		 * with the most recent state.
+		 */
+		COALESCE
+	}
+
+	private static int threadCounter = 0;
+
+	private final BlockingQueue<Runnable> queue;
+
+	private final OverflowPolicy policy;
+
+	private Thread worker;
+
+	private int unfinished;
+
+	private long dropped;
+
+	private RuntimeException failure;
+
+	/**
+	 * @param capacity The maximum amount of pending notifications.
+	 * @param policy What to do with notifications that exceed the capacity.
+	 */
+	public ObserverDispatcher(int capacity, OverflowPolicy policy) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("The capacity of an observer queue has to be positive.");
+		queue = new ArrayBlockingQueue<Runnable>(capacity);
+		this.policy = policy;
+	}
+
+	/**
+	 * Schedules the notification according to the overflow policy.
+	 * @param notification The observer calls for one population update.
+	 */
+	public void dispatch(Runnable notification) {
+		synchronized (this) {
+			startWorker();
+			unfinished++;
+		}
+		switch (policy) {
+		case BLOCK:
+			try {
+				queue.put(notification);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				discarded();
+			}
+			break;
+		case DROP:
+			if (!queue.offer(notification))
+				discarded();
+			break;
+		case COALESCE:
+			synchronized (queue) {
+				while (!queue.offer(notification))
+					if (queue.poll() != null)
+						discarded();
+			}
+			break;
+		}
+	}
+
+	/**
+	 * Blocks until all scheduled notifications have been delivered or discarded.
+	 * @throws IllegalStateException if an observer has failed since the last call.
+	 */
+	public synchronized void awaitIdle() throws InterruptedException {
+		while (unfinished > 0)
+			wait();
+		if (failure != null) {
+			RuntimeException cause = failure;
+			failure = null;
+			throw new IllegalStateException("An evolution observer failed.", cause);
+		}
+	}
+
+	public synchronized long getDropped() {
+		return dropped;
+	}
+
+	public OverflowPolicy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Stops the delivery thread; pending notifications are discarded. A later
+	 * dispatch starts a new thread.
+	 */
+	public synchronized void shutdown() {
+		if (worker != null) {
+			worker.interrupt();
+			worker = null;
+		}
+		// only what is actually drained is discarded; the worker may have taken a notification
+		// in the meantime, which it delivers and accounts for itself.
+		unfinished -= queue.drainTo(new ArrayList<Runnable>());
+		notifyAll();
+	}
+
+	private synchronized void discarded() {
+		dropped++;
+		finished();
+	}
+
+	private synchronized void finished() {
+		if (--unfinished == 0)
+			notifyAll();
+	}
+
+	private synchronized void failed(RuntimeException e) {
+		if (failure == null)
+			failure = e;
+	}
+
+	private void startWorker() {
+		if (worker != null)
+			return;
+		worker = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				while (!Thread.currentThread().isInterrupted()) {
+					Runnable notification;
+					try {
+						notification = queue.take();
+					} catch (InterruptedException e) {
+						return;
+					}
+					try {
+						notification.run();
+					} catch (RuntimeException e) {
+						failed(e);
+					} finally {
+						finished();
+					}
+				}
+			}
+		}, "EvolutionObserverDispatcher-" + nextThreadId());
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	private static synchronized int nextThreadId() {
+		return threadCounter++;
+	}
+}
@@ -0,0 +1,82 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package org.uncommons.watchmaker.framework.islands;
+
+/**
+ * Describes when and how individuals move between the islands of a
+ * {@link MyIslandEvolution}: every <code>interval</code> generations,
+ * <code>count</code> individuals leave each island along the given topology.
+ * It is a plain value object, so that it can be instantiated from an InPUT
+ * algorithm design by constructor mapping.
+ * 
+ * @ThreadSafe
+ * 
+ * @author Felix Dobslaw
+ */
+public class MigrationPolicy {
+
+	private final int interval;
+
+	private final int count;
+
+	private final Migration topology;
+
+	/**
+	 * Migrates along a ring.
+	 * @param interval The amount of generations per epoch.
+	 * @param count The amount of migrants per island and epoch.
+	 */
+	public MigrationPolicy(int interval, int count) {
+		this(interval, count, new RingMigration());
+	}
+
+	/**
+	 * @param interval The amount of generations per epoch.
+	 * @param count The amount of migrants per island and epoch.
+	 * @param topology The strategy that decides where migrants go.
+	 */
+	public MigrationPolicy(int interval, int count, Migration topology) {
+		if (interval < 1)
+			throw new IllegalArgumentException("The migration interval has to be at least one generation.");
+		if (count < 0)
+			throw new IllegalArgumentException("The amount of migrants must be non-negative.");
+		if (topology == null)
+			throw new IllegalArgumentException("A migration topology has to be set.");
+		this.interval = interval;
+		this.count = count;
+		this.topology = topology;
+	}
+
+	public int getInterval() {
+		return interval;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public Migration getTopology() {
+		return topology;
+	}
+
+	@Override
+	public String toString() {
+		return topology.getClass().getSimpleName() + "[interval=" + interval + ", count=" + count + "]";
+	}
+}
@@ -0,0 +1,305 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package org.uncommons.watchmaker.framework.islands;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.uncommons.watchmaker.framework.CandidateFactory;
+import org.uncommons.watchmaker.framework.EvaluatedCandidate;
+import org.uncommons.watchmaker.framework.EvolutionUtils;
+import org.uncommons.watchmaker.framework.EvolutionaryOperator;
+import org.uncommons.watchmaker.framework.FitnessEvaluator;
+import org.uncommons.watchmaker.framework.MyAbstractEvolutionEngine;
+import org.uncommons.watchmaker.framework.MyEvolutionObserver;
+import org.uncommons.watchmaker.framework.MyGenerationalEvolutionEngine;
+import org.uncommons.watchmaker.framework.MyPopulationData;
+import org.uncommons.watchmaker.framework.PopulationData;
+import org.uncommons.watchmaker.framework.SelectionStrategy;
+import org.uncommons.watchmaker.framework.TerminationCondition;
+import org.uncommons.watchmaker.framework.termination.GenerationCount;
+
+/**
+ * An island model in the spirit of the Watchmaker {@link IslandEvolution}, for the
+ * engines of this extension. Each island is a {@link MyAbstractEvolutionEngine} that
+ * evolves its own sub-population on a separate thread, so that selection and the
+ * operator pipeline scale with the amount of islands, not only fitness evaluation.
+ * At the end of each epoch, individuals migrate between the islands as described
+ * by a {@link MigrationPolicy}, which can be set up from an InPUT design.
+ * 
+ * @NotThreadSafe
+ * 
+ * @author Felix Dobslaw
+ *
+ * @param <T>
+ */
+public class MyIslandEvolution<T> {
+
+	private final List<? extends MyAbstractEvolutionEngine<T>> islands;
+
+	private final MigrationPolicy policy;
+
+	private final boolean naturalFitness;
+
+	private final Random rng;
+
+	private final Set<IslandEvolutionObserver<? super T>> observers = new CopyOnWriteArraySet<IslandEvolutionObserver<? super T>>();
+
+	private final Set<MyEvolutionObserver<T>> myObservers = new CopyOnWriteArraySet<MyEvolutionObserver<T>>();
+
+	// forward the updates of each island to the island observers; only registered while there are any, as the
+	// islands build their population data for registered observers only.
+	private final List<MyEvolutionObserver<T>> islandAdapters;
+
+	private List<TerminationCondition> satisfiedTerminationConditions;
+
+	/**
+	 * Creates an island system with the specified number of identically
+	 * configured generational islands. Each island evaluates fitness on its own
+	 * thread, and draws from its own random stream derived from <code>rng</code>.
+	 */
+	public MyIslandEvolution(int islandCount, MigrationPolicy policy, CandidateFactory<T> candidateFactory,
+			EvolutionaryOperator<T> evolutionScheme, FitnessEvaluator<? super T> fitnessEvaluator,
+			SelectionStrategy<? super T> selectionStrategy, Random rng) {
+		this(createIslands(islandCount, candidateFactory, evolutionScheme, fitnessEvaluator, selectionStrategy, rng),
+				policy, fitnessEvaluator.isNatural(), rng);
+	}
+
+	/**
+	 * Creates an island system from pre-configured islands.
+	 * @param islands The islands, each one evolved by its own thread.
+	 * @param policy When and how individuals migrate between islands.
+	 * @param naturalFitness If true, higher fitness values mean fitter individuals.
+	 * @param rng The source of randomness for the migration.
+	 */
+	public MyIslandEvolution(List<? extends MyAbstractEvolutionEngine<T>> islands, MigrationPolicy policy,
+			boolean naturalFitness, Random rng) {
+		if (islands.isEmpty())
+			throw new IllegalArgumentException("An island system needs at least one island.");
+		this.islands = islands;
+		this.policy = policy;
+		this.naturalFitness = naturalFitness;
+		this.rng = rng;
+		islandAdapters = new ArrayList<MyEvolutionObserver<T>>(islands.size());
+		for (int i = 0; i < islands.size(); i++) {
+			final int islandIndex = i;
+			islandAdapters.add(new MyEvolutionObserver<T>() {
+				@Override
+				public void populationUpdate(MyPopulationData<T> data) {
+					for (IslandEvolutionObserver<? super T> observer : observers)
+						observer.islandPopulationUpdate(islandIndex, data.getData());
+				}
+			});
+		}
+	}
+
+	private static <T> List<MyGenerationalEvolutionEngine<T>> createIslands(int islandCount,
+			CandidateFactory<T> candidateFactory, EvolutionaryOperator<T> evolutionScheme,
+			FitnessEvaluator<? super T> fitnessEvaluator, SelectionStrategy<? super T> selectionStrategy, Random rng) {
+		List<MyGenerationalEvolutionEngine<T>> islands = new ArrayList<MyGenerationalEvolutionEngine<T>>(islandCount);
+		for (int i = 0; i < islandCount; i++) {
+			// an own stream per island, so that islands do not contend for one generator.
+			MyGenerationalEvolutionEngine<T> island = new MyGenerationalEvolutionEngine<T>(candidateFactory,
+					evolutionScheme, fitnessEvaluator, selectionStrategy, new Random(rng.nextLong()));
+			// the islands are already concurrent among each other.
+			island.setSingleThreaded(true);
+			islands.add(island);
+		}
+		return islands;
+	}
+
+	/**
+	 * Evolves all islands until one of the conditions is satisfied by the combined
+	 * population at the end of an epoch.
+	 * @param populationSize The population size of each island.
+	 * @param eliteCount The amount of elites preserved on each island.
+	 * @param conditions One or more conditions that may cause the evolution to terminate.
+	 * @return The fittest solution found on any of the islands.
+	 */
+	public T evolve(int populationSize, int eliteCount, TerminationCondition... conditions) {
+		return evolvePopulation(populationSize, eliteCount, conditions).get(0).getCandidate();
+	}
+
+	/**
+	 * Evolves all islands until one of the conditions is satisfied by the combined
+	 * population at the end of an epoch.
+	 * @param populationSize The population size of each island.
+	 * @param eliteCount The amount of elites preserved on each island.
+	 * @param conditions One or more conditions that may cause the evolution to terminate.
+	 * @return The combined population of all islands, sorted by fitness.
+	 */
+	public List<EvaluatedCandidate<T>> evolvePopulation(int populationSize, int eliteCount,
+			TerminationCondition... conditions) {
+		if (policy.getCount() >= populationSize)
+			throw new IllegalArgumentException("The amount of migrants must be less than the population size.");
+		if (conditions.length == 0)
+			throw new IllegalArgumentException("At least one TerminationCondition must be specified.");
+
+		satisfiedTerminationConditions = null;
+		ExecutorService threadPool = Executors.newFixedThreadPool(islands.size());
+		List<List<T>> islandPopulations = new ArrayList<List<T>>(islands.size());
+		List<EvaluatedCandidate<T>> combinedPopulation = new ArrayList<EvaluatedCandidate<T>>(islands.size() * populationSize);
+		List<TerminationCondition> satisfiedConditions = null;
+		int currentEpochIndex = 0;
+		long startTime = System.currentTimeMillis();
+		try {
+			while (satisfiedConditions == null) {
+				List<List<EvaluatedCandidate<T>>> evaluatedPopulations;
+				try {
+					evaluatedPopulations = runEpoch(threadPool, populationSize, eliteCount, islandPopulations);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					satisfiedConditions = Collections.emptyList();
+					break;
+				}
+				policy.getTopology().migrate(evaluatedPopulations, policy.getCount(), rng);
+
+				combinedPopulation.clear();
+				islandPopulations.clear();
+				for (List<EvaluatedCandidate<T>> evaluatedPopulation : evaluatedPopulations) {
+					combinedPopulation.addAll(evaluatedPopulation);
+					islandPopulations.add(toCandidateList(evaluatedPopulation));
+				}
+				EvolutionUtils.sortEvaluatedPopulation(combinedPopulation, naturalFitness);
+				PopulationData<T> data = EvolutionUtils.getPopulationData(combinedPopulation, naturalFitness,
+						eliteCount, currentEpochIndex++, startTime);
+				notifyPopulationChange(data, combinedPopulation);
+				satisfiedConditions = EvolutionUtils.shouldContinue(data, conditions);
+			}
+		} finally {
+			threadPool.shutdownNow();
+		}
+		satisfiedTerminationConditions = satisfiedConditions;
+		return combinedPopulation;
+	}
+
+	private List<List<EvaluatedCandidate<T>>> runEpoch(ExecutorService threadPool, int populationSize,
+			int eliteCount, List<List<T>> islandPopulations) throws InterruptedException {
+		List<Callable<List<EvaluatedCandidate<T>>>> epochs = new ArrayList<Callable<List<EvaluatedCandidate<T>>>>(islands.size());
+		for (int i = 0; i < islands.size(); i++)
+			epochs.add(new MyEpoch<T>(islands.get(i), populationSize, eliteCount,
+					islandPopulations.isEmpty() ? Collections.<T> emptyList() : islandPopulations.get(i),
+					new GenerationCount(policy.getInterval())));
+
+		List<List<EvaluatedCandidate<T>>> evaluatedPopulations = new ArrayList<List<EvaluatedCandidate<T>>>(islands.size());
+		try {
+			for (Future<List<EvaluatedCandidate<T>>> future : threadPool.invokeAll(epochs))
+				evaluatedPopulations.add(future.get());
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("An island failed to complete its epoch.", e);
+		}
+		return evaluatedPopulations;
+	}
+
+	private static <T> List<T> toCandidateList(List<EvaluatedCandidate<T>> evaluatedCandidates) {
+		List<T> candidates = new ArrayList<T>(evaluatedCandidates.size());
+		for (EvaluatedCandidate<T> evaluatedCandidate : evaluatedCandidates)
+			candidates.add(evaluatedCandidate.getCandidate());
+		return candidates;
+	}
+
+	/**
+	 * @return The conditions that caused the last evolution to terminate; empty if
+	 * it was interrupted.
+	 */
+	public List<TerminationCondition> getSatisfiedTerminationConditions() {
+		if (satisfiedTerminationConditions == null)
+			throw new IllegalStateException("The island evolution has not terminated.");
+		return Collections.unmodifiableList(satisfiedTerminationConditions);
+	}
+
+	public MigrationPolicy getMigrationPolicy() {
+		return policy;
+	}
+
+	public int getAmountIslands() {
+		return islands.size();
+	}
+
+	/**
+	 * Island observers receive the updates of each island per generation, and the
+	 * combined population per epoch. Updates of islands are dispatched on the
+	 * island threads.
+	 */
+	public synchronized void addEvolutionObserver(IslandEvolutionObserver<? super T> observer) {
+		if (observers.isEmpty())
+			for (int i = 0; i < islands.size(); i++)
+				islands.get(i).addMyEvolutionObserver(islandAdapters.get(i));
+		observers.add(observer);
+	}
+
+	public synchronized void removeEvolutionObserver(IslandEvolutionObserver<? super T> observer) {
+		if (observers.remove(observer) && observers.isEmpty())
+			for (int i = 0; i < islands.size(); i++)
+				islands.get(i).removeMyEvolutionObserver(islandAdapters.get(i));
+	}
+
+	/**
+	 * These observers receive the combined population at the end of each epoch.
+	 */
+	public void addMyEvolutionObserver(MyEvolutionObserver<T> observer) {
+		myObservers.add(observer);
+	}
+
+	public void removeMyEvolutionObserver(MyEvolutionObserver<T> observer) {
+		myObservers.remove(observer);
+	}
+
+	private void notifyPopulationChange(PopulationData<T> data, List<EvaluatedCandidate<T>> combinedPopulation) {
+		for (IslandEvolutionObserver<? super T> observer : observers)
+			observer.populationUpdate(data);
+		if (!myObservers.isEmpty()) {
+			MyPopulationData<T> myData = new MyPopulationData<T>(data, combinedPopulation);
+			for (MyEvolutionObserver<T> observer : myObservers)
+				observer.populationUpdate(myData);
+		}
+	}
+
+	private static class MyEpoch<T> implements Callable<List<EvaluatedCandidate<T>>> {
+
+		private final MyAbstractEvolutionEngine<T> island;
+		private final int populationSize;
+		private final int eliteCount;
+		private final List<T> seedCandidates;
+		private final TerminationCondition condition;
+
+		MyEpoch(MyAbstractEvolutionEngine<T> island, int populationSize, int eliteCount, List<T> seedCandidates,
+				TerminationCondition condition) {
+			this.island = island;
+			this.populationSize = populationSize;
+			this.eliteCount = eliteCount;
+			this.seedCandidates = seedCandidates;
+			this.condition = condition;
+		}
+
+		@Override
+		public List<EvaluatedCandidate<T>> call() {
+			return island.evolvePopulation(populationSize, eliteCount, seedCandidates, condition);
+		}
+	}
+}
@@ -0,0 +1,75 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package org.uncommons.watchmaker.framework.islands;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.uncommons.watchmaker.framework.EvaluatedCandidate;
+
+/**
+ * Migrates a fixed number of randomly chosen individuals from each island, each to
+ * a randomly chosen other island (a fully connected topology). Every island
+ * receives as many immigrants as it sends emigrants, so that population sizes
+ * remain constant.
+ * 
+ * @author Felix Dobslaw
+ */
+public class RandomMigration implements Migration {
+
+	@Override
+	public <T> void migrate(List<List<EvaluatedCandidate<T>>> islandPopulations, int migrantCount, Random rng) {
+		int islands = islandPopulations.size();
+		if (islands < 2 || migrantCount == 0)
+			return;
+
+		List<EvaluatedCandidate<T>> migrants = new ArrayList<EvaluatedCandidate<T>>(islands * migrantCount);
+		List<Integer> origins = new ArrayList<Integer>(islands * migrantCount);
+		for (int i = 0; i < islands; i++) {
+			List<EvaluatedCandidate<T>> island = islandPopulations.get(i);
+			Collections.shuffle(island, rng);
+			migrants.addAll(island.subList(island.size() - migrantCount, island.size()));
+			for (int j = 0; j < migrantCount; j++)
+				origins.add(i);
+		}
+
+		// a random permutation of free slots; slots of the same island are redrawn
+		// with a bounded amount of swaps, so that migrants rarely return home.
+		List<Integer> slots = new ArrayList<Integer>(origins);
+		Collections.shuffle(slots, rng);
+		for (int i = 0; i < slots.size(); i++)
+			if (slots.get(i).equals(origins.get(i)))
+				for (int attempt = 0; attempt < slots.size(); attempt++) {
+					int other = rng.nextInt(slots.size());
+					if (!slots.get(other).equals(origins.get(i)) && !slots.get(i).equals(origins.get(other))) {
+						Collections.swap(slots, i, other);
+						break;
+					}
+				}
+
+		int[] filled = new int[islands];
+		for (int i = 0; i < migrants.size(); i++) {
+			int target = slots.get(i);
+			List<EvaluatedCandidate<T>> island = islandPopulations.get(target);
+			island.set(island.size() - migrantCount + filled[target]++, migrants.get(i));
+		}
+	}
+}
@@ -0,0 +1,279 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.watchmaker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wraps a noisy {@link EvaluatorFunction} and replicates its evaluation until the
+ * confidence interval of the mean is narrower than a tolerance, or a maximum amount of
+ * runs is reached. Compute then goes to where the noise demands it, instead of a fixed
+ * amount of runs per candidate. Replications can be run in parallel batches on an
+ * executor, in which case the wrapped function has to be thread-safe.
+ * 
+ * @ThreadSafe
+ * 
+ * @author Felix Dobslaw
+ *
+ * @param <T>
+ */
+public class AdaptiveEvaluatorFunction<T> implements EvaluatorFunction<T> {
+
+	public static final double DEFAULT_CONFIDENCE = .95;
+
+	public static final int DEFAULT_MIN_RUNS = 3;
+
+	private final EvaluatorFunction<T> function;
+
+	private final double tolerance;
+
+	// the upper quantile of the two-sided interval, and the normal quantile of it.
+	private final double p;
+
+	private final double z;
+
+	private final int minRuns;
+
+	private final int maxRuns;
+
+	private volatile ExecutorService executor;
+
+	private volatile int batchSize = 1;
+
+	private final AtomicLong totalRuns = new AtomicLong();
+
+	public AdaptiveEvaluatorFunction(EvaluatorFunction<T> function, double tolerance, int maxRuns) {
+		this(function, tolerance, DEFAULT_CONFIDENCE, DEFAULT_MIN_RUNS, maxRuns);
+	}
+
+	/**
+	 * @param function The noisy function to replicate.
+	 * @param tolerance The half-width of the confidence interval of the mean, at
+	 *            which replication stops.
+	 * @param confidence The confidence level of the interval, e.g. .95.
+	 * @param minRuns The amount of runs before the interval is first checked; at least 2.
+	 * @param maxRuns The maximum amount of runs per evaluation.
+	 */
+	public AdaptiveEvaluatorFunction(EvaluatorFunction<T> function, double tolerance, double confidence,
+			int minRuns, int maxRuns) {
+		if (tolerance <= 0)
+			throw new IllegalArgumentException("The tolerance has to be positive.");
+		if (confidence <= 0 || confidence >= 1)
+			throw new IllegalArgumentException("The confidence has to be in (0, 1).");
+		if (minRuns < 2 || maxRuns < minRuns)
+			throw new IllegalArgumentException("At least two runs are required, and the maximum must not be below the minimum.");
+		this.function = function;
+		this.tolerance = tolerance;
+		this.p = 1 - (1 - confidence) / 2;
+		this.z = normalQuantile(p);
+		this.minRuns = minRuns;
+		this.maxRuns = maxRuns;
+	}
+
+	/**
+	 * Runs replications in parallel, <code>batchSize</code> at a time.
+	 * @param executor The executor, or <code>null</code> to replicate on the calling thread.
+	 * @param batchSize The amount of replications started at once after the minimum runs.
+	 */
+	public void setExecutorService(ExecutorService executor, int batchSize) {
+		if (batchSize < 1)
+			throw new IllegalArgumentException("The batch size has to be positive.");
+		this.executor = executor;
+		this.batchSize = batchSize;
+	}
+
+	@Override
+	public boolean isNatural() {
+		return function.isNatural();
+	}
+
+	/**
+	 * @return The mean of the adaptively replicated evaluations.
+	 */
+	@Override
+	public double evaluate(T candidate) {
+		return estimate(candidate).getMean();
+	}
+
+	/**
+	 * @return The maximum amount of runs per evaluation; see
+	 *         {@link Estimate#getSamples()} for the amount actually spent.
+	 */
+	@Override
+	public int getRuns() {
+		return maxRuns;
+	}
+
+	/**
+	 * @return The amount of runs of the wrapped function over all evaluations.
+	 */
+	public long getTotalRuns() {
+		return totalRuns.get();
+	}
+
+	/**
+	 * Replicates the evaluation of the candidate until the confidence interval of the
+	 * mean is narrow enough, or the maximum amount of runs is reached.
+	 * @param candidate The candidate to evaluate.
+	 * @return The mean, its confidence interval and the amount of samples taken.
+	 */
+	public Estimate estimate(T candidate) {
+		Estimate estimate = new Estimate();
+		replicate(candidate, minRuns, estimate);
+		while (estimate.samples < maxRuns && halfWidth(estimate) > tolerance)
+			replicate(candidate, Math.min(batchSize, maxRuns - estimate.samples), estimate);
+		estimate.halfWidth = halfWidth(estimate);
+		estimate.converged = estimate.halfWidth <= tolerance;
+		return estimate;
+	}
+
+	private void replicate(final T candidate, int runs, Estimate estimate) {
+		ExecutorService executor = this.executor;
+		if (executor == null || runs == 1) {
+			for (int i = 0; i < runs; i++)
+				estimate.add(function.evaluate(candidate));
+		} else {
+			List<Future<Double>> results = new ArrayList<Future<Double>>(runs);
+			for (int i = 0; i < runs; i++)
+				results.add(executor.submit(new Callable<Double>() {
+					@Override
+					public Double call() {
+						return function.evaluate(candidate);
+					}
+				}));
+			try {
+				for (Future<Double> result : results)
+					estimate.add(result.get());
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("A replication of the evaluation failed.", e.getCause());
+			} catch (InterruptedException e) {
+				for (Future<Double> result : results)
+					result.cancel(true);
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("The evaluation has been interrupted.", e);
+			}
+		}
+		totalRuns.addAndGet(runs);
+	}
+
+	private double halfWidth(Estimate estimate) {
+		return tQuantile(estimate.samples - 1) * Math.sqrt(estimate.getVariance() / estimate.samples);
+	}
+
+	/**
+	 * The Student's t quantile; exact for one and two degrees of freedom, and by
+	 * its Cornish-Fisher expansion around the normal quantile beyond, which is
+	 * within one percent from three degrees of freedom on.
+	 */
+	private double tQuantile(int df) {
+		if (df == 1) // Cauchy distribution.
+			return Math.tan(Math.PI * (p - 0.5));
+		if (df == 2)
+			return (2 * p - 1) / Math.sqrt(2 * p * (1 - p));
+		double z2 = z * z;
+		return z + z * (z2 + 1) / (4 * df) + z * ((5 * z2 + 16) * z2 + 3) / (96 * df * df)
+				+ z * (((3 * z2 + 19) * z2 + 17) * z2 - 15) / (384.0 * df * df * df);
+	}
+
+	/**
+	 * Acklam's rational approximation of the standard normal quantile.
+	 */
+	private static double normalQuantile(double p) {
+		final double[] a = { -3.969683028665376e+01, 2.209460984245205e+02, -2.759285104469687e+02,
+				1.383577518672690e+02, -3.066479806614716e+01, 2.506628277459239e+00 };
+		final double[] b = { -5.447609879822406e+01, 1.615858368580409e+02, -1.556989798598866e+02,
+				6.680131188771972e+01, -1.328068155288572e+01 };
+		final double[] c = { -7.784894002430293e-03, -3.223964580411365e-01, -2.400758277161838e+00,
+				-2.549732539343734e+00, 4.374664141464968e+00, 2.938163982698783e+00 };
+		final double[] d = { 7.784695709041462e-03, 3.224671290700398e-01, 2.445134137142996e+00,
+				3.754408661907416e+00 };
+		if (p > 0.97575) // upper tail, by symmetry.
+			return -normalQuantile(1 - p);
+		if (p < 0.02425) {
+			double q = Math.sqrt(-2 * Math.log(p));
+			return (((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4]) * q + c[5])
+					/ ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) * q + 1);
+		}
+		double q = p - 0.5, r = q * q;
+		return (((((a[0] * r + a[1]) * r + a[2]) * r + a[3]) * r + a[4]) * r + a[5]) * q
+				/ (((((b[0] * r + b[1]) * r + b[2]) * r + b[3]) * r + b[4]) * r + 1);
+	}
+
+	/**
+	 * The result of an adaptive evaluation.
+	 */
+	public static class Estimate {
+
+		private int samples;
+
+		private double mean, squares, halfWidth;
+
+		private boolean converged;
+
+		private void add(double value) {
+			samples++;
+			double delta = value - mean;
+			mean += delta / samples;
+			squares += delta * (value - mean);
+		}
+
+		public double getMean() {
+			return mean;
+		}
+
+		/**
+		 * @return The sample variance.
+		 */
+		public double getVariance() {
+			return samples > 1 ? squares / (samples - 1) : 0;
+		}
+
+		/**
+		 * @return The amount of runs spent on the evaluation.
+		 */
+		public int getSamples() {
+			return samples;
+		}
+
+		/**
+		 * @return The half-width of the confidence interval of the mean.
+		 */
+		public double getHalfWidth() {
+			return halfWidth;
+		}
+
+		/**
+		 * @return False if the maximum amount of runs was reached before the tolerance.
+		 */
+		public boolean isConverged() {
+			return converged;
+		}
+
+		@Override
+		public String toString() {
+			return mean + " +- " + halfWidth + " (" + samples + " runs)";
+		}
+	}
+}
@@ -18,9 +18,14 @@ OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
 SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  */package se.miun.itm.watchmaker;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.uncommons.watchmaker.framework.EvolutionaryOperator;
 
@@ -28,6 +33,15 @@ import org.uncommons.watchmaker.framework.EvolutionaryOperator;
  * An extension of the EvolutionPipe from the Watchmaker framework, which makes it 
  * a more flexible datastructure, that can be used within InPUT in order to support declarative
  * removal or extension of evolutionary operators.
+ * 
+ * In parallel mode, the selection is split into chunks of a fixed size, and each
+ * chunk passes the whole pipeline as a task of the given executor, e.g. a
+ * <code>ForkJoinPool</code>. Each chunk draws from its own random stream, seeded in
+ * order from the engine's source of randomness, and the offspring are concatenated in
+ * chunk order; results are therefore reproducible for a given seed, independent of
+ * the amount of threads. Operators that pair candidates, such as crossover, only pair
+ * within a chunk.
+ * 
  * @author Felix Dobslaw
  *
  * @param <T>
@@ -37,6 +51,10 @@ public class CustomizableEvolutionPipeline<T> implements
 
 	private final LinkedList<EvolutionaryOperator<T>> pipeline;
 
+	private ExecutorService executor;
+
+	private int chunkSize;
+
 	public CustomizableEvolutionPipeline() {
 		pipeline = new LinkedList<EvolutionaryOperator<T>>();
 	}
@@ -62,6 +80,32 @@ public class CustomizableEvolutionPipeline<T> implements
 		pipeline.clear();
 	}
 
+	/**
+	 * Applies the pipeline to chunks of the selection in parallel.
+	 * @param executor Runs the chunks; its lifecycle stays with the caller.
+	 * @param chunkSize The amount of candidates per chunk; has to be even, so that
+	 *            pairs are not split.
+	 */
+	public void setParallel(ExecutorService executor, int chunkSize) {
+		if (executor == null)
+			throw new IllegalArgumentException("An executor is required for the parallel mode.");
+		if (chunkSize < 2 || chunkSize % 2 != 0)
+			throw new IllegalArgumentException("The chunk size has to be a positive even number.");
+		this.executor = executor;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Applies the pipeline on the calling thread again.
+	 */
+	public void setSequential() {
+		executor = null;
+	}
+
+	public boolean isParallel() {
+		return executor != null;
+	}
+
 	/**
 	 * copied from
 	 * org.uncommons.watchmaker.framework.operators.EvolutionPipeline
@@ -80,10 +124,48 @@ public class CustomizableEvolutionPipeline<T> implements
 	 */
 	@Override
 	public List<T> apply(List<T> selectedCandidates, Random rng) {
+		ExecutorService executor = this.executor;
+		if (executor == null || selectedCandidates.size() <= chunkSize)
+			return applySequentially(selectedCandidates, rng);
+		return applyInParallel(selectedCandidates, rng, executor);
+	}
+
+	private List<T> applySequentially(List<T> selectedCandidates, Random rng) {
 		List<T> population = selectedCandidates;
 		for (EvolutionaryOperator<T> operator : pipeline) {
 			population = operator.apply(population, rng);
 		}
 		return population;
 	}
-}
\ No newline at end of file
+
+	private List<T> applyInParallel(List<T> selectedCandidates, Random rng, ExecutorService executor) {
+		int size = selectedCandidates.size();
+		List<Future<List<T>>> chunks = new ArrayList<Future<List<T>>>(size / chunkSize + 1);
+		for (int from = 0; from < size; from += chunkSize) {
+			// the seeds are drawn in chunk order on the calling thread, which keeps
+			// runs reproducible.
+			final Random chunkRng = new Random(rng.nextLong());
+			final List<T> chunk = new ArrayList<T>(selectedCandidates.subList(from, Math.min(size, from + chunkSize)));
+			chunks.add(executor.submit(new Callable<List<T>>() {
+				@Override
+				public List<T> call() {
+					return applySequentially(chunk, chunkRng);
+				}
+			}));
+		}
+
+		List<T> population = new ArrayList<T>(size);
+		try {
+			for (Future<List<T>> chunk : chunks)
+				population.addAll(chunk.get());
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("An evolutionary operator failed.", e.getCause());
+		} catch (InterruptedException e) {
+			for (Future<List<T>> chunk : chunks)
+				chunk.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("The application of the pipeline has been interrupted.", e);
+		}
+		return population;
+	}
+}
@@ -0,0 +1,86 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.watchmaker.real;
+
+import java.util.Random;
+
+import org.uncommons.maths.random.Probability;
+
+/**
+ * Adds normally distributed noise to each gene with a given probability, and clamps
+ * the result to the gene bounds.
+ * 
+ * @ThreadSafe
+ * 
+ * @author Felix Dobslaw
+ */
+public class RealGaussianMutation implements RealOperator {
+
+	private final double probability;
+
+	private final double deviation;
+
+	private final double min;
+
+	private final double max;
+
+	/**
+	 * Mutation without bounds.
+	 */
+	public RealGaussianMutation(Probability probability, double deviation) {
+		this(probability, deviation, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * @param probability The probability of each gene to be mutated.
+	 * @param deviation The standard deviation of the noise.
+	 * @param min The inclusive lower bound of all genes.
+	 * @param max The inclusive upper bound of all genes.
+	 */
+	public RealGaussianMutation(Probability probability, double deviation, double min, double max) {
+		if (deviation < 0)
+			throw new IllegalArgumentException("The deviation must be non-negative.");
+		if (min > max)
+			throw new IllegalArgumentException("The lower bound must not exceed the upper bound.");
+		this.probability = probability.doubleValue();
+		this.deviation = deviation;
+		this.min = min;
+		this.max = max;
+	}
+
+	@Override
+	public void apply(RealPopulation population, Random rng) {
+		double[] genes = population.getGenes();
+		int size = population.size();
+		for (int gene = 0; gene < population.getDimension(); gene++) {
+			int offset = population.offsetOf(gene);
+			for (int i = offset; i < offset + size; i++)
+				if (rng.nextDouble() < probability)
+					genes[i] = Math.max(min, Math.min(max, genes[i] + rng.nextGaussian() * deviation));
+		}
+	}
+
+	public double getProbability() {
+		return probability;
+	}
+
+	public double getDeviation() {
+		return deviation;
+	}
+}
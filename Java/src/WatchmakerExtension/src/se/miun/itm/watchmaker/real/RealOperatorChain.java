@@ -0,0 +1,93 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.watchmaker.real;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import org.uncommons.watchmaker.framework.EvolutionaryOperator;
+
+/**
+ * Applies a sequence of {@link RealOperator}s to real-valued genomes, as a single
+ * stage of a {@link se.miun.itm.watchmaker.CustomizableEvolutionPipeline}. The
+ * selected candidates are copied once into a reused {@link RealPopulation}, all
+ * operators run in place on it, and the offspring are copied out once; the
+ * operators in between do not allocate. The selected candidates themselves are
+ * never modified, as selection may return the same genome more than once.
+ * 
+ * @ThreadSafe
+ * 
+ * @author Felix Dobslaw
+ */
+public class RealOperatorChain implements EvolutionaryOperator<double[]> {
+
+	private final LinkedList<RealOperator> chain;
+
+	// one buffer per thread, so that island engines can share a chain.
+	private final ThreadLocal<RealPopulation> buffers = new ThreadLocal<RealPopulation>();
+
+	public RealOperatorChain() {
+		chain = new LinkedList<RealOperator>();
+	}
+
+	public void addOperator(RealOperator operator) {
+		chain.add(operator);
+	}
+
+	public void removeOperator(int position) {
+		if (position >= chain.size())
+			throw new IllegalArgumentException("The chain contains less than " + (position + 1) + " operators.");
+		chain.remove(position);
+	}
+
+	public int size() {
+		return chain.size();
+	}
+
+	public void clear() {
+		chain.clear();
+	}
+
+	@Override
+	public List<double[]> apply(List<double[]> selectedCandidates, Random rng) {
+		if (selectedCandidates.isEmpty())
+			return new ArrayList<double[]>(0);
+
+		RealPopulation population = bufferFor(selectedCandidates.get(0).length, selectedCandidates.size());
+		population.load(selectedCandidates);
+		for (RealOperator operator : chain)
+			operator.apply(population, rng);
+
+		List<double[]> offspring = new ArrayList<double[]>(population.size());
+		for (int i = 0; i < population.size(); i++)
+			offspring.add(population.toCandidate(i));
+		return offspring;
+	}
+
+	private RealPopulation bufferFor(int dimension, int size) {
+		RealPopulation population = buffers.get();
+		if (population == null || population.getDimension() != dimension) {
+			population = new RealPopulation(dimension, size);
+			buffers.set(population);
+		}
+		return population;
+	}
+}
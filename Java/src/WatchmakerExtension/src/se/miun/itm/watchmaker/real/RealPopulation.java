@@ -0,0 +1,129 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.watchmaker.real;
+
+import java.util.List;
+
+/**
+ * A population of real-valued genomes of equal length in struct-of-arrays layout:
+ * all values of one gene are stored contiguously, one column per gene, in a single
+ * primitive array. Operators work on it in place, so that a chain of operators
+ * needs no boxing and no per-operator reallocation of candidates.
+ * 
+ * @NotThreadSafe
+ * 
+ * @author Felix Dobslaw
+ */
+public class RealPopulation {
+
+	private final int dimension;
+
+	private int capacity;
+
+	private int size;
+
+	private double[] genes;
+
+	/**
+	 * @param dimension The amount of genes per individual.
+	 * @param capacity The amount of individuals the population can hold without
+	 *            growing.
+	 */
+	public RealPopulation(int dimension, int capacity) {
+		if (dimension < 1)
+			throw new IllegalArgumentException("A genome needs at least one gene.");
+		this.dimension = dimension;
+		this.capacity = Math.max(1, capacity);
+		genes = new double[dimension * this.capacity];
+	}
+
+	/**
+	 * Replaces the content by copies of the given genomes, growing if required.
+	 * @param candidates Genomes with exactly {@link #getDimension()} genes each.
+	 */
+	public void load(List<double[]> candidates) {
+		if (candidates.size() > capacity) {
+			capacity = candidates.size();
+			genes = new double[dimension * capacity];
+		}
+		size = candidates.size();
+		for (int i = 0; i < size; i++) {
+			double[] candidate = candidates.get(i);
+			if (candidate.length != dimension)
+				throw new IllegalArgumentException("Genome " + i + " has " + candidate.length + " instead of "
+						+ dimension + " genes.");
+			for (int gene = 0; gene < dimension; gene++)
+				genes[gene * capacity + i] = candidate[gene];
+		}
+	}
+
+	/**
+	 * @param individual The index of an individual.
+	 * @return A new genome with the genes of the individual.
+	 */
+	public double[] toCandidate(int individual) {
+		double[] candidate = new double[dimension];
+		for (int gene = 0; gene < dimension; gene++)
+			candidate[gene] = genes[gene * capacity + individual];
+		return candidate;
+	}
+
+	public double get(int individual, int gene) {
+		return genes[gene * capacity + individual];
+	}
+
+	public void set(int individual, int gene, double value) {
+		genes[gene * capacity + individual] = value;
+	}
+
+	/**
+	 * Exchanges a gene between two individuals.
+	 */
+	public void swap(int first, int second, int gene) {
+		int offset = gene * capacity;
+		double value = genes[offset + first];
+		genes[offset + first] = genes[offset + second];
+		genes[offset + second] = value;
+	}
+
+	/**
+	 * Direct access to the gene values, for operators that process whole columns: the
+	 * values of a gene start at {@link #offsetOf(int)} and span {@link #size()}
+	 * entries.
+	 */
+	public double[] getGenes() {
+		return genes;
+	}
+
+	public int offsetOf(int gene) {
+		return gene * capacity;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getDimension() {
+		return dimension;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+}
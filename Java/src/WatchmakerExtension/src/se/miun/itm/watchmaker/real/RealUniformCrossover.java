@@ -0,0 +1,62 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.watchmaker.real;
+
+import java.util.Random;
+
+import org.uncommons.maths.random.Probability;
+
+/**
+ * Pairs consecutive individuals and, with a given probability per pair, exchanges
+ * each gene between the partners with probability one half. An unpaired last
+ * individual is left as is.
+ * 
+ * @ThreadSafe
+ * 
+ * @author Felix Dobslaw
+ */
+public class RealUniformCrossover implements RealOperator {
+
+	private final double probability;
+
+	public RealUniformCrossover() {
+		this(Probability.ONE);
+	}
+
+	/**
+	 * @param probability The probability of each pair to be recombined.
+	 */
+	public RealUniformCrossover(Probability probability) {
+		this.probability = probability.doubleValue();
+	}
+
+	@Override
+	public void apply(RealPopulation population, Random rng) {
+		int size = population.size();
+		for (int first = 0; first + 1 < size; first += 2)
+			if (rng.nextDouble() < probability)
+				for (int gene = 0; gene < population.getDimension(); gene++)
+					if (rng.nextBoolean())
+						population.swap(first, first + 1, gene);
+	}
+
+	public double getProbability() {
+		return probability;
+	}
+}
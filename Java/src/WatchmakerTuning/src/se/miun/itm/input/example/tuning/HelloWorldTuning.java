@@ -55,13 +55,17 @@ public class HelloWorldTuning {
 		IExperiment experiment;
 		IDesign result;
 		String folder = tuner.getExperimentalFolderPath();
-		for (int i = 0; i < 1000; i++) {
-			experiment = tuner.nextExperiment();
-			result = executor.execute(experiment);
-			System.out.println("experiment " + (i+1)+".");
-			tuner.feedback(result);
-			EXPORTER.resetFileName(folder + File.separator + experiment.getId());
-			experiment.export(EXPORTER);
+		try {
+			for (int i = 0; i < 1000; i++) {
+				experiment = tuner.nextExperiment();
+				result = executor.execute(experiment);
+				System.out.println("experiment " + (i+1)+".");
+				tuner.feedback(result);
+				EXPORTER.resetFileName(folder + File.separator + experiment.getId());
+				experiment.export(EXPORTER);
+			}
+		} finally {
+			tuner.close();
 		}
 	}
 
@@ -0,0 +1,101 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.input.watchmaker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.uncommons.watchmaker.framework.EvolutionaryOperator;
+
+/**
+ * Wraps an evolutionary operator so that it is applied to each selected candidate
+ * with a probability that can change during a run. Candidates that are not chosen
+ * pass unchanged, in their original position. The offspring it produces are
+ * reported to an {@link OnlineParameterController}, which judges their success
+ * and adapts the probability.
+ * 
+ * @ThreadSafe
+ * 
+ * @author Felix Dobslaw
+ *
+ * @param <T>
+ */
+public class AdaptiveOperator<T> implements EvolutionaryOperator<T> {
+
+	private final EvolutionaryOperator<T> operator;
+
+	private volatile double probability;
+
+	private volatile OnlineParameterController<T> controller;
+
+	/**
+	 * @param operator The operator to apply.
+	 * @param probability The initial probability of a candidate to be subjected to it.
+	 */
+	public AdaptiveOperator(EvolutionaryOperator<T> operator, double probability) {
+		this.operator = operator;
+		setProbability(probability);
+	}
+
+	@Override
+	public List<T> apply(List<T> selectedCandidates, Random rng) {
+		double probability = this.probability;
+		List<T> chosen = new ArrayList<T>(selectedCandidates.size());
+		int[] positions = new int[selectedCandidates.size()];
+		for (int i = 0; i < selectedCandidates.size(); i++)
+			if (rng.nextDouble() < probability) {
+				positions[chosen.size()] = i;
+				chosen.add(selectedCandidates.get(i));
+			}
+		if (chosen.isEmpty())
+			return selectedCandidates;
+
+		List<T> offspring = operator.apply(chosen, rng);
+		if (offspring.size() != chosen.size())
+			throw new IllegalStateException("An adaptive operator requires its operator to preserve the amount of candidates.");
+
+		List<T> population = new ArrayList<T>(selectedCandidates);
+		OnlineParameterController<T> controller = this.controller;
+		for (int i = 0; i < offspring.size(); i++) {
+			population.set(positions[i], offspring.get(i));
+			if (controller != null)
+				controller.derived(chosen.get(i), offspring.get(i), this);
+		}
+		return population;
+	}
+
+	public double getProbability() {
+		return probability;
+	}
+
+	public void setProbability(double probability) {
+		if (probability < 0 || probability > 1)
+			throw new IllegalArgumentException("The probability " + probability + " is not within [0, 1].");
+		this.probability = probability;
+	}
+
+	public EvolutionaryOperator<T> getOperator() {
+		return operator;
+	}
+
+	void setController(OnlineParameterController<T> controller) {
+		this.controller = controller;
+	}
+}
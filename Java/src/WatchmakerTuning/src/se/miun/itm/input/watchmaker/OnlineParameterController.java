@@ -0,0 +1,290 @@
+/*-- $Copyright (C) 2012-13 Felix Dobslaw$
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is furnished
+to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */package se.miun.itm.input.watchmaker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.uncommons.watchmaker.framework.EvaluatedCandidate;
+import org.uncommons.watchmaker.framework.MyEvolutionObserver;
+import org.uncommons.watchmaker.framework.MyPopulationData;
+
+import se.miun.itm.input.model.InPUTException;
+import se.miun.itm.input.model.Ranges;
+import se.miun.itm.input.model.design.IDesign;
+import se.miun.itm.input.model.param.NParam;
+import se.miun.itm.input.model.param.Param;
+import se.miun.itm.input.model.param.ParamStore;
+
+/**
+ * Adapts operator probabilities, declared as numeric parameters of an algorithm
+ * design space, while an evolution runs. Each controlled parameter is bound to an
+ * {@link AdaptiveOperator}. After every generation, the offspring of each operator
+ * are traced back to their evaluated ancestors of the previous generation; an
+ * application succeeds if the descendant is fitter than its ancestor. If the success
+ * rate of an operator exceeds the target rate, its probability is increased by the
+ * adaptation factor, otherwise decreased (a generalized one-fifth success rule). The
+ * probabilities stay within the bounds of the parameter's {@link Ranges}, but never
+ * fall below {@link #EXPLORATION_FLOOR} if the bounds allow it: an operator that is
+ * never applied is never judged, and could not recover. The adapted values are
+ * written back to the design,
+ * unless it is read only or the parameter fixed, so that an exported design reflects
+ * the final configuration.
+ * 
+ * The controller has to be registered as an observer of the engine
+ * ({@link org.uncommons.watchmaker.framework.MyAbstractEvolutionEngine#addMyEvolutionObserver(MyEvolutionObserver)})
+ * with synchronous dispatch, as it assigns credit per generation.
+ * 
+ * @ThreadSafe
+ * 
+ * @author Felix Dobslaw
+ *
+ * @param <T>
+ */
+public class OnlineParameterController<T> implements MyEvolutionObserver<T> {
+
+	public static final double DEFAULT_TARGET_SUCCESS_RATE = .2;
+
+	public static final double DEFAULT_FACTOR = 1.1;
+
+	public static final int DEFAULT_MIN_TRIALS = 10;
+
+	public static final double EXPLORATION_FLOOR = .01;
+
+	private final IDesign design;
+
+	private final boolean naturalFitness;
+
+	private final Map<String, Control> controls = new LinkedHashMap<String, Control>();
+
+	private final Map<AdaptiveOperator<T>, Control> controlOf = new IdentityHashMap<AdaptiveOperator<T>, Control>();
+
+	// offspring of the current generation, to their parents and the producing operator.
+	private final Map<T, T> parents = new IdentityHashMap<T, T>();
+
+	private final Map<T, AdaptiveOperator<T>> producers = new IdentityHashMap<T, AdaptiveOperator<T>>();
+
+	// the fitness of the previous, evaluated generation.
+	private Map<T, Double> ancestors = new IdentityHashMap<T, Double>();
+
+	private double targetSuccessRate = DEFAULT_TARGET_SUCCESS_RATE;
+
+	private double factor = DEFAULT_FACTOR;
+
+	private int minTrials = DEFAULT_MIN_TRIALS;
+
+	/**
+	 * @param design The algorithm design that declares the controlled parameters.
+	 * @param naturalFitness True if higher fitness values mean fitter individuals.
+	 */
+	public OnlineParameterController(IDesign design, boolean naturalFitness) {
+		this.design = design;
+		this.naturalFitness = naturalFitness;
+	}
+
+	/**
+	 * Binds the parameter to the operator. The operator starts with the value of the
+	 * parameter in the design.
+	 * @param paramId The id of a numeric parameter of the design space, e.g. a
+	 *            mutation probability.
+	 * @param operator The operator whose probability the parameter describes.
+	 * @throws InPUTException if the parameter is not numeric, or its ranges are not static.
+	 */
+	public synchronized void control(String paramId, AdaptiveOperator<T> operator) throws InPUTException {
+		NParam param = paramOf(paramId);
+		Ranges ranges = new Ranges(param);
+		double min = Math.max(0, boundOf(paramId, ranges.getStrongTypedMin(), ranges.includesMinimum(), 1));
+		double max = Math.min(1, boundOf(paramId, ranges.getStrongTypedMax(), ranges.includesMaximum(), -1));
+		if (min > max)
+			throw new InPUTException("The ranges of parameter '" + paramId + "' do not intersect [0, 1].");
+		min = Math.min(max, Math.max(min, EXPLORATION_FLOOR));
+
+		Control control = new Control(paramId, operator, ranges, param.isFixed(), min, max);
+		Object value = design.getValue(paramId);
+		double initial = value instanceof Number ? ((Number) value).doubleValue() : operator.getProbability();
+		operator.setProbability(clamp(initial, min, max));
+		controls.put(paramId, control);
+		controlOf.put(operator, control);
+		operator.setController(this);
+	}
+
+	private NParam paramOf(String paramId) throws InPUTException {
+		ParamStore store = ParamStore.getInstance(design.getSpace().getId());
+		Param<?> param = store == null ? null : store.getParam(paramId);
+		if (!(param instanceof NParam))
+			throw new InPUTException("The parameter '" + paramId + "' is no numeric parameter of design space '"
+					+ design.getSpace().getId() + "'.");
+		return (NParam) param;
+	}
+
+	private static double boundOf(String paramId, Comparable<?>[] bound, boolean inclusive, int direction)
+			throws InPUTException {
+		if (bound == null || bound.length == 0 || !(bound[0] instanceof Number))
+			throw new InPUTException("The parameter '" + paramId + "' requires static numeric ranges to be controlled.");
+		double value = ((Number) bound[0]).doubleValue();
+		// exclusive bounds are approached, but never reached.
+		return inclusive ? value : value + direction * Math.max(Math.ulp(value), 1e-9);
+	}
+
+	/**
+	 * Invoked by adaptive operators for each candidate they have modified.
+	 */
+	synchronized void derived(T parent, T child, AdaptiveOperator<T> operator) {
+		if (parent == child)
+			return;
+		parents.put(child, parent);
+		producers.put(child, operator);
+	}
+
+	@Override
+	public synchronized void populationUpdate(MyPopulationData<T> data) {
+		for (EvaluatedCandidate<T> candidate : data.getEvaluatedCandidates())
+			assignCredit(candidate);
+		for (Control control : controls.values())
+			control.adapt();
+
+		parents.clear();
+		producers.clear();
+		ancestors = new IdentityHashMap<T, Double>();
+		for (EvaluatedCandidate<T> candidate : data.getEvaluatedCandidates())
+			ancestors.put(candidate.getCandidate(), candidate.getFitness());
+	}
+
+	private void assignCredit(EvaluatedCandidate<T> candidate) {
+		List<Control> involved = new ArrayList<Control>();
+		T current = candidate.getCandidate();
+		Double ancestorFitness = null;
+		while (current != null && (ancestorFitness = ancestors.get(current)) == null) {
+			AdaptiveOperator<T> producer = producers.get(current);
+			if (producer != null && controlOf.containsKey(producer))
+				involved.add(controlOf.get(producer));
+			current = parents.get(current);
+		}
+		if (ancestorFitness == null || involved.isEmpty())
+			return;
+
+		boolean success = naturalFitness ? candidate.getFitness() > ancestorFitness : candidate
+				.getFitness() < ancestorFitness;
+		for (Control control : involved)
+			control.record(success);
+	}
+
+	/**
+	 * @param paramId A controlled parameter.
+	 * @return The current probability of the operator bound to it.
+	 */
+	public synchronized double getValue(String paramId) {
+		Control control = controls.get(paramId);
+		if (control == null)
+			throw new IllegalArgumentException("The parameter '" + paramId + "' is not controlled.");
+		return control.operator.getProbability();
+	}
+
+	public synchronized List<String> getControlledParamIds() {
+		return Collections.unmodifiableList(new ArrayList<String>(controls.keySet()));
+	}
+
+	/**
+	 * @param targetSuccessRate The success rate above which probabilities grow.
+	 */
+	public synchronized void setTargetSuccessRate(double targetSuccessRate) {
+		if (targetSuccessRate <= 0 || targetSuccessRate >= 1)
+			throw new IllegalArgumentException("The target success rate has to be in (0, 1).");
+		this.targetSuccessRate = targetSuccessRate;
+	}
+
+	/**
+	 * @param factor The factor by which probabilities grow or shrink per adaptation.
+	 */
+	public synchronized void setFactor(double factor) {
+		if (factor <= 1)
+			throw new IllegalArgumentException("The adaptation factor has to exceed 1.");
+		this.factor = factor;
+	}
+
+	/**
+	 * @param minTrials The amount of applications an operator needs before its
+	 *            success rate is trusted; fewer trials are accumulated.
+	 */
+	public synchronized void setMinTrials(int minTrials) {
+		if (minTrials < 1)
+			throw new IllegalArgumentException("At least one trial is required.");
+		this.minTrials = minTrials;
+	}
+
+	private static double clamp(double value, double min, double max) {
+		return Math.max(min, Math.min(max, value));
+	}
+
+	private class Control {
+
+		private final String paramId;
+		private final AdaptiveOperator<T> operator;
+		private final Ranges ranges;
+		private final boolean fixed;
+		private final double min, max;
+		private int trials, successes;
+
+		Control(String paramId, AdaptiveOperator<T> operator, Ranges ranges, boolean fixed, double min, double max) {
+			this.paramId = paramId;
+			this.operator = operator;
+			this.ranges = ranges;
+			this.fixed = fixed;
+			this.min = min;
+			this.max = max;
+		}
+
+		void record(boolean success) {
+			trials++;
+			if (success)
+				successes++;
+		}
+
+		void adapt() {
+			if (trials < minTrials)
+				return;
+			double probability = operator.getProbability();
+			if ((double) successes / trials > targetSuccessRate)
+				probability *= factor;
+			else
+				probability /= factor;
+			probability = clamp(probability, min, max);
+			operator.setProbability(probability);
+			trials = 0;
+			successes = 0;
+			writeBack(probability);
+		}
+
+		private void writeBack(double probability) {
+			// the operator is adapted regardless of whether the design can follow.
+			if (fixed || design.isReadOnly())
+				return;
+			try {
+				design.setValue(paramId, ranges.parse(String.valueOf(probability)));
+			} catch (InPUTException e) {
+				throw new IllegalStateException("The adapted value of parameter '" + paramId
+						+ "' cannot be written back to the design.", e);
+			}
+		}
+	}
+}